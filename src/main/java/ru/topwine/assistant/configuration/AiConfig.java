@@ -1,16 +1,22 @@
 package ru.topwine.assistant.configuration;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.netty.http.client.HttpClient;
+import ru.topwine.assistant.http.client.AdaptiveConcurrencyLimiter;
 import ru.topwine.assistant.http.client.ChatClient;
+import ru.topwine.assistant.http.client.CoalescingChatClient;
+import ru.topwine.assistant.http.client.LimitingChatClient;
 import ru.topwine.assistant.http.client.OpenAiStyleChatClient;
+import ru.topwine.assistant.http.client.PooledChatClient;
 
 import java.time.Duration;
+import java.util.List;
 
 @Configuration
 @RequiredArgsConstructor
@@ -19,14 +25,35 @@ public class AiConfig {
     private final AiProps aiProps;
 
     @Bean
-    @Qualifier("llmWebClient")
-    public WebClient llmWebClient(WebClient.Builder builder) {
+    public ChatClient chatClient(WebClient.Builder webClientBuilder,
+                                 ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry) {
+        List<PooledChatClient.Endpoint> endpoints = aiProps.effectiveEndpoints().stream()
+                .map(url -> new PooledChatClient.Endpoint(url, new OpenAiStyleChatClient(
+                        llmWebClient(webClientBuilder.clone(), url),
+                        aiProps.timeoutSeconds(),
+                        objectMapper,
+                        meterRegistry
+                )))
+                .toList();
+
+        ChatClient upstream = endpoints.size() == 1
+                ? endpoints.getFirst().client()
+                : new PooledChatClient(endpoints, aiProps.pool(), meterRegistry);
+        if (aiProps.limiter() != null && aiProps.limiter().enabled()) {
+            upstream = new LimitingChatClient(upstream, new AdaptiveConcurrencyLimiter(aiProps.limiter(), meterRegistry));
+        }
+        // объединение идёт раньше лимита: одинаковые запросы занимают один слот
+        return new CoalescingChatClient(upstream, objectMapper, meterRegistry);
+    }
+
+    private WebClient llmWebClient(WebClient.Builder builder, String baseUrl) {
         HttpClient httpClient = HttpClient.create()
                 .responseTimeout(Duration.ofSeconds(aiProps.timeoutSeconds()))
                 .wiretap(true);
 
         return builder
-                .baseUrl(aiProps.baseUrl())
+                .baseUrl(baseUrl)
                 .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .defaultHeaders(headers -> {
                     if (aiProps.apiKey() != null && !aiProps.apiKey().isBlank()) {
@@ -35,9 +62,4 @@ public class AiConfig {
                 })
                 .build();
     }
-
-    @Bean
-    public ChatClient chatClient(@Qualifier("llmWebClient") WebClient llmWebClient) {
-        return new OpenAiStyleChatClient(llmWebClient, aiProps.timeoutSeconds());
-    }
-}
\ No newline at end of file
+}
@@ -1,9 +1,14 @@
 package ru.topwine.assistant.configuration;
 
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.time.Duration;
+import java.util.List;
+
 @ConfigurationProperties(prefix = "ai")
 public record AiProps(
         String provider,
@@ -12,6 +17,74 @@ public record AiProps(
         String apiKey,
         @Min(1) @Max(300) int timeoutSeconds,
         @Min(1) @Max(8192) int maxTokens,
-        @Min(0) @Max(2) double temperature
+        @Min(0) @Max(2) double temperature,
+        Limiter limiter,
+        List<String> endpoints,
+        Pool pool,
+        PromptLayout promptLayout
 ) {
-}
\ No newline at end of file
+
+    /**
+     * Раскладка сообщений промпта.
+     * <ul>
+     *     <li>PER_REQUEST — инструкция, затем один системный блок с меню и винами под конкретный запрос;</li>
+     *     <li>PREFIX_STABLE — инструкция и меню (в пределах prompt-budget.stable-prefix-tokens) в стабильном
+     *     порядке образуют одинаковый префикс, который провайдер переиспользует из KV-кэша; изменчивые вина
+     *     и вопрос гостя идут в конце.</li>
+     * </ul>
+     */
+    public enum PromptLayout {
+        PER_REQUEST,
+        PREFIX_STABLE
+    }
+
+    public boolean prefixStableLayout() {
+        return promptLayout == PromptLayout.PREFIX_STABLE;
+    }
+
+    /**
+     * Адреса всех бэкендов LLM; если список пуст, используется единственный {@code baseUrl}.
+     */
+    public List<String> effectiveEndpoints() {
+        if (endpoints == null || endpoints.isEmpty()) {
+            return List.of(baseUrl);
+        }
+        return endpoints;
+    }
+
+    /**
+     * Адаптивное ограничение одновременных генераций (AIMD по наблюдаемой задержке).
+     *
+     * @param latencyThreshold задержка, выше которой лимит уменьшается так же, как при таймауте
+     * @param backoffRatio     множитель лимита при перегрузке
+     * @param maxQueue         сколько запросов может ждать свободного слота; остальные получают отказ сразу
+     */
+    public record Limiter(
+            boolean enabled,
+            @Min(1) int initialLimit,
+            @Min(1) int minLimit,
+            @Min(1) int maxLimit,
+            @Min(0) int maxQueue,
+            Duration maxQueueWait,
+            Duration latencyThreshold,
+            @DecimalMin("0.1") @DecimalMax("0.95") double backoffRatio
+    ) {
+    }
+
+    /**
+     * Балансировка между несколькими бэкендами LLM.
+     *
+     * @param ejectAfterFailures сколько ошибок подряд выводят бэкенд из ротации
+     * @param ejectCooldown      на сколько бэкенд выводится из ротации
+     * @param hedgePercentile    перцентиль задержки, после которого дублируем запрос на свободный бэкенд
+     * @param hedgeMinDelay      нижняя граница задержки перед дублированием
+     */
+    public record Pool(
+            @Min(1) int ejectAfterFailures,
+            Duration ejectCooldown,
+            boolean hedgeEnabled,
+            @DecimalMin("0.5") @DecimalMax("0.999") double hedgePercentile,
+            Duration hedgeMinDelay
+    ) {
+    }
+}
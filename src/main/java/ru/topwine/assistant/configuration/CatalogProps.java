@@ -0,0 +1,40 @@
+package ru.topwine.assistant.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @param searchMode      где искать вина: {@code sql} — запросами к v_available_wines, {@code memory} — по снимку каталога
+ * @param refreshInterval как часто перечитывать снимок из БД в режиме {@code memory}
+ * @param wineSource      откуда SQL-запросы читают доступные вина: {@code view} — v_available_wines,
+ *                        {@code materialized} — таблица available_wine_mat, которую ведут триггеры (v022)
+ * @param versionTtl      сколько верить закэшированной версии каталога для ETag, если уведомление об изменении
+ *                        не пришло (например, change-notify выключен)
+ */
+@ConfigurationProperties(prefix = "catalog")
+public record CatalogProps(
+        SearchMode searchMode,
+        Duration refreshInterval,
+        WineSource wineSource,
+        Duration versionTtl
+) {
+
+    public enum SearchMode {
+        SQL,
+        MEMORY
+    }
+
+    public enum WineSource {
+        VIEW,
+        MATERIALIZED
+    }
+
+    public boolean inMemory() {
+        return searchMode == SearchMode.MEMORY;
+    }
+
+    public boolean materialized() {
+        return wineSource == WineSource.MATERIALIZED;
+    }
+}
@@ -0,0 +1,17 @@
+package ru.topwine.assistant.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @param pollTimeout     сколько ждать уведомлений за один опрос соединения
+ * @param reconnectDelay  пауза перед повторным подключением после обрыва
+ */
+@ConfigurationProperties(prefix = "change-notify")
+public record ChangeNotifyProps(
+        boolean enabled,
+        Duration pollTimeout,
+        Duration reconnectDelay
+) {
+}
@@ -0,0 +1,21 @@
+package ru.topwine.assistant.configuration;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @param maxParallelism сколько запросов к БД один чат-запрос может выполнять одновременно;
+ *                       держим заметно ниже spring.datasource.hikari.maximum-pool-size
+ * @param idCacheMaxSize сколько вин и блюд по id держать в кэше (отдельно для каждого)
+ * @param idCacheTtl     страховочный срок жизни записи; обычно запись сбрасывается по уведомлению об изменении
+ */
+@ConfigurationProperties(prefix = "lookup")
+public record LookupProps(
+        @Min(1) @Max(8) int maxParallelism,
+        @Min(1) int idCacheMaxSize,
+        Duration idCacheTtl
+) {
+}
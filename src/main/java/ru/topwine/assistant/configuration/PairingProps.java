@@ -0,0 +1,18 @@
+package ru.topwine.assistant.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * @param enabled         вести ли матрицу пар блюдо–вино; выключено — advise() всегда считает пару на лету
+ * @param initialDelay    через сколько после старта построить матрицу
+ * @param refreshInterval страховочный полный пересчёт; обычно пересчитываются только блюда, задетые уведомлениями
+ */
+@ConfigurationProperties(prefix = "pairing")
+public record PairingProps(
+        boolean enabled,
+        Duration initialDelay,
+        Duration refreshInterval
+) {
+}
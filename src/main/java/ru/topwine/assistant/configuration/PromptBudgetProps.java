@@ -0,0 +1,32 @@
+package ru.topwine.assistant.configuration;
+
+import jakarta.validation.constraints.Min;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import ru.topwine.assistant.model.enums.UserRequestType;
+
+import java.util.Map;
+
+/**
+ * Бюджет входных токенов промпта. На CPU время prefill растёт с длиной промпта,
+ * поэтому меню и список вин ужимаются, пока оценка не уложится в бюджет.
+ *
+ * @param inputTokens         бюджет по типу запроса; для отсутствующих типов берётся {@code defaultInputTokens}
+ * @param minWines            меньше стольких вин в промпте не оставляем, даже если бюджет превышен
+ * @param stablePrefixTokens  потолок неизменного префикса (инструкция и меню) при раскладке prefix-stable;
+ *                            один на все типы запросов, чтобы префикс не зависел от типа. Должен быть заметно
+ *                            меньше любого бюджета: остаток бюджета достаётся винам и профилю блюда
+ */
+@ConfigurationProperties(prefix = "prompt-budget")
+public record PromptBudgetProps(
+        boolean enabled,
+        @Min(256) int defaultInputTokens,
+        Map<UserRequestType, Integer> inputTokens,
+        @Min(1) int minWines,
+        @Min(256) int stablePrefixTokens
+) {
+
+    public int budgetFor(UserRequestType type) {
+        if (inputTokens == null || type == null) return defaultInputTokens;
+        return inputTokens.getOrDefault(type, defaultInputTokens);
+    }
+}
@@ -4,6 +4,15 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
-@EnableConfigurationProperties(AiProps.class)
+@EnableConfigurationProperties({
+        AiProps.class,
+        LookupProps.class,
+        ReplyCacheProps.class,
+        PromptBudgetProps.class,
+        WarmupProps.class,
+        CatalogProps.class,
+        ChangeNotifyProps.class,
+        PairingProps.class
+})
 public class PropsEnable {
 }
\ No newline at end of file
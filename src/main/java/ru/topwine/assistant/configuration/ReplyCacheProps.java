@@ -0,0 +1,14 @@
+package ru.topwine.assistant.configuration;
+
+import jakarta.validation.constraints.Min;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "reply-cache")
+public record ReplyCacheProps(
+        boolean enabled,
+        @Min(1) long maxSize,
+        Duration ttl
+) {
+}
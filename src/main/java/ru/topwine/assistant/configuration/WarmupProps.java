@@ -0,0 +1,54 @@
+package ru.topwine.assistant.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * Прогрев при старте и удержание модели в памяти в часы работы ресторана.
+ *
+ * @param messages    типовые вопросы гостей, которые прогоняются через полный путь advise()
+ * @param maxDuration сколько максимум ждём прогрев; по истечении узел всё равно становится готовым
+ */
+@ConfigurationProperties(prefix = "warmup")
+public record WarmupProps(
+        boolean enabled,
+        List<String> messages,
+        Duration maxDuration,
+        KeepAlive keepAlive
+) {
+
+    /**
+     * keep_alive для всех запросов к модели — и пингов, и запросов гостей; null, если не задан.
+     */
+    public String modelKeepAlive() {
+        return keepAlive == null ? null : keepAlive.modelTtl();
+    }
+
+    /**
+     * @param interval  период пинга; должен быть меньше {@code modelTtl}
+     * @param modelTtl  сколько модель держится в памяти после пинга или запроса гостя (keep_alive Ollama)
+     * @param from      начало часов работы (включительно); если {@code from} позже {@code to}, интервал идёт через полночь
+     * @param to        конец часов работы
+     */
+    public record KeepAlive(
+            boolean enabled,
+            Duration interval,
+            String modelTtl,
+            LocalTime from,
+            LocalTime to,
+            ZoneId zone
+    ) {
+
+        public boolean isServiceTime(LocalTime now) {
+            if (from == null || to == null) return true;
+            if (from.isBefore(to)) {
+                return !now.isBefore(from) && now.isBefore(to);
+            }
+            return !now.isBefore(from) || now.isBefore(to);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package ru.topwine.assistant.configuration;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.web.reactive.config.BlockingExecutionConfigurer;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+/**
+ * Контроллеры с синхронным возвращаемым значением (JDBC, Redis) не должны занимать event-loop:
+ * WebFlux выполняет их на виртуальных потоках, а реактивные методы остаются на event-loop.
+ */
+@Configuration
+public class WebFluxConfig implements WebFluxConfigurer {
+
+    @Override
+    public void configureBlockingExecution(BlockingExecutionConfigurer configurer) {
+        configurer.setExecutor(new VirtualThreadTaskExecutor("web-blocking-"));
+    }
+}
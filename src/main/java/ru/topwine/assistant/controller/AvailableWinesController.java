@@ -1,15 +1,26 @@
 package ru.topwine.assistant.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import ru.topwine.assistant.model.wine.AvailableWine;
 import ru.topwine.assistant.model.wine.AvailableWineFilter;
+import ru.topwine.assistant.model.wine.AvailableWinesPage;
+import ru.topwine.assistant.model.wine.CatalogVersion;
+import ru.topwine.assistant.model.wine.WineCursor;
 import ru.topwine.assistant.service.AvailableWinesService;
+import ru.topwine.assistant.service.catalog.CatalogVersionTracker;
 
 import java.util.List;
 
@@ -18,29 +29,125 @@ import java.util.List;
 @RequestMapping("/api")
 public class AvailableWinesController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    static final String JSON_REPRESENTATION = "json";
+    static final String NDJSON_REPRESENTATION = "ndjson";
+
     private final AvailableWinesService availableWinesService;
+    private final CatalogVersionTracker catalogVersionTracker;
 
+    /**
+     * Страница каталога. Курсор следующей страницы приходит в заголовке {@value #NEXT_CURSOR_HEADER}
+     * и передаётся обратно параметром {@code after}; на последней странице заголовка нет.
+     * <p>
+     * Ответ помечается версией каталога (ETag, Last-Modified): если каталог с прошлого опроса не менялся,
+     * отвечаем 304 без поиска и сериализации. ETag у JSON и NDJSON разный, плюс Vary: Accept — иначе кэш
+     * мог бы подтвердить сохранённый JSON для запроса NDJSON по тому же адресу.
+     */
     @GetMapping(value = "/available-wines", produces = "application/json; charset=UTF-8")
     public ResponseEntity<List<AvailableWine>> list(
+            @RequestParam(required = false) String q,
             @RequestParam(required = false) String color,
             @RequestParam(required = false) String country,
             @RequestParam(required = false) String region,
             @RequestParam(required = false) String grape,
+            @RequestParam(required = false) Integer minPriceRub,
             @RequestParam(required = false) Integer maxPriceRub,
-            @RequestParam(required = false, defaultValue = "200") Integer limit
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false, defaultValue = "200") Integer limit,
+            ServerWebExchange exchange
     ) {
-        AvailableWineFilter filter = new AvailableWineFilter(
-                null,
+        CatalogVersion version = catalogVersionTracker.current();
+        String etag = etagFor(version, JSON_REPRESENTATION);
+        if (notModified(exchange, version, etag)) {
+            return versioned(ResponseEntity.status(HttpStatus.NOT_MODIFIED), version, etag).build();
+        }
+
+        AvailableWineFilter filter = filter(q, color, country, region, grape, minPriceRub, maxPriceRub);
+        int safeLimit = Math.max(1, Math.min(500, limit));
+        AvailableWinesPage page = availableWinesService.page(filter, WineCursor.decode(after), safeLimit);
+
+        ResponseEntity.BodyBuilder response = versioned(ResponseEntity.ok(), version, etag)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor().encode());
+        }
+        return response.body(page.items());
+    }
+
+    /**
+     * Выгрузка всего подходящего каталога построчно (NDJSON), без лимита.
+     */
+    @GetMapping(value = "/available-wines", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<AvailableWine> export(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String color,
+            @RequestParam(required = false) String country,
+            @RequestParam(required = false) String region,
+            @RequestParam(required = false) String grape,
+            @RequestParam(required = false) Integer minPriceRub,
+            @RequestParam(required = false) Integer maxPriceRub,
+            ServerWebExchange exchange
+    ) {
+        HttpHeaders headers = exchange.getResponse().getHeaders();
+        headers.setVary(List.of(HttpHeaders.ACCEPT));
+        headers.setCacheControl(CacheControl.noCache());
+        AvailableWineFilter filter = filter(q, color, country, region, grape, minPriceRub, maxPriceRub);
+        // версия может потребовать запроса к БД через JDBC — не на event loop
+        return Mono.fromCallable(catalogVersionTracker::current)
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(version -> notModified(exchange, version, etagFor(version, NDJSON_REPRESENTATION))
+                        ? Flux.<AvailableWine>empty()
+                        : availableWinesService.export(filter));
+    }
+
+    /**
+     * Сверяет If-None-Match/If-Modified-Since с версией; при совпадении выставляет 304 и заголовки версии.
+     */
+    private static boolean notModified(ServerWebExchange exchange, CatalogVersion version, String etag) {
+        return version.lastModified() == null
+                ? exchange.checkNotModified(etag)
+                : exchange.checkNotModified(etag, version.lastModified());
+    }
+
+    /**
+     * ETag версии каталога с суффиксом представления: {@code "v1"} → {@code "v1-json"}.
+     */
+    static String etagFor(CatalogVersion version, String representation) {
+        String etag = version.etag();
+        return etag.endsWith("\"")
+                ? etag.substring(0, etag.length() - 1) + "-" + representation + "\""
+                : etag + "-" + representation;
+    }
+
+    /**
+     * no-cache: клиент может хранить ответ, но перед использованием обязан сверить версию.
+     */
+    private static ResponseEntity.BodyBuilder versioned(ResponseEntity.BodyBuilder builder, CatalogVersion version, String etag) {
+        builder.eTag(etag).varyBy(HttpHeaders.ACCEPT).cacheControl(CacheControl.noCache());
+        if (version.lastModified() != null) {
+            builder.lastModified(version.lastModified());
+        }
+        return builder;
+    }
+
+    private static AvailableWineFilter filter(String q,
+                                              String color,
+                                              String country,
+                                              String region,
+                                              String grape,
+                                              Integer minPriceRub,
+                                              Integer maxPriceRub) {
+        return new AvailableWineFilter(
+                q,
                 color,
                 country,
                 region,
                 grape,
+                minPriceRub,
                 maxPriceRub,
                 null,
                 null
         );
-        int safeLimit = Math.max(1, Math.min(500, limit));
-        List<AvailableWine> items = availableWinesService.search(filter, safeLimit);
-        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(items);
     }
 }
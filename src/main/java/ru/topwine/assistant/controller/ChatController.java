@@ -2,12 +2,17 @@ package ru.topwine.assistant.controller;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.topwine.assistant.exception.TopWineException;
 import ru.topwine.assistant.model.ChatRequest;
 import ru.topwine.assistant.model.ChatResponse;
 import ru.topwine.assistant.service.SommelierService;
@@ -24,16 +29,26 @@ public class ChatController {
     private final ConversationStore conversationStore;
 
     @PostMapping(value = "/chat", produces = "application/json; charset=UTF-8")
-    public ResponseEntity<ChatResponse> chat(
+    public Mono<ResponseEntity<ChatResponse>> chat(
             @RequestHeader(value = "X-Client-Id", required = false) String clientId,
             @Valid @RequestBody ChatRequest req
     ) {
-        String effectiveClientId = (clientId == null || clientId.isBlank())
-                ? "anon-" + UUID.randomUUID()
-                : clientId;
+        return sommelier.adviseReactive(resolveClientId(clientId), req.message())
+                .map(reply -> ResponseEntity.ok(new ChatResponse(reply)));
+    }
 
-        String reply = sommelier.advise(effectiveClientId, req.message());
-        return ResponseEntity.ok(new ChatResponse(reply));
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> chatStream(
+            @RequestHeader(value = "X-Client-Id", required = false) String clientId,
+            @Valid @RequestBody ChatRequest req
+    ) {
+        return sommelier.adviseStream(resolveClientId(clientId), req.message())
+                .map(chunk -> ServerSentEvent.builder(chunk).event("token").build())
+                .concatWith(Flux.just(ServerSentEvent.builder("").event("done").build()))
+                // после начала потока статус уже отправлен, поэтому ошибку отдаём отдельным событием
+                .onErrorResume(TopWineException.class, ex -> Flux.just(
+                        ServerSentEvent.builder(ex.getMessage()).event("error").build()
+                ));
     }
 
     @PostMapping("/conversation/reset")
@@ -41,4 +56,10 @@ public class ChatController {
         conversationStore.clear(clientId);
         return ResponseEntity.noContent().build();
     }
+
+    private String resolveClientId(String clientId) {
+        return (clientId == null || clientId.isBlank())
+                ? "anon-" + UUID.randomUUID()
+                : clientId;
+    }
 }
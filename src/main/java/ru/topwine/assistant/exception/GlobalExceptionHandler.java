@@ -1,6 +1,7 @@
 package ru.topwine.assistant.exception;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -13,6 +14,8 @@ import java.time.OffsetDateTime;
 @RestControllerAdvice
 public class GlobalExceptionHandler {
 
+    private static final int BUSY_RETRY_AFTER_SECONDS = 5;
+
     @ExceptionHandler(TopWineException.class)
     public ResponseEntity<ErrorResponse> handleTopWine(TopWineException exception, ServerWebExchange exchange) {
         HttpStatus httpStatus = mapStatus(exception.getKind());
@@ -27,7 +30,11 @@ public class GlobalExceptionHandler {
                 exchange.getRequest().getPath().value(),
                 exchange.getRequest().getId()
         );
-        return ResponseEntity.status(httpStatus).body(body);
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(httpStatus);
+        if (exception.getKind() == TopWineException.Kind.PROVIDER_BUSY) {
+            response.header(HttpHeaders.RETRY_AFTER, String.valueOf(BUSY_RETRY_AFTER_SECONDS));
+        }
+        return response.body(body);
     }
 
     @ExceptionHandler(Throwable.class)
@@ -52,6 +59,7 @@ public class GlobalExceptionHandler {
         return switch (kind) {
             case PROVIDER_TIMEOUT -> HttpStatus.GATEWAY_TIMEOUT;
             case PROVIDER_ERROR -> HttpStatus.BAD_GATEWAY;
+            case PROVIDER_BUSY -> HttpStatus.SERVICE_UNAVAILABLE;
             case VALIDATION -> HttpStatus.BAD_REQUEST;
             default -> HttpStatus.INTERNAL_SERVER_ERROR;
         };
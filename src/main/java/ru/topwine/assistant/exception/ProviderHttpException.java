@@ -0,0 +1,22 @@
+package ru.topwine.assistant.exception;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Провайдер LLM ответил HTTP-ошибкой. Код статуса нужен пулу бэкендов: 5xx — сбой бэкенда,
+ * 4xx — провайдер отверг сам запрос, и выводить бэкенд из ротации за это нельзя.
+ */
+@Getter
+@ToString(callSuper = true)
+@EqualsAndHashCode(callSuper = true)
+public class ProviderHttpException extends TopWineException {
+
+    private final int status;
+
+    public ProviderHttpException(int status, String body) {
+        super(Kind.PROVIDER_ERROR, "status=" + status + ", body=" + body);
+        this.status = status;
+    }
+}
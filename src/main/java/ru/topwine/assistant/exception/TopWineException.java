@@ -34,6 +34,7 @@ public class TopWineException extends RuntimeException {
         PROVIDER_TIMEOUT(1001, "Таймаут. Провайдер не ответил за %s секунд"),
         PROVIDER_ERROR(1002, "Ошибка провайдера: %s"),
         VALIDATION(1003, "Ошибка валидации: %s"),
+        PROVIDER_BUSY(1004, "Сомелье сейчас занят, повторите запрос через несколько секунд (%s)"),
         INTERNAL_ERROR(1999, "Внутренняя ошибка: %s");
 
         private final int code;
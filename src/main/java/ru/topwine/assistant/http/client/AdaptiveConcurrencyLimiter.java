@@ -0,0 +1,218 @@
+package ru.topwine.assistant.http.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+import ru.topwine.assistant.configuration.AiProps;
+import ru.topwine.assistant.exception.TopWineException;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Адаптивный лимит одновременных запросов к LLM (AIMD).
+ * <p>
+ * Быстрый ответ при достаточной загрузке увеличивает лимит примерно на единицу за «окно» из limit запросов,
+ * таймаут или ответ медленнее {@code latencyThreshold} умножает лимит на {@code backoffRatio}.
+ * Сверх лимита запросы ждут в ограниченной очереди, а при её переполнении или истечении ожидания
+ * сразу получают {@link TopWineException.Kind#PROVIDER_BUSY}.
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final Duration maxQueueWait;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+    private final Counter rejected;
+
+    private double limit;
+    private int inFlight;
+
+    public AdaptiveConcurrencyLimiter(AiProps.Limiter props, MeterRegistry meterRegistry) {
+        this.minLimit = Math.max(1, props.minLimit());
+        this.maxLimit = Math.max(minLimit, props.maxLimit());
+        this.maxQueue = Math.max(0, props.maxQueue());
+        this.maxQueueWait = props.maxQueueWait() == null ? Duration.ofSeconds(10) : props.maxQueueWait();
+        this.latencyThresholdNanos = (props.latencyThreshold() == null ? Duration.ofSeconds(15) : props.latencyThreshold()).toNanos();
+        this.backoffRatio = props.backoffRatio();
+        this.limit = clamp(props.initialLimit());
+
+        Gauge.builder("llm.limiter.limit", this, AdaptiveConcurrencyLimiter::currentLimit)
+                .description("Текущий допустимый параллелизм запросов к LLM")
+                .register(meterRegistry);
+        Gauge.builder("llm.limiter.in_flight", this, AdaptiveConcurrencyLimiter::inFlight)
+                .description("Запросы к LLM, выполняющиеся сейчас")
+                .register(meterRegistry);
+        Gauge.builder("llm.limiter.queue", this, AdaptiveConcurrencyLimiter::queueDepth)
+                .description("Запросы к LLM, ожидающие свободного слота")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("llm.limiter.rejected")
+                .description("Запросы к LLM, отклонённые из-за перегрузки")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Выдаёт разрешение сразу, ставит в очередь или отказывает. Разрешение обязательно вернуть через
+     * один из методов {@link Permit}; если подписчик отменился, пока ждал, разрешение вернётся само.
+     */
+    public Mono<Permit> acquire() {
+        return Mono.<Permit>create(sink -> {
+                    Permit granted = null;
+                    boolean reject = false;
+                    synchronized (this) {
+                        if (inFlight < currentLimit()) {
+                            inFlight++;
+                            granted = new Permit();
+                        } else if (waiters.size() < maxQueue) {
+                            Waiter waiter = new Waiter(sink);
+                            waiters.addLast(waiter);
+                            sink.onCancel(() -> abandon(waiter));
+                            waiter.timeoutTask = Schedulers.parallel().schedule(
+                                    () -> expire(waiter), maxQueueWait.toMillis(), TimeUnit.MILLISECONDS);
+                        } else {
+                            reject = true;
+                        }
+                    }
+                    if (granted != null) {
+                        sink.success(granted);
+                    } else if (reject) {
+                        sink.error(busy("очередь заполнена"));
+                    }
+                })
+                .doOnDiscard(Permit.class, Permit::ignore);
+    }
+
+    public synchronized int currentLimit() {
+        return (int) Math.floor(limit);
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    public synchronized int queueDepth() {
+        return waiters.size();
+    }
+
+    private void abandon(Waiter waiter) {
+        synchronized (this) {
+            waiters.remove(waiter);
+        }
+        waiter.disposeTimeout();
+    }
+
+    private void expire(Waiter waiter) {
+        boolean removed;
+        synchronized (this) {
+            removed = waiters.remove(waiter);
+        }
+        if (removed) {
+            waiter.sink.error(busy("ожидание дольше " + maxQueueWait.toSeconds() + " с"));
+        }
+    }
+
+    private TopWineException busy(String reason) {
+        rejected.increment();
+        log.warn("Запрос к LLM отклонён: {}, лимит={}, в работе={}, в очереди={}",
+                reason, currentLimit(), inFlight(), queueDepth());
+        return new TopWineException(TopWineException.Kind.PROVIDER_BUSY, reason);
+    }
+
+    private void release(long latencyNanos, Outcome outcome) {
+        Deque<Waiter> toGrant = new ArrayDeque<>();
+        synchronized (this) {
+            inFlight--;
+            adjustLimit(latencyNanos, outcome);
+            while (!waiters.isEmpty() && inFlight < currentLimit()) {
+                toGrant.addLast(waiters.pollFirst());
+                inFlight++;
+            }
+        }
+        for (Waiter waiter : toGrant) {
+            waiter.disposeTimeout();
+            waiter.sink.success(new Permit());
+        }
+    }
+
+    private void adjustLimit(long latencyNanos, Outcome outcome) {
+        double before = limit;
+        if (outcome == Outcome.DROPPED || (outcome == Outcome.SUCCESS && latencyNanos > latencyThresholdNanos)) {
+            limit = clamp(limit * backoffRatio);
+        } else if (outcome == Outcome.SUCCESS && inFlight + 1 >= limit / 2) {
+            // растим лимит только если он действительно используется, иначе он «уплывёт» вверх в тишине
+            limit = clamp(limit + 1.0 / limit);
+        }
+        if ((int) Math.floor(before) != (int) Math.floor(limit)) {
+            log.info("Лимит параллельных запросов к LLM: {} -> {}", (int) Math.floor(before), (int) Math.floor(limit));
+        }
+    }
+
+    private double clamp(double value) {
+        return Math.max(minLimit, Math.min(maxLimit, value));
+    }
+
+    private enum Outcome {
+        SUCCESS,
+        DROPPED,
+        IGNORED
+    }
+
+    private static final class Waiter {
+        private final MonoSink<Permit> sink;
+        private volatile Disposable timeoutTask;
+
+        private Waiter(MonoSink<Permit> sink) {
+            this.sink = sink;
+        }
+
+        private void disposeTimeout() {
+            Disposable task = timeoutTask;
+            if (task != null) task.dispose();
+        }
+    }
+
+    public final class Permit {
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        /**
+         * Запрос успешно завершён: задержка участвует в подстройке лимита.
+         */
+        public void success() {
+            releaseOnce(Outcome.SUCCESS);
+        }
+
+        /**
+         * Провайдер не справился (таймаут): лимит уменьшается.
+         */
+        public void dropped() {
+            releaseOnce(Outcome.DROPPED);
+        }
+
+        /**
+         * Запрос завершён без сигнала о нагрузке (ошибка клиента, отмена): лимит не меняется.
+         */
+        public void ignore() {
+            releaseOnce(Outcome.IGNORED);
+        }
+
+        private void releaseOnce(Outcome outcome) {
+            if (released.compareAndSet(false, true)) {
+                release(System.nanoTime() - startNanos, outcome);
+            }
+        }
+    }
+}
@@ -1,7 +1,35 @@
 package ru.topwine.assistant.http.client;
 
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import ru.topwine.assistant.http.request.OpenAiChatCompletionsRequest;
 
 public interface ChatClient {
-    String chat(OpenAiChatCompletionsRequest request);
-}
\ No newline at end of file
+
+    /**
+     * Неблокирующий вызов модели: полный текст ответа одним значением. Если модель ничего не ответила,
+     * Mono завершается пустым.
+     */
+    Mono<String> chatReactive(OpenAiChatCompletionsRequest request);
+
+    /**
+     * Блокирующий адаптер над {@link #chatReactive(OpenAiChatCompletionsRequest)} для синхронных вызывающих;
+     * null, если модель ничего не ответила.
+     */
+    default String chat(OpenAiChatCompletionsRequest request) {
+        return chatReactive(request).block();
+    }
+
+    /**
+     * Потоковая генерация: фрагменты текста в порядке их выдачи моделью.
+     */
+    Flux<String> stream(OpenAiChatCompletionsRequest request);
+
+    /**
+     * Служебный запрос, который держит модель загруженной. Обходит лимиты и объединение запросов;
+     * пул бэкендов отправляет его на каждый бэкенд, а не на один.
+     */
+    default Mono<Void> keepAlive(OpenAiChatCompletionsRequest request) {
+        return chatReactive(request).then();
+    }
+}
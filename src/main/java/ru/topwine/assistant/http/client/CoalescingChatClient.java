@@ -0,0 +1,101 @@
+package ru.topwine.assistant.http.client;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.topwine.assistant.http.request.OpenAiChatCompletionsRequest;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Single-flight поверх {@link ChatClient}: одновременные вызовы с побайтно одинаковым запросом
+ * разделяют один запрос к провайдеру и получают его результат. Потоковые подписчики,
+ * подключившиеся позже, получают уже выданные фрагменты с начала.
+ */
+@Slf4j
+public class CoalescingChatClient implements ChatClient {
+
+    private final ChatClient delegate;
+    private final ObjectMapper objectMapper;
+
+    private final ConcurrentMap<String, Mono<String>> inFlightCalls = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Flux<String>> inFlightStreams = new ConcurrentHashMap<>();
+
+    private final Counter collapsedCalls;
+    private final Counter collapsedStreams;
+
+    public CoalescingChatClient(ChatClient delegate, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.objectMapper = objectMapper;
+        this.collapsedCalls = Counter.builder("llm.requests.coalesced")
+                .description("Вызовы LLM, присоединённые к уже идущему идентичному запросу")
+                .tag("mode", "unary")
+                .register(meterRegistry);
+        this.collapsedStreams = Counter.builder("llm.requests.coalesced")
+                .description("Вызовы LLM, присоединённые к уже идущему идентичному запросу")
+                .tag("mode", "stream")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<String> chatReactive(OpenAiChatCompletionsRequest request) {
+        return Mono.defer(() -> {
+            String key = keyOf(request);
+            if (key == null) return delegate.chatReactive(request);
+
+            AtomicBoolean started = new AtomicBoolean(false);
+            Mono<String> shared = inFlightCalls.computeIfAbsent(key, k -> {
+                started.set(true);
+                return delegate.chatReactive(request)
+                        .doOnTerminate(() -> inFlightCalls.remove(k))
+                        .cache();
+            });
+            if (!started.get()) {
+                collapsedCalls.increment();
+                log.debug("Запрос к LLM присоединён к идущему идентичному запросу");
+            }
+            return shared;
+        });
+    }
+
+    @Override
+    public Mono<Void> keepAlive(OpenAiChatCompletionsRequest request) {
+        return delegate.keepAlive(request);
+    }
+
+    @Override
+    public Flux<String> stream(OpenAiChatCompletionsRequest request) {
+        return Flux.defer(() -> {
+            String key = keyOf(request);
+            if (key == null) return delegate.stream(request);
+
+            AtomicBoolean started = new AtomicBoolean(false);
+            Flux<String> shared = inFlightStreams.computeIfAbsent(key, k -> {
+                started.set(true);
+                return delegate.stream(request)
+                        .doOnTerminate(() -> inFlightStreams.remove(k))
+                        .cache();
+            });
+            if (!started.get()) {
+                collapsedStreams.increment();
+                log.debug("Потоковый запрос к LLM присоединён к идущему идентичному запросу");
+            }
+            return shared;
+        });
+    }
+
+    private String keyOf(OpenAiChatCompletionsRequest request) {
+        try {
+            return objectMapper.writeValueAsString(request);
+        } catch (JsonProcessingException e) {
+            log.warn("Не удалось сериализовать запрос для объединения: {}", e.getOriginalMessage());
+            return null;
+        }
+    }
+}
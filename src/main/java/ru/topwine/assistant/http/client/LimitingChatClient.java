@@ -0,0 +1,49 @@
+package ru.topwine.assistant.http.client;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.topwine.assistant.exception.TopWineException;
+import ru.topwine.assistant.http.request.OpenAiChatCompletionsRequest;
+
+/**
+ * Пропускает запросы к LLM через {@link AdaptiveConcurrencyLimiter}: таймауты провайдера уменьшают лимит,
+ * успешные ответы — подстраивают его по задержке.
+ */
+@RequiredArgsConstructor
+public class LimitingChatClient implements ChatClient {
+
+    private final ChatClient delegate;
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    @Override
+    public Mono<String> chatReactive(OpenAiChatCompletionsRequest request) {
+        return limiter.acquire()
+                .flatMap(permit -> delegate.chatReactive(request)
+                        .doOnSuccess(reply -> permit.success())
+                        .doOnError(ex -> releaseOnError(permit, ex))
+                        .doOnCancel(permit::ignore));
+    }
+
+    @Override
+    public Mono<Void> keepAlive(OpenAiChatCompletionsRequest request) {
+        return delegate.keepAlive(request);
+    }
+
+    @Override
+    public Flux<String> stream(OpenAiChatCompletionsRequest request) {
+        return limiter.acquire()
+                .flatMapMany(permit -> delegate.stream(request)
+                        .doOnComplete(permit::success)
+                        .doOnError(ex -> releaseOnError(permit, ex))
+                        .doOnCancel(permit::ignore));
+    }
+
+    private void releaseOnError(AdaptiveConcurrencyLimiter.Permit permit, Throwable ex) {
+        if (ex instanceof TopWineException te && te.getKind() == TopWineException.Kind.PROVIDER_TIMEOUT) {
+            permit.dropped();
+        } else {
+            permit.ignore();
+        }
+    }
+}
@@ -1,37 +1,63 @@
 package ru.topwine.assistant.http.client;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.netty.http.client.PrematureCloseException;
+import ru.topwine.assistant.exception.ProviderHttpException;
 import ru.topwine.assistant.exception.TopWineException;
 import ru.topwine.assistant.http.request.OpenAiChatCompletionsRequest;
+import ru.topwine.assistant.http.response.OpenAiChatCompletionsChunkResponse;
 import ru.topwine.assistant.http.response.OpenAiChatCompletionsResponse;
+import ru.topwine.assistant.http.response.OpenAiTimingsResponse;
+import ru.topwine.assistant.http.response.OpenAiUsageResponse;
 
 import java.net.SocketTimeoutException;
 import java.net.http.HttpTimeoutException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @RequiredArgsConstructor
 public class OpenAiStyleChatClient implements ChatClient {
 
+    private static final String STREAM_DONE_MARKER = "[DONE]";
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_OF_STRING =
+            new ParameterizedTypeReference<>() {
+            };
+
     private final WebClient httpClient;
     private final int timeoutSeconds;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
 
     @Override
-    public String chat(OpenAiChatCompletionsRequest request) {
-        long startNanos = System.nanoTime();
-        try {
+    public Mono<String> chatReactive(OpenAiChatCompletionsRequest request) {
+        return Mono.defer(() -> {
+            long startNanos = System.nanoTime();
+
             log.info("Запрос к LLM начат: модель={}, сообщений={}",
                     request.model(),
                     request.messages() == null ? 0 : request.messages().size());
 
-            OpenAiChatCompletionsResponse response = httpClient
+            return httpClient
                     .post()
                     .uri("/chat/completions")
                     .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
@@ -41,34 +67,154 @@ public class OpenAiStyleChatClient implements ChatClient {
                             HttpStatusCode::isError,
                             clientResponse -> clientResponse.bodyToMono(String.class)
                                     .defaultIfEmpty("<empty body>")
-                                    .map(body -> new TopWineException(
-                                            TopWineException.Kind.PROVIDER_ERROR,
-                                            "status=" + clientResponse.statusCode() + ", body=" + body
-                                    ))
+                                    .map(body -> new ProviderHttpException(clientResponse.statusCode().value(), body))
                     )
                     .bodyToMono(OpenAiChatCompletionsResponse.class)
-                    .block();
-
-            long tookMs = (System.nanoTime() - startNanos) / 1_000_000;
-            String text = (response == null) ? "" : response.firstMessageContent().orElse("");
-            log.info("Запрос к LLM успешен: время={} мс, символов={}", tookMs, text.length());
-
-            return response == null
-                    ? "Модель не вернула ответ."
-                    : response.firstNonBlankMessageContent().orElse("Пустой ответ от модели.");
-
-        } catch (Throwable ex) {
-            long tookMs = (System.nanoTime() - startNanos) / 1_000_000;
-            log.error("Запрос к LLM завершился ошибкой: время={} мс, ошибка={}", tookMs, ex.toString());
-
-            if (ex instanceof TopWineException te) {
-                throw te;
-            }
-            if (isTimeoutThrowable(ex)) {
-                throw new TopWineException(TopWineException.Kind.PROVIDER_TIMEOUT, timeoutSeconds);
-            }
-            throw new TopWineException(TopWineException.Kind.PROVIDER_ERROR, ex.getMessage());
+                    .flatMap(response -> {
+                        long tookMs = (System.nanoTime() - startNanos) / 1_000_000;
+                        String text = response.firstMessageContent().orElse("");
+                        log.info("Запрос к LLM успешен: время={} мс, символов={}", tookMs, text.length());
+                        recordUsage(response.usage());
+                        recordTimings(response.timings());
+                        // пустой ответ — пустой Mono: заглушку подставляет вызывающий, и в кэш ответов она не попадёт
+                        return Mono.justOrEmpty(response.firstNonBlankMessageContent());
+                    })
+                    .onErrorMap(ex -> {
+                        long tookMs = (System.nanoTime() - startNanos) / 1_000_000;
+                        log.error("Запрос к LLM завершился ошибкой: время={} мс, ошибка={}", tookMs, ex.toString());
+                        return toTopWineException(ex);
+                    });
+        });
+    }
+
+    @Override
+    public Flux<String> stream(OpenAiChatCompletionsRequest request) {
+        OpenAiChatCompletionsRequest streamingRequest = request.toBuilder()
+                .stream(true)
+                .streamOptions(Map.of("include_usage", true))
+                .build();
+
+        return Flux.defer(() -> {
+            long startNanos = System.nanoTime();
+            AtomicBoolean firstTokenSeen = new AtomicBoolean(false);
+            AtomicInteger totalChars = new AtomicInteger();
+
+            log.info("Потоковый запрос к LLM начат: модель={}, сообщений={}",
+                    streamingRequest.model(),
+                    streamingRequest.messages() == null ? 0 : streamingRequest.messages().size());
+
+            return httpClient
+                    .post()
+                    .uri("/chat/completions")
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .accept(MediaType.TEXT_EVENT_STREAM)
+                    .bodyValue(streamingRequest)
+                    .retrieve()
+                    .onStatus(
+                            HttpStatusCode::isError,
+                            clientResponse -> clientResponse.bodyToMono(String.class)
+                                    .defaultIfEmpty("<empty body>")
+                                    .map(body -> new ProviderHttpException(clientResponse.statusCode().value(), body))
+                    )
+                    .bodyToFlux(SSE_OF_STRING)
+                    .map(ServerSentEvent::data)
+                    .filter(Objects::nonNull)
+                    .takeWhile(data -> !STREAM_DONE_MARKER.equals(data.trim()))
+                    .map(this::parseChunk)
+                    .doOnNext(chunk -> {
+                        recordUsage(chunk.usage());
+                        recordTimings(chunk.timings());
+                    })
+                    .map(OpenAiChatCompletionsChunkResponse::firstDeltaContent)
+                    .filter(chunk -> !chunk.isEmpty())
+                    .doOnNext(chunk -> {
+                        totalChars.addAndGet(chunk.length());
+                        if (firstTokenSeen.compareAndSet(false, true)) {
+                            long ttftNanos = System.nanoTime() - startNanos;
+                            log.info("Первый токен от LLM: время={} мс", ttftNanos / 1_000_000);
+                            Timer.builder("llm.stream.first_token")
+                                    .description("Время до первого токена потокового ответа (prefill и очередь провайдера)")
+                                    .register(meterRegistry)
+                                    .record(ttftNanos, TimeUnit.NANOSECONDS);
+                        }
+                    })
+                    .doOnComplete(() -> log.info("Потоковый запрос к LLM успешен: время={} мс, символов={}",
+                            (System.nanoTime() - startNanos) / 1_000_000, totalChars.get()))
+                    .onErrorMap(ex -> {
+                        log.error("Потоковый запрос к LLM завершился ошибкой: время={} мс, ошибка={}",
+                                (System.nanoTime() - startNanos) / 1_000_000, ex.toString());
+                        return toTopWineException(ex);
+                    });
+        });
+    }
+
+    private OpenAiChatCompletionsChunkResponse parseChunk(String data) {
+        try {
+            return objectMapper.readValue(data, OpenAiChatCompletionsChunkResponse.class);
+        } catch (JsonProcessingException e) {
+            throw new TopWineException(TopWineException.Kind.PROVIDER_ERROR, "некорректный чанк потока: " + e.getOriginalMessage());
+        }
+    }
+
+    /**
+     * Usage из OpenAI-совместимого ответа. cached_tokens показывает, сколько стабильного префикса
+     * провайдер взял из KV-кэша; если провайдер поле не прислал, метрику не пишем.
+     */
+    private void recordUsage(OpenAiUsageResponse usage) {
+        if (usage == null) return;
+
+        log.info("Использование LLM: токенов промпта={}, из кэша={}, токенов ответа={}",
+                usage.promptTokens(), usage.cachedPromptTokens(), usage.completionTokens());
+
+        if (usage.promptTokens() != null) {
+            summary("llm.usage.prompt_tokens", "Токены промпта по данным провайдера").record(usage.promptTokens());
+        }
+        if (usage.completionTokens() != null) {
+            summary("llm.usage.completion_tokens", "Токены ответа по данным провайдера").record(usage.completionTokens());
+        }
+        if (usage.cachedPromptTokens() != null) {
+            summary("llm.usage.cached_prompt_tokens", "Токены промпта из кэша префикса по данным провайдера")
+                    .record(usage.cachedPromptTokens());
+        }
+    }
+
+    /**
+     * Время prefill по данным провайдера (llama.cpp). Ollama и OpenAI его не присылают — тогда метрики нет,
+     * а задержку prefill видно по llm.stream.first_token.
+     */
+    private void recordTimings(OpenAiTimingsResponse timings) {
+        if (timings == null || timings.promptMs() == null) return;
+
+        log.info("Тайминги LLM: токенов prefill={}, prefill={} мс, токенов ответа={}, генерация={} мс",
+                timings.promptTokens(), Math.round(timings.promptMs()),
+                timings.predictedTokens(), timings.predictedMs() == null ? null : Math.round(timings.predictedMs()));
+
+        Timer.builder("llm.provider.prompt_eval")
+                .description("Время prefill по данным провайдера")
+                .register(meterRegistry)
+                .record(Math.round(timings.promptMs() * 1_000_000), TimeUnit.NANOSECONDS);
+        if (timings.promptTokens() != null) {
+            summary("llm.usage.prompt_eval_tokens", "Токены промпта, вычисленные без KV-кэша").record(timings.promptTokens());
+        }
+    }
+
+    private DistributionSummary summary(String name, String description) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .baseUnit("tokens")
+                .register(meterRegistry);
+    }
+
+    private TopWineException toTopWineException(Throwable ex) {
+        if (ex instanceof TopWineException te) {
+            return te;
         }
+        TopWineException mapped = isTimeoutThrowable(ex)
+                ? new TopWineException(TopWineException.Kind.PROVIDER_TIMEOUT, timeoutSeconds)
+                : new TopWineException(TopWineException.Kind.PROVIDER_ERROR, ex.getMessage());
+        // исходная ошибка нужна пулу бэкендов, чтобы отличить обрыв соединения от прочих сбоев
+        mapped.initCause(ex);
+        return mapped;
     }
 
     private boolean isTimeoutThrowable(Throwable t) {
@@ -0,0 +1,274 @@
+package ru.topwine.assistant.http.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.topwine.assistant.configuration.AiProps;
+import ru.topwine.assistant.exception.ProviderHttpException;
+import ru.topwine.assistant.exception.TopWineException;
+import ru.topwine.assistant.http.request.OpenAiChatCompletionsRequest;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Распределяет запросы между несколькими бэкендами LLM.
+ * <p>
+ * Запрос уходит на здоровый бэкенд с наименьшим числом незавершённых запросов. После
+ * {@code ejectAfterFailures} сбоев подряд (нет соединения, таймаут, 5xx) бэкенд выводится из ротации
+ * на {@code ejectCooldown}.
+ * Если включено дублирование, обычный запрос, не ответивший за перцентиль наблюдаемой задержки,
+ * повторяется на простаивающем бэкенде, и побеждает первый ответ. Потоковые запросы не дублируются.
+ */
+@Slf4j
+public class PooledChatClient implements ChatClient {
+
+    private static final int LATENCY_WINDOW = 256;
+    private static final int MIN_LATENCY_SAMPLES = 20;
+
+    private final List<Backend> backends;
+    private final int ejectAfterFailures;
+    private final long ejectCooldownNanos;
+    private final boolean hedgeEnabled;
+    private final double hedgePercentile;
+    private final Duration hedgeMinDelay;
+
+    private final long[] latencies = new long[LATENCY_WINDOW];
+    private final AtomicInteger rotation = new AtomicInteger();
+    private final Counter hedged;
+    private int latencyCount;
+    private int latencyCursor;
+
+    public record Endpoint(String name, ChatClient client) {
+    }
+
+    public PooledChatClient(List<Endpoint> endpoints, AiProps.Pool props, MeterRegistry meterRegistry) {
+        if (endpoints == null || endpoints.isEmpty()) {
+            throw new IllegalArgumentException("Не задан ни один бэкенд LLM");
+        }
+        this.backends = endpoints.stream().map(Backend::new).toList();
+        this.ejectAfterFailures = props == null ? 3 : Math.max(1, props.ejectAfterFailures());
+        this.ejectCooldownNanos = (props == null || props.ejectCooldown() == null
+                ? Duration.ofSeconds(30) : props.ejectCooldown()).toNanos();
+        this.hedgeEnabled = props != null && props.hedgeEnabled() && backends.size() > 1;
+        this.hedgePercentile = props == null ? 0.95 : props.hedgePercentile();
+        this.hedgeMinDelay = props == null || props.hedgeMinDelay() == null ? Duration.ofSeconds(3) : props.hedgeMinDelay();
+
+        for (Backend backend : backends) {
+            Gauge.builder("llm.pool.outstanding", backend.outstanding, AtomicInteger::get)
+                    .description("Незавершённые запросы к бэкенду LLM")
+                    .tag("endpoint", backend.name)
+                    .register(meterRegistry);
+            Gauge.builder("llm.pool.healthy", backend, b -> b.isEjected(System.nanoTime()) ? 0 : 1)
+                    .description("Бэкенд LLM в ротации (1) или выведен (0)")
+                    .tag("endpoint", backend.name)
+                    .register(meterRegistry);
+            backend.ejections = Counter.builder("llm.pool.ejected")
+                    .description("Выводы бэкенда LLM из ротации")
+                    .tag("endpoint", backend.name)
+                    .register(meterRegistry);
+        }
+        this.hedged = Counter.builder("llm.pool.hedged")
+                .description("Запросы к LLM, продублированные на второй бэкенд")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<String> chatReactive(OpenAiChatCompletionsRequest request) {
+        return Mono.defer(() -> {
+            Backend primary = pick(null);
+            Duration delay = hedgeEnabled ? hedgeDelay() : null;
+            if (delay == null) {
+                return call(primary, request);
+            }
+            // пустой ответ основного бэкенда — тоже результат: ждать дубля ради него не нужно
+            Mono<Optional<String>> first = call(primary, request).map(Optional::of).defaultIfEmpty(Optional.empty());
+
+            Mono<Optional<String>> second = Mono.delay(delay).then(Mono.defer(() -> {
+                Backend backup = pick(primary);
+                // дублируем только на простаивающий бэкенд, иначе под нагрузкой хеджирование её удвоит
+                if (backup == null || backup.outstanding.get() > 0) {
+                    return Mono.<Optional<String>>empty();
+                }
+                hedged.increment();
+                log.info("Запрос к LLM дублирован: {} не ответил за {} мс, второй бэкенд {}",
+                        primary.name, delay.toMillis(), backup.name);
+                return call(backup, request).map(Optional::of).defaultIfEmpty(Optional.empty());
+            }));
+
+            return Mono.firstWithValue(first, second)
+                    .onErrorMap(this::unwrapHedgeError)
+                    .flatMap(Mono::justOrEmpty);
+        });
+    }
+
+    @Override
+    public Flux<String> stream(OpenAiChatCompletionsRequest request) {
+        return Flux.defer(() -> {
+            Backend backend = pick(null);
+            long startNanos = System.nanoTime();
+            backend.outstanding.incrementAndGet();
+            return backend.client.stream(request)
+                    .doOnComplete(() -> onSuccess(backend, System.nanoTime() - startNanos, false))
+                    .doOnError(ex -> onFailure(backend, ex))
+                    .doFinally(signal -> backend.outstanding.decrementAndGet());
+        });
+    }
+
+    @Override
+    public Mono<Void> keepAlive(OpenAiChatCompletionsRequest request) {
+        return Flux.fromIterable(backends)
+                .flatMap(backend -> backend.client.keepAlive(request)
+                        .doOnError(ex -> log.warn("Keep-alive бэкенда LLM {} не удался: {}", backend.name, ex.toString()))
+                        .onErrorResume(ex -> Mono.empty()))
+                .then();
+    }
+
+    private Mono<String> call(Backend backend, OpenAiChatCompletionsRequest request) {
+        return Mono.defer(() -> {
+            long startNanos = System.nanoTime();
+            backend.outstanding.incrementAndGet();
+            return backend.client.chatReactive(request)
+                    .doOnSuccess(reply -> onSuccess(backend, System.nanoTime() - startNanos, true))
+                    .doOnError(ex -> onFailure(backend, ex))
+                    .doFinally(signal -> backend.outstanding.decrementAndGet());
+        });
+    }
+
+    /**
+     * Здоровый бэкенд с наименьшим числом незавершённых запросов; при равенстве — по кругу.
+     * Если выведены все, берём тот, что вернётся в ротацию раньше: отказ хуже лишней попытки.
+     */
+    private Backend pick(Backend exclude) {
+        long now = System.nanoTime();
+        int size = backends.size();
+        int start = Math.floorMod(rotation.getAndIncrement(), size);
+
+        Backend best = null;
+        Backend soonest = null;
+        for (int i = 0; i < size; i++) {
+            Backend candidate = backends.get((start + i) % size);
+            if (candidate == exclude) continue;
+            if (candidate.isEjected(now)) {
+                if (soonest == null || candidate.ejectedUntil.get() < soonest.ejectedUntil.get()) {
+                    soonest = candidate;
+                }
+                continue;
+            }
+            if (best == null || candidate.outstanding.get() < best.outstanding.get()) {
+                best = candidate;
+            }
+        }
+        if (best != null) return best;
+        // для дубля нет смысла идти на выведенный бэкенд
+        return exclude == null ? soonest : null;
+    }
+
+    private void onSuccess(Backend backend, long latencyNanos, boolean recordLatency) {
+        backend.consecutiveFailures.set(0);
+        if (recordLatency) {
+            recordLatency(latencyNanos);
+        }
+    }
+
+    private void onFailure(Backend backend, Throwable ex) {
+        if (!isBackendFault(ex)) {
+            return;
+        }
+        int failures = backend.consecutiveFailures.incrementAndGet();
+        if (failures >= ejectAfterFailures) {
+            backend.consecutiveFailures.set(0);
+            backend.ejectedUntil.set(System.nanoTime() + ejectCooldownNanos);
+            backend.ejections.increment();
+            log.warn("Бэкенд LLM {} выведен из ротации на {} с после {} ошибок подряд: {}",
+                    backend.name, Duration.ofNanos(ejectCooldownNanos).toSeconds(), failures, ex.toString());
+        }
+    }
+
+    /**
+     * Из ротации выводят только сбои самого бэкенда: нет соединения, таймаут, 5xx. Ответ 4xx значит,
+     * что провайдер отверг сам запрос, а отказ лимитера — что занят наш процесс; другой бэкенд тут не поможет.
+     */
+    static boolean isBackendFault(Throwable ex) {
+        if (ex instanceof ProviderHttpException http) {
+            return http.getStatus() >= 500;
+        }
+        if (ex instanceof TopWineException te && te.getKind() == TopWineException.Kind.PROVIDER_TIMEOUT) {
+            return true;
+        }
+        for (Throwable t = ex; t != null; t = t.getCause()) {
+            if (t instanceof WebClientRequestException || t instanceof ConnectException || t instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void recordLatency(long latencyNanos) {
+        latencies[latencyCursor] = latencyNanos;
+        latencyCursor = (latencyCursor + 1) % LATENCY_WINDOW;
+        latencyCount = Math.min(latencyCount + 1, LATENCY_WINDOW);
+    }
+
+    /**
+     * Задержка перед дублированием: перцентиль последних успешных ответов, но не меньше {@code hedgeMinDelay}.
+     * Пока статистики мало, не дублируем.
+     */
+    private synchronized Duration hedgeDelay() {
+        if (latencyCount < MIN_LATENCY_SAMPLES) {
+            return null;
+        }
+        long[] sorted = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(sorted);
+        int index = Math.min(sorted.length - 1, (int) Math.ceil(hedgePercentile * sorted.length) - 1);
+        Duration percentile = Duration.ofNanos(sorted[Math.max(0, index)]);
+        return percentile.compareTo(hedgeMinDelay) < 0 ? hedgeMinDelay : percentile;
+    }
+
+    /**
+     * {@link Mono#firstWithValue} при неудаче обоих запросов отдаёт NoSuchElementException;
+     * наружу пробрасываем исходную ошибку провайдера. Пустой ответ сюда не доходит: он приходит как Optional.empty().
+     */
+    private Throwable unwrapHedgeError(Throwable ex) {
+        if (ex instanceof NoSuchElementException && ex.getCause() != null) {
+            for (Throwable cause : Exceptions.unwrapMultiple(ex.getCause())) {
+                if (cause instanceof TopWineException) {
+                    return cause;
+                }
+            }
+            return new TopWineException(TopWineException.Kind.PROVIDER_ERROR, ex.getCause().getMessage());
+        }
+        return ex;
+    }
+
+    private static final class Backend {
+        private final String name;
+        private final ChatClient client;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private final AtomicLong ejectedUntil = new AtomicLong(Long.MIN_VALUE);
+        private Counter ejections;
+
+        private Backend(Endpoint endpoint) {
+            this.name = endpoint.name();
+            this.client = endpoint.client();
+        }
+
+        private boolean isEjected(long now) {
+            long until = ejectedUntil.get();
+            return until != Long.MIN_VALUE && now - until < 0;
+        }
+    }
+}
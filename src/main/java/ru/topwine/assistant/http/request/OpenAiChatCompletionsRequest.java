@@ -1,5 +1,6 @@
 package ru.topwine.assistant.http.request;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Builder;
 import ru.topwine.assistant.model.ApiChatMessage;
@@ -7,11 +8,14 @@ import ru.topwine.assistant.model.ApiChatMessage;
 import java.util.List;
 import java.util.Map;
 
-@Builder
+@Builder(toBuilder = true)
 public record OpenAiChatCompletionsRequest(String model,
                                            List<ApiChatMessage> messages,
                                            Double temperature,
                                            @JsonProperty("max_tokens") Integer maxTokens,
                                            List<String> stop,
-                                           @JsonProperty("options") Map<String, Object> options) {
-}
\ No newline at end of file
+                                           @JsonProperty("options") Map<String, Object> options,
+                                           @JsonInclude(JsonInclude.Include.NON_NULL) Boolean stream,
+                                           @JsonProperty("stream_options")
+                                           @JsonInclude(JsonInclude.Include.NON_NULL) Map<String, Object> streamOptions) {
+}
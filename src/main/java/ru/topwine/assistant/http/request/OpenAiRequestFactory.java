@@ -30,7 +30,8 @@ public final class OpenAiRequestFactory {
             String systemPrompt,
             List<ChatMessage> domainMessages,
             double temperature,
-            int maxTokens
+            int maxTokens,
+            String keepAlive
     ) {
         List<ApiChatMessage> apiMessages = new ArrayList<>();
 
@@ -53,7 +54,8 @@ public final class OpenAiRequestFactory {
         }
 
         Map<String, Object> options = new HashMap<>();
-        options.put("keep_alive", KEEP_ALIVE_DEFAULT);
+        // один и тот же keep_alive у пингов и у запросов гостей: иначе каждый запрос сбрасывает TTL модели
+        options.put("keep_alive", keepAlive == null || keepAlive.isBlank() ? KEEP_ALIVE_DEFAULT : keepAlive);
         options.put("num_thread", computeNumThreads());
 
         return OpenAiChatCompletionsRequest.builder()
@@ -66,6 +68,13 @@ public final class OpenAiRequestFactory {
                 .build();
     }
 
+    /**
+     * Минимальный запрос на один токен: модель остаётся загруженной ещё {@code keepAlive}.
+     */
+    public static OpenAiChatCompletionsRequest keepAlivePing(String model, String keepAlive) {
+        return build(model, null, List.of(ChatMessage.user("ping")), 0.0, 1, keepAlive);
+    }
+
     private static int computeNumThreads() {
         int logicalCpus = Runtime.getRuntime().availableProcessors();
         int threads = Math.max(1, logicalCpus - 1);
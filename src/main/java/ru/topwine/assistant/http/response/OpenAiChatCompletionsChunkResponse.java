@@ -0,0 +1,24 @@
+package ru.topwine.assistant.http.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.Builder;
+
+import java.util.List;
+
+/**
+ * Один SSE-чанк ответа /chat/completions при stream=true.
+ * Usage и timings приходят только в последнем чанке (usage — при stream_options.include_usage).
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@Builder
+public record OpenAiChatCompletionsChunkResponse(List<OpenAiChunkChoiceResponse> choices,
+                                                 OpenAiUsageResponse usage,
+                                                 OpenAiTimingsResponse timings) {
+
+    public String firstDeltaContent() {
+        if (choices == null || choices.isEmpty()) return "";
+        OpenAiChunkChoiceResponse first = choices.getFirst();
+        if (first == null || first.delta() == null || first.delta().content() == null) return "";
+        return first.delta().content();
+    }
+}
@@ -8,7 +8,9 @@ import java.util.Optional;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 @Builder
-public record OpenAiChatCompletionsResponse(List<OpenAiChoiceResponse> choices) {
+public record OpenAiChatCompletionsResponse(List<OpenAiChoiceResponse> choices,
+                                            OpenAiUsageResponse usage,
+                                            OpenAiTimingsResponse timings) {
 
     public Optional<String> firstMessageContent() {
         if (choices == null || choices.isEmpty()) return Optional.empty();
@@ -26,4 +28,4 @@ public record OpenAiChatCompletionsResponse(List<OpenAiChoiceResponse> choices)
                 .map(OpenAiMessageResponse::content)
                 .findFirst();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,11 @@
+package ru.topwine.assistant.http.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Builder;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+@Builder
+public record OpenAiChunkChoiceResponse(OpenAiMessageResponse delta,
+                                        @JsonProperty("finish_reason") String finishReason) {
+}
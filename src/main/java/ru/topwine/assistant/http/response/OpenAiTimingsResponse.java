@@ -0,0 +1,17 @@
+package ru.topwine.assistant.http.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Builder;
+
+/**
+ * Блок timings, который llama.cpp server добавляет к ответу /v1/chat/completions (в потоке — к последнему чанку).
+ * Ollama и OpenAI его не присылают, тогда поле ответа равно null.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@Builder
+public record OpenAiTimingsResponse(@JsonProperty("prompt_n") Integer promptTokens,
+                                    @JsonProperty("prompt_ms") Double promptMs,
+                                    @JsonProperty("predicted_n") Integer predictedTokens,
+                                    @JsonProperty("predicted_ms") Double predictedMs) {
+}
@@ -0,0 +1,25 @@
+package ru.topwine.assistant.http.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Builder;
+
+/**
+ * Блок usage ответа /chat/completions. prompt_tokens_details.cached_tokens — сколько токенов промпта
+ * провайдер взял из кэша префикса; присылают не все провайдеры.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@Builder
+public record OpenAiUsageResponse(@JsonProperty("prompt_tokens") Integer promptTokens,
+                                  @JsonProperty("completion_tokens") Integer completionTokens,
+                                  @JsonProperty("total_tokens") Integer totalTokens,
+                                  @JsonProperty("prompt_tokens_details") PromptTokensDetails promptTokensDetails) {
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public record PromptTokensDetails(@JsonProperty("cached_tokens") Integer cachedTokens) {
+    }
+
+    public Integer cachedPromptTokens() {
+        return promptTokensDetails == null ? null : promptTokensDetails.cachedTokens();
+    }
+}
@@ -12,4 +12,7 @@ public record DishContext(
         List<String> tagNames,
         AvailableWineFilter dishFilter
 ) {
-}
\ No newline at end of file
+    public DishContext withDishFilter(AvailableWineFilter filter) {
+        return new DishContext(dish, profile, tagNames, filter);
+    }
+}
@@ -0,0 +1,42 @@
+package ru.topwine.assistant.model.change;
+
+import ru.topwine.assistant.model.enums.ChangedTable;
+
+/**
+ * Изменение строки в БД.
+ *
+ * @param table таблица; null для {@link Operation#RESYNC}
+ * @param id    ключ строки (для dish_profile, dish_tag, dish_wine_filter — dish_id); null для TRUNCATE и RESYNC
+ */
+public record DataChangeEvent(ChangedTable table, Operation operation, Long id) {
+
+    public enum Operation {
+        INSERT,
+        UPDATE,
+        DELETE,
+        TRUNCATE,
+        /**
+         * Часть уведомлений могла потеряться (например, обрыв соединения): всё нужно перечитать.
+         */
+        RESYNC
+    }
+
+    public static DataChangeEvent resync() {
+        return new DataChangeEvent(null, Operation.RESYNC, null);
+    }
+
+    public boolean isResync() {
+        return operation == Operation.RESYNC;
+    }
+
+    /**
+     * Событие касается одной из таблиц; RESYNC касается всех.
+     */
+    public boolean affects(ChangedTable... tables) {
+        if (isResync()) return true;
+        for (ChangedTable candidate : tables) {
+            if (candidate == table) return true;
+        }
+        return false;
+    }
+}
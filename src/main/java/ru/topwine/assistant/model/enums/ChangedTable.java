@@ -0,0 +1,34 @@
+package ru.topwine.assistant.model.enums;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Таблицы, об изменениях в которых БД сообщает через pg_notify (см. v020-create-change-notify-triggers).
+ */
+public enum ChangedTable {
+    WINE_ITEM("wine_item"),
+    WINE_STOCK("wine_stock"),
+    MENU_SECTION("menu_section"),
+    MENU_DISH("menu_dish"),
+    DISH_PROFILE("dish_profile"),
+    TAG("tag"),
+    DISH_TAG("dish_tag"),
+    DISH_WINE_FILTER("dish_wine_filter");
+
+    private final String tableName;
+
+    ChangedTable(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public String tableName() {
+        return tableName;
+    }
+
+    public static Optional<ChangedTable> fromTableName(String tableName) {
+        return Arrays.stream(values())
+                .filter(t -> t.tableName.equalsIgnoreCase(tableName))
+                .findFirst();
+    }
+}
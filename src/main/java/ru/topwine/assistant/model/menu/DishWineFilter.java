@@ -1,9 +1,9 @@
 package ru.topwine.assistant.model.menu;
 
-import java.util.Map;
+import ru.topwine.assistant.model.wine.AvailableWineFilter;
 
 public record DishWineFilter(
         Long dishId,
-        Map<String, Object> filter
+        AvailableWineFilter filter
 ) {
-}
\ No newline at end of file
+}
@@ -0,0 +1,17 @@
+package ru.topwine.assistant.model.session;
+
+import ru.topwine.assistant.model.wine.AvailableWineFilter;
+
+import java.util.List;
+
+/**
+ * Один обмен репликами: что добавить в историю диалога и что гостю показали последним.
+ */
+public record ConversationTurn(
+        String userMessage,
+        String assistantReply,
+        List<Long> shownWineStockIds,
+        List<Long> shownDishIds,
+        AvailableWineFilter usedFilter
+) {
+}
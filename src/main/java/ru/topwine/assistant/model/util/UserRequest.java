@@ -1,6 +1,19 @@
 package ru.topwine.assistant.model.util;
 
 import ru.topwine.assistant.model.enums.UserRequestType;
+import ru.topwine.assistant.model.menu.MenuDish;
 
-public record UserRequest(UserRequestType type, String text) {
-}
\ No newline at end of file
+/**
+ * @param dish        блюдо, найденное при распознавании (только для {@link UserRequestType#DISH})
+ * @param sectionName раздел меню, найденный при распознавании (только для {@link UserRequestType#SECTION})
+ */
+public record UserRequest(UserRequestType type, String text, MenuDish dish, String sectionName) {
+
+    public UserRequest(UserRequestType type, String text) {
+        this(type, text, null, null);
+    }
+
+    public UserRequest(UserRequestType type, String text, MenuDish dish) {
+        this(type, text, dish, null);
+    }
+}
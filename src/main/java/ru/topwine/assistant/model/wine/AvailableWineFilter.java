@@ -6,11 +6,12 @@ public record AvailableWineFilter(
         String country,
         String region,
         String grape,
+        Integer minPriceRub,
         Integer maxPriceRub,
         Integer minVintageYear,
         Integer maxVintageYear
 ) {
     public static AvailableWineFilter empty() {
-        return new AvailableWineFilter(null, null, null, null, null, null, null, null);
+        return new AvailableWineFilter(null, null, null, null, null, null, null, null, null);
     }
 }
\ No newline at end of file
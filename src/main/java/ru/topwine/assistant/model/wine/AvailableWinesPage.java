@@ -0,0 +1,12 @@
+package ru.topwine.assistant.model.wine;
+
+import java.util.List;
+
+/**
+ * @param nextCursor курсор следующей страницы; null, если страница последняя
+ */
+public record AvailableWinesPage(
+        List<AvailableWine> items,
+        WineCursor nextCursor
+) {
+}
@@ -0,0 +1,20 @@
+package ru.topwine.assistant.model.wine;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+/**
+ * Агрегаты по доступным винам, из которых складывается версия каталога.
+ *
+ * @param lastUpdatedAt наибольшее из wine_updated_at/stock_updated_at; null для пустого каталога
+ * @param contentHash   сумма хэшей строк целиком: меняется и при правке, которая не трогает updated_at
+ */
+public record CatalogStats(
+        int rows,
+        long bottles,
+        BigDecimal priceSum,
+        long stockIdSum,
+        OffsetDateTime lastUpdatedAt,
+        long contentHash
+) {
+}
@@ -0,0 +1,12 @@
+package ru.topwine.assistant.model.wine;
+
+import java.time.Instant;
+
+/**
+ * Версия каталога доступных вин для условных GET-запросов.
+ *
+ * @param etag         меняется при любом изменении вин или остатков
+ * @param lastModified время последнего известного изменения; null, если каталог пуст и изменений не было
+ */
+public record CatalogVersion(String etag, Instant lastModified) {
+}
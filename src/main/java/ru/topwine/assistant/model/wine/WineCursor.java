@@ -0,0 +1,64 @@
+package ru.topwine.assistant.model.wine;
+
+import ru.topwine.assistant.exception.TopWineException;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Позиция в выдаче доступных вин: последняя отданная строка в порядке (цена, название, id остатка),
+ * а при свободном запросе — (релевантность по убыванию, цена, название, id остатка).
+ * Передаётся клиенту непрозрачной строкой.
+ *
+ * @param rank релевантность последней строки; null, если выдача без свободного запроса
+ */
+public record WineCursor(
+        BigDecimal priceRub,
+        String wineName,
+        long stockId,
+        Double rank
+) {
+
+    public WineCursor(BigDecimal priceRub, String wineName, long stockId) {
+        this(priceRub, wineName, stockId, null);
+    }
+
+    public static WineCursor after(AvailableWine wine) {
+        return after(wine, null);
+    }
+
+    public static WineCursor after(AvailableWine wine, Double rank) {
+        return new WineCursor(wine.priceRub(), wine.wineName(), wine.stockId(), rank);
+    }
+
+    public String encode() {
+        String raw = priceRub.toPlainString() + "|" + stockId + "|" + wineName;
+        if (rank != null) {
+            raw = "r" + rank + "|" + raw;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return null для пустой строки (первая страница)
+     */
+    public static WineCursor decode(String token) {
+        if (token == null || token.isBlank()) return null;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token.trim()), StandardCharsets.UTF_8);
+            Double rank = null;
+            // курсор выдачи со свободным запросом начинается с релевантности: «r0.35|…»
+            if (raw.startsWith("r")) {
+                int end = raw.indexOf('|');
+                rank = Double.valueOf(raw.substring(1, end));
+                raw = raw.substring(end + 1);
+            }
+            // название идёт последним: в нём самом может быть «|»
+            String[] parts = raw.split("\\|", 3);
+            return new WineCursor(new BigDecimal(parts[0]), parts[2], Long.parseLong(parts[1]), rank);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new TopWineException(TopWineException.Kind.VALIDATION, "некорректный курсор страницы");
+        }
+    }
+}
@@ -5,6 +5,7 @@ import org.jooq.DSLContext;
 import org.springframework.stereotype.Repository;
 import ru.topwine.assistant.model.menu.AvailableDish;
 
+import java.util.Collection;
 import java.util.List;
 
 import static ru.topwine.assistant.jooq.tables.VAvailableDishes.V_AVAILABLE_DISHES;
@@ -56,4 +57,26 @@ public class AvailableDishesViewRepository {
                         r.get(V_AVAILABLE_DISHES.PRICE_RUB)
                 ));
     }
-}
\ No newline at end of file
+
+    public List<AvailableDish> findByDishIds(Collection<Long> dishIds) {
+        if (dishIds == null || dishIds.isEmpty()) return List.of();
+        return dsl.select(
+                        V_AVAILABLE_DISHES.DISH_ID,
+                        V_AVAILABLE_DISHES.SECTION_ID,
+                        V_AVAILABLE_DISHES.SECTION_NAME,
+                        V_AVAILABLE_DISHES.DISH_NAME,
+                        V_AVAILABLE_DISHES.DESCRIPTION,
+                        V_AVAILABLE_DISHES.PRICE_RUB
+                )
+                .from(V_AVAILABLE_DISHES)
+                .where(V_AVAILABLE_DISHES.DISH_ID.in(dishIds))
+                .fetch(r -> new AvailableDish(
+                        r.get(V_AVAILABLE_DISHES.DISH_ID),
+                        r.get(V_AVAILABLE_DISHES.SECTION_ID),
+                        r.get(V_AVAILABLE_DISHES.SECTION_NAME),
+                        r.get(V_AVAILABLE_DISHES.DISH_NAME),
+                        r.get(V_AVAILABLE_DISHES.DESCRIPTION),
+                        r.get(V_AVAILABLE_DISHES.PRICE_RUB)
+                ));
+    }
+}
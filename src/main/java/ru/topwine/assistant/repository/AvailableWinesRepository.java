@@ -1,60 +1,422 @@
 package ru.topwine.assistant.repository;
 
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jooq.CaseConditionStep;
 import org.jooq.Condition;
+import org.jooq.ConnectionProvider;
+import org.jooq.Cursor;
 import org.jooq.DSLContext;
+import org.jooq.Field;
 import org.jooq.Record;
+import org.jooq.Select;
+import org.jooq.SelectField;
+import org.jooq.SortField;
+import org.jooq.conf.MappedSchema;
+import org.jooq.conf.MappedTable;
+import org.jooq.conf.RenderMapping;
+import org.jooq.conf.Settings;
+import org.jooq.conf.SettingsTools;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+import org.jooq.impl.DefaultConnectionProvider;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import ru.topwine.assistant.configuration.CatalogProps;
+import ru.topwine.assistant.exception.TopWineException;
+import ru.topwine.assistant.model.PriceBucket;
 import ru.topwine.assistant.model.wine.AvailableWine;
 import ru.topwine.assistant.model.wine.AvailableWineFilter;
+import ru.topwine.assistant.model.wine.AvailableWinesPage;
+import ru.topwine.assistant.model.wine.CatalogStats;
+import ru.topwine.assistant.model.wine.WineCursor;
 
 import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.jooq.impl.DSL.coalesce;
+import static org.jooq.impl.DSL.condition;
+import static org.jooq.impl.DSL.count;
+import static org.jooq.impl.DSL.field;
+import static org.jooq.impl.DSL.greatest;
+import static org.jooq.impl.DSL.inline;
 import static org.jooq.impl.DSL.lower;
+import static org.jooq.impl.DSL.max;
+import static org.jooq.impl.DSL.name;
+import static org.jooq.impl.DSL.partitionBy;
+import static org.jooq.impl.DSL.row;
+import static org.jooq.impl.DSL.rowNumber;
+import static org.jooq.impl.DSL.sum;
+import static org.jooq.impl.DSL.val;
+import static org.jooq.impl.DSL.when;
 import static ru.topwine.assistant.jooq.tables.VAvailableWines.V_AVAILABLE_WINES;
 
+@Slf4j
 @Repository
-@RequiredArgsConstructor
 public class AvailableWinesRepository {
 
+    private static final List<SelectField<?>> WINE_FIELDS = List.of(
+            V_AVAILABLE_WINES.STOCK_ID,
+            V_AVAILABLE_WINES.WINE_ID,
+            V_AVAILABLE_WINES.WINE_NAME,
+            V_AVAILABLE_WINES.PRODUCER_NAME,
+            V_AVAILABLE_WINES.COUNTRY_NAME,
+            V_AVAILABLE_WINES.REGION_NAME,
+            V_AVAILABLE_WINES.GRAPE_VARIETIES,
+            V_AVAILABLE_WINES.WINE_COLOR,
+            V_AVAILABLE_WINES.VINTAGE_YEAR,
+            V_AVAILABLE_WINES.BOTTLE_SIZE_ML,
+            V_AVAILABLE_WINES.ALCOHOL_BY_VOLUME,
+            V_AVAILABLE_WINES.QUANTITY_BOTTLES,
+            V_AVAILABLE_WINES.PRICE_RUB,
+            V_AVAILABLE_WINES.TAGS_JSON,
+            V_AVAILABLE_WINES.DESCRIPTION_NOTES,
+            V_AVAILABLE_WINES.WINE_CREATED_AT,
+            V_AVAILABLE_WINES.WINE_UPDATED_AT,
+            V_AVAILABLE_WINES.STOCK_UPDATED_AT
+    );
+
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final String PAGE_RANK = "page_rank";
+    private static final int EXPORT_FETCH_SIZE = 500;
+
+    static final String MATERIALIZED_TABLE = "available_wine_mat";
+
+    /**
+     * Поисковый вектор {@code wine_item.search_tsv} (см. v021): название и сорт в конфигурациях russian и simple,
+     * производитель, регион и страна — с весами A..D. Имя без квалификатора, чтобы подмена таблицы его не задевала.
+     */
+    private static final Field<Object> SEARCH_TSV = field(name("search_tsv"), Object.class);
+
     private final DSLContext dsl;
 
+    public AvailableWinesRepository(DSLContext dsl, CatalogProps catalogProps) {
+        this.dsl = catalogProps.materialized() ? readingMaterialized(dsl) : dsl;
+    }
+
+    /**
+     * Тот же DSLContext, но v_available_wines при рендеринге подменяется на available_wine_mat:
+     * колонки у них совпадают, поэтому запросы и маппинг не меняются.
+     */
+    static DSLContext readingMaterialized(DSLContext dsl) {
+        Settings settings = SettingsTools.clone(dsl.settings())
+                .withRenderMapping(new RenderMapping().withSchemata(new MappedSchema()
+                        .withInput(V_AVAILABLE_WINES.getSchema().getName())
+                        .withTables(new MappedTable()
+                                .withInput(V_AVAILABLE_WINES.getName())
+                                .withOutput(MATERIALIZED_TABLE))));
+        return DSL.using(dsl.configuration().derive(settings));
+    }
+
     public List<AvailableWine> search(AvailableWineFilter filter, int limit) {
+        return searchQuery(filter, limit).fetch(this::map);
+    }
+
+    /**
+     * Запрос поиска без выполнения — отдельно, чтобы по нему можно было снять план.
+     * Со свободным запросом строки упорядочены по релевантности, затем по цене и названию.
+     */
+    Select<Record> searchQuery(AvailableWineFilter filter, int limit) {
         List<Condition> conditions = buildConditions(filter);
         int safeLimit = Math.max(1, Math.min(50, limit));
 
+        return dsl.select(WINE_FIELDS)
+                .from(V_AVAILABLE_WINES)
+                .where(conditions)
+                .orderBy(searchOrder(filter))
+                .limit(safeLimit);
+    }
+
+    /**
+     * Страница выдачи по ключу (цена, название, id остатка) — тот же порядок, что у поиска без свободного запроса,
+     * плюс id остатка для однозначности. Со свободным запросом впереди ключа идёт релевантность, как в поиске:
+     * её значение для последней строки уходит в курсор. Следующая страница начинается строго после {@code after},
+     * поэтому глубокие страницы стоят столько же, сколько первая.
+     */
+    public AvailableWinesPage searchPage(AvailableWineFilter filter, WineCursor after, int limit) {
+        int safeLimit = Math.max(1, Math.min(MAX_PAGE_SIZE, limit));
+        List<Condition> conditions = buildConditions(filter);
+        String query = normalizeOrNull(filter.freeQuery());
+        // real → double precision: значение уходит в курсор и должно сравниться с собой же точно
+        Field<Double> rank = query == null ? null : relevance(query).cast(SQLDataType.DOUBLE);
+        if (after != null) {
+            conditions.add(after(rank, after));
+        }
+
+        List<SelectField<?>> fields = new ArrayList<>(WINE_FIELDS);
+        List<SortField<?>> order = new ArrayList<>(4);
+        if (rank != null) {
+            fields.add(rank.as(PAGE_RANK));
+            order.add(rank.desc());
+        }
+        order.addAll(catalogOrder());
+
+        List<Record> rows = dsl.select(fields)
+                .from(V_AVAILABLE_WINES)
+                .where(conditions)
+                .orderBy(order)
+                .limit(safeLimit + 1)
+                .fetch();
+
+        List<AvailableWine> page = rows.stream().limit(safeLimit).map(this::map).toList();
+        if (rows.size() <= safeLimit) {
+            return new AvailableWinesPage(page, null);
+        }
+        Record last = rows.get(safeLimit - 1);
+        Double lastRank = rank == null ? null : last.get(PAGE_RANK, Double.class);
+        return new AvailableWinesPage(page, WineCursor.after(page.getLast(), lastRank));
+    }
+
+    /**
+     * Строки строго после курсора. Курсор без релевантности от выдачи со свободным запросом не подходит:
+     * с середины выдачи по цене нельзя продолжить выдачу по релевантности.
+     */
+    private Condition after(Field<Double> rank, WineCursor after) {
+        Condition afterKey = row(V_AVAILABLE_WINES.PRICE_RUB, V_AVAILABLE_WINES.WINE_NAME, V_AVAILABLE_WINES.STOCK_ID)
+                .gt(after.priceRub(), after.wineName(), after.stockId());
+        if (rank == null) {
+            return afterKey;
+        }
+        if (after.rank() == null) {
+            throw new TopWineException(TopWineException.Kind.VALIDATION, "курсор страницы от выдачи без поиска по тексту");
+        }
+        return rank.lt(after.rank()).or(rank.eq(after.rank()).and(afterKey));
+    }
+
+    /**
+     * Выгрузка всех подходящих позиций потоком. Строки читаются серверным курсором PostgreSQL
+     * порциями по {@value #EXPORT_FETCH_SIZE}: драйвер включает его только вне autocommit, поэтому
+     * под выгрузку берётся отдельное соединение, которое после неё откатывается и возвращается в пул.
+     * Память не зависит от размера каталога — следующая порция читается по запросу подписчика.
+     */
+    public Flux<AvailableWine> streamAll(AvailableWineFilter filter) {
+        ConnectionProvider provider = dsl.configuration().connectionProvider();
+        return Flux.using(
+                        () -> openExportConnection(provider),
+                        connection -> Flux.using(
+                                () -> exportCursor(connection, filter),
+                                Flux::fromIterable,
+                                Cursor::close
+                        ).map(this::map),
+                        connection -> closeExportConnection(provider, connection)
+                )
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Connection openExportConnection(ConnectionProvider provider) throws SQLException {
+        Connection connection = provider.acquire();
+        connection.setAutoCommit(false);
+        connection.setReadOnly(true);
+        return connection;
+    }
+
+    private Cursor<Record> exportCursor(Connection connection, AvailableWineFilter filter) {
+        return DSL.using(dsl.configuration().derive(new DefaultConnectionProvider(connection)))
+                .select(WINE_FIELDS)
+                .from(V_AVAILABLE_WINES)
+                .where(buildConditions(filter))
+                .orderBy(catalogOrder())
+                .fetchSize(EXPORT_FETCH_SIZE)
+                .fetchLazy();
+    }
+
+    private void closeExportConnection(ConnectionProvider provider, Connection connection) {
+        try {
+            connection.rollback();
+            connection.setReadOnly(false);
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            log.warn("Не удалось вернуть соединение выгрузки в исходное состояние: {}", e.toString());
+        } finally {
+            provider.release(connection);
+        }
+    }
+
+    private List<SortField<?>> catalogOrder() {
+        return List.of(
+                V_AVAILABLE_WINES.PRICE_RUB.asc(),
+                V_AVAILABLE_WINES.WINE_NAME.asc(),
+                V_AVAILABLE_WINES.STOCK_ID.asc()
+        );
+    }
+
+    /**
+     * Доступные позиции по id остатков одним запросом по первичному ключу; закончившиеся не возвращаются.
+     */
+    public List<AvailableWine> findByStockIds(Collection<Long> stockIds) {
+        if (stockIds == null || stockIds.isEmpty()) return List.of();
+        return dsl.select(WINE_FIELDS)
+                .from(V_AVAILABLE_WINES)
+                .where(V_AVAILABLE_WINES.STOCK_ID.in(stockIds))
+                .fetch(this::map);
+    }
+
+    /**
+     * Различные значения grape_varieties среди доступных вин (как записаны, возможно через запятую).
+     */
+    public List<String> findDistinctGrapeVarieties() {
+        return findDistinct(V_AVAILABLE_WINES.GRAPE_VARIETIES);
+    }
+
+    public List<String> findDistinctCountries() {
+        return findDistinct(V_AVAILABLE_WINES.COUNTRY_NAME);
+    }
+
+    public List<String> findDistinctRegions() {
+        return findDistinct(V_AVAILABLE_WINES.REGION_NAME);
+    }
+
+    private List<String> findDistinct(Field<String> column) {
+        return dsl.selectDistinct(column)
+                .from(V_AVAILABLE_WINES)
+                .where(column.isNotNull())
+                .fetch(column);
+    }
+
+    /**
+     * Один агрегирующий проход по доступным винам. Кроме времени изменения берём суммы остатков, цен и id:
+     * updated_at обновляется не при каждом UPDATE, а суммы меняются при любой правке количества или цены.
+     * Сумма хэшей строк целиком ловит остальные правки (название, регион, описание).
+     */
+    public CatalogStats fetchStats() {
         return dsl.select(
-                        V_AVAILABLE_WINES.STOCK_ID,
-                        V_AVAILABLE_WINES.WINE_ID,
-                        V_AVAILABLE_WINES.WINE_NAME,
-                        V_AVAILABLE_WINES.PRODUCER_NAME,
-                        V_AVAILABLE_WINES.COUNTRY_NAME,
-                        V_AVAILABLE_WINES.REGION_NAME,
-                        V_AVAILABLE_WINES.GRAPE_VARIETIES,
-                        V_AVAILABLE_WINES.WINE_COLOR,
-                        V_AVAILABLE_WINES.VINTAGE_YEAR,
-                        V_AVAILABLE_WINES.BOTTLE_SIZE_ML,
-                        V_AVAILABLE_WINES.ALCOHOL_BY_VOLUME,
-                        V_AVAILABLE_WINES.QUANTITY_BOTTLES,
-                        V_AVAILABLE_WINES.PRICE_RUB,
-                        V_AVAILABLE_WINES.TAGS_JSON,
-                        V_AVAILABLE_WINES.DESCRIPTION_NOTES,
-                        V_AVAILABLE_WINES.WINE_CREATED_AT,
-                        V_AVAILABLE_WINES.WINE_UPDATED_AT,
-                        V_AVAILABLE_WINES.STOCK_UPDATED_AT
+                        count(),
+                        coalesce(sum(V_AVAILABLE_WINES.QUANTITY_BOTTLES), BigDecimal.ZERO),
+                        coalesce(sum(V_AVAILABLE_WINES.PRICE_RUB), BigDecimal.ZERO),
+                        coalesce(sum(V_AVAILABLE_WINES.STOCK_ID), BigDecimal.ZERO),
+                        max(greatest(V_AVAILABLE_WINES.WINE_UPDATED_AT, V_AVAILABLE_WINES.STOCK_UPDATED_AT)),
+                        coalesce(sum(field("hashtext({0}::text)", Integer.class, row(V_AVAILABLE_WINES.fields()))),
+                                BigDecimal.ZERO)
                 )
                 .from(V_AVAILABLE_WINES)
-                .where(conditions)
+                .fetchOne(r -> new CatalogStats(
+                        r.value1(),
+                        r.value2().longValue(),
+                        r.value3(),
+                        r.value4().longValue(),
+                        r.value5(),
+                        r.value6().longValue()
+                ));
+    }
+
+    /**
+     * Все доступные позиции в порядке поиска — для снимка каталога в памяти.
+     */
+    public List<AvailableWine> findAllAvailable() {
+        return dsl.select(WINE_FIELDS)
+                .from(V_AVAILABLE_WINES)
                 .orderBy(
                         V_AVAILABLE_WINES.PRICE_RUB.asc().nullsLast(),
                         V_AVAILABLE_WINES.WINE_NAME.asc()
                 )
+                .fetch(this::map);
+    }
+
+    /**
+     * Подбор по ценовому плану одним запросом. Каждая строка относится к первой корзине плана,
+     * в которую попадает её цена, и нумеруется внутри корзины по цене и названию. Сначала идут строки,
+     * уложившиеся в {@code targetCount} своей корзины, в порядке корзин плана; оставшиеся места
+     * добираются самыми дешёвыми из остальных.
+     */
+    public List<AvailableWine> searchBucketed(AvailableWineFilter filter, List<PriceBucket> plan, int limit) {
+        if (plan == null || plan.isEmpty()) {
+            return search(filter, limit);
+        }
+        List<Condition> conditions = buildConditions(filter);
+        int safeLimit = Math.max(1, Math.min(50, limit));
+
+        Field<Integer> bucket = bucketIndex(plan);
+        List<SortField<?>> order = searchOrder(filter);
+        Field<Integer> rankInBucket = rowNumber().over(partitionBy(bucket).orderBy(order));
+        Condition inPlan = rankInBucket.le(bucketTarget(bucket, plan));
+
+        List<SortField<?>> planOrder = new ArrayList<>(order.size() + 2);
+        planOrder.add(when(inPlan, inline(0)).otherwise(inline(1)).asc());
+        planOrder.add(when(inPlan, bucket).otherwise(inline(0)).asc());
+        planOrder.addAll(order);
+
+        return dsl.select(WINE_FIELDS)
+                .from(V_AVAILABLE_WINES)
+                .where(conditions)
+                .orderBy(planOrder)
                 .limit(safeLimit)
                 .fetch(this::map);
     }
 
+    private List<SortField<?>> searchOrder(AvailableWineFilter filter) {
+        List<SortField<?>> order = new ArrayList<>(3);
+        String query = normalizeOrNull(filter.freeQuery());
+        if (query != null) {
+            order.add(relevance(query).desc());
+        }
+        order.add(V_AVAILABLE_WINES.PRICE_RUB.asc().nullsLast());
+        order.add(V_AVAILABLE_WINES.WINE_NAME.asc());
+        return order;
+    }
+
+    /**
+     * Запрос в обеих конфигурациях: russian находит словоформы («игристое» → «игристые»),
+     * simple — названия и имена собственные как есть. websearch_to_tsquery не падает на произвольном вводе.
+     */
+    private Field<Object> tsQuery(String query) {
+        return field("(websearch_to_tsquery('russian', {0}) || websearch_to_tsquery('simple', {0}))",
+                Object.class, val(query));
+    }
+
+    private Field<Double> relevance(String query) {
+        return field("ts_rank_cd({0}, {1}) + word_similarity({2}, {3})",
+                Double.class, SEARCH_TSV, tsQuery(query), val(query), V_AVAILABLE_WINES.WINE_NAME);
+    }
+
+    /**
+     * Каждая ветка покрыта GIN-индексом (tsvector или pg_trgm), поэтому вся дизъюнкция сводится к BitmapOr:
+     * полнотекстовое совпадение, опечатки в названии ({@code <%}, word_similarity) и вхождение подстроки
+     * для незаконченных слов («кьянт»).
+     */
+    private Condition freeQueryCondition(String query) {
+        String likePattern = "%" + query + "%";
+        return condition("{0} @@ {1}", SEARCH_TSV, tsQuery(query))
+                .or(condition("{0} <% {1}", val(query), V_AVAILABLE_WINES.WINE_NAME))
+                .or(V_AVAILABLE_WINES.WINE_NAME.likeIgnoreCase(likePattern))
+                .or(V_AVAILABLE_WINES.PRODUCER_NAME.likeIgnoreCase(likePattern))
+                .or(V_AVAILABLE_WINES.REGION_NAME.likeIgnoreCase(likePattern))
+                .or(V_AVAILABLE_WINES.GRAPE_VARIETIES.likeIgnoreCase(likePattern));
+    }
+
+    private Field<Integer> bucketIndex(List<PriceBucket> plan) {
+        CaseConditionStep<Integer> step = null;
+        for (int i = 0; i < plan.size(); i++) {
+            Condition fits = fitsBucket(plan.get(i));
+            step = step == null ? when(fits, inline(i)) : step.when(fits, inline(i));
+        }
+        return step.otherwise(inline(-1));
+    }
+
+    private Field<Integer> bucketTarget(Field<Integer> bucket, List<PriceBucket> plan) {
+        CaseConditionStep<Integer> step = null;
+        for (int i = 0; i < plan.size(); i++) {
+            Condition same = bucket.eq(inline(i));
+            Field<Integer> target = inline(Math.max(0, plan.get(i).targetCount()));
+            step = step == null ? when(same, target) : step.when(same, target);
+        }
+        return step.otherwise(inline(0));
+    }
+
+    private Condition fitsBucket(PriceBucket bucket) {
+        Condition fits = V_AVAILABLE_WINES.PRICE_RUB.isNotNull();
+        if (bucket.minInclusive() != null) {
+            fits = fits.and(V_AVAILABLE_WINES.PRICE_RUB.ge(new BigDecimal(bucket.minInclusive())));
+        }
+        if (bucket.maxExclusive() != null) {
+            fits = fits.and(V_AVAILABLE_WINES.PRICE_RUB.lt(new BigDecimal(bucket.maxExclusive())));
+        }
+        return fits;
+    }
+
     private List<Condition> buildConditions(AvailableWineFilter filter) {
         List<Condition> conditions = new ArrayList<>();
 
@@ -64,6 +426,9 @@ public class AvailableWinesRepository {
         addLikeIgnoreCaseIfPresent(conditions, V_AVAILABLE_WINES.REGION_NAME, filter.region());
         addLikeIgnoreCaseIfPresent(conditions, V_AVAILABLE_WINES.GRAPE_VARIETIES, filter.grape());
 
+        if (filter.minPriceRub() != null) {
+            conditions.add(V_AVAILABLE_WINES.PRICE_RUB.ge(new BigDecimal(filter.minPriceRub())));
+        }
         if (filter.maxPriceRub() != null) {
             conditions.add(V_AVAILABLE_WINES.PRICE_RUB.le(new BigDecimal(filter.maxPriceRub())));
         }
@@ -73,19 +438,17 @@ public class AvailableWinesRepository {
         if (filter.maxVintageYear() != null) {
             conditions.add(V_AVAILABLE_WINES.VINTAGE_YEAR.le(filter.maxVintageYear()));
         }
-        if (filter.freeQuery() != null && !filter.freeQuery().isBlank()) {
-            String likePattern = "%" + filter.freeQuery().trim() + "%";
-            conditions.add(
-                    V_AVAILABLE_WINES.WINE_NAME.likeIgnoreCase(likePattern)
-                            .or(V_AVAILABLE_WINES.PRODUCER_NAME.likeIgnoreCase(likePattern))
-                            .or(V_AVAILABLE_WINES.REGION_NAME.likeIgnoreCase(likePattern))
-                            .or(V_AVAILABLE_WINES.GRAPE_VARIETIES.likeIgnoreCase(likePattern))
-            );
+        String query = normalizeOrNull(filter.freeQuery());
+        if (query != null) {
+            conditions.add(freeQueryCondition(query));
         }
 
         return conditions;
     }
 
+    /**
+     * ILIKE по подстроке; на wine_item для этих колонок есть trigram-индексы (v021).
+     */
     private void addLikeIgnoreCaseIfPresent(List<Condition> conditions,
                                             org.jooq.Field<String> field,
                                             String value) {
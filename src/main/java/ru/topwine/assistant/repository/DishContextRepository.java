@@ -0,0 +1,118 @@
+package ru.topwine.assistant.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.SelectField;
+import org.jooq.SelectOnConditionStep;
+import org.springframework.stereotype.Repository;
+import ru.topwine.assistant.model.DishContext;
+import ru.topwine.assistant.model.menu.DishProfile;
+import ru.topwine.assistant.model.menu.MenuDish;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.jooq.impl.DSL.arrayAgg;
+import static org.jooq.impl.DSL.select;
+import static ru.topwine.assistant.jooq.tables.DishProfile.DISH_PROFILE;
+import static ru.topwine.assistant.jooq.tables.DishTag.DISH_TAG;
+import static ru.topwine.assistant.jooq.tables.MenuDish.MENU_DISH;
+import static ru.topwine.assistant.jooq.tables.Tag.TAG;
+
+/**
+ * Всё, что нужно о блюде для подбора вина, одним запросом: блюдо, профиль через LEFT JOIN,
+ * имена тегов — коррелированным array_agg. Фильтр блюда здесь не читается: он уже разобран
+ * в {@link ru.topwine.assistant.service.pairing.DishWineFilterCache}, и dishFilter остаётся null.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DishContextRepository {
+
+    private static final Field<String[]> TAG_NAMES = select(arrayAgg(TAG.NAME).orderBy(TAG.NAME.asc()))
+            .from(DISH_TAG)
+            .join(TAG).on(TAG.ID.eq(DISH_TAG.TAG_ID))
+            .where(DISH_TAG.DISH_ID.eq(MENU_DISH.ID))
+            .asField("tag_names");
+
+    private static final List<SelectField<?>> CONTEXT_FIELDS = List.of(
+            MENU_DISH.ID,
+            MENU_DISH.SECTION_ID,
+            MENU_DISH.NAME,
+            MENU_DISH.DESCRIPTION,
+            MENU_DISH.PRICE_RUB,
+            MENU_DISH.IS_ACTIVE,
+            DISH_PROFILE.DISH_ID,
+            DISH_PROFILE.HEAVY_LEVEL,
+            DISH_PROFILE.FAT_LEVEL,
+            DISH_PROFILE.SPICE_LEVEL,
+            DISH_PROFILE.SWEET_LEVEL,
+            DISH_PROFILE.ACID_LEVEL,
+            DISH_PROFILE.PROTEIN_TYPE,
+            DISH_PROFILE.COOK_WAY,
+            DISH_PROFILE.SAUCE_NOTE,
+            TAG_NAMES
+    );
+
+    private final DSLContext dsl;
+
+    public Optional<DishContext> findByDishId(Long dishId) {
+        return selectContext()
+                .where(MENU_DISH.ID.eq(dishId))
+                .fetchOptional(this::map);
+    }
+
+    public List<DishContext> findAllActive() {
+        return selectContext()
+                .where(MENU_DISH.IS_ACTIVE.isTrue())
+                .orderBy(MENU_DISH.ID.asc())
+                .fetch(this::map);
+    }
+
+    public List<DishContext> findActiveByDishIds(Collection<Long> dishIds) {
+        if (dishIds == null || dishIds.isEmpty()) return List.of();
+        return selectContext()
+                .where(MENU_DISH.ID.in(dishIds).and(MENU_DISH.IS_ACTIVE.isTrue()))
+                .fetch(this::map);
+    }
+
+    private SelectOnConditionStep<Record> selectContext() {
+        return dsl.select(CONTEXT_FIELDS)
+                .from(MENU_DISH)
+                .leftJoin(DISH_PROFILE).on(DISH_PROFILE.DISH_ID.eq(MENU_DISH.ID));
+    }
+
+    private DishContext map(Record r) {
+        MenuDish dish = new MenuDish(
+                r.get(MENU_DISH.ID),
+                r.get(MENU_DISH.SECTION_ID),
+                r.get(MENU_DISH.NAME),
+                r.get(MENU_DISH.DESCRIPTION),
+                r.get(MENU_DISH.PRICE_RUB),
+                r.get(MENU_DISH.IS_ACTIVE)
+        );
+        // профиля может не быть: LEFT JOIN вернёт null в его ключе
+        DishProfile profile = r.get(DISH_PROFILE.DISH_ID) == null ? null : new DishProfile(
+                r.get(DISH_PROFILE.DISH_ID),
+                r.get(DISH_PROFILE.HEAVY_LEVEL, Integer.class),
+                r.get(DISH_PROFILE.FAT_LEVEL, Integer.class),
+                r.get(DISH_PROFILE.SPICE_LEVEL, Integer.class),
+                r.get(DISH_PROFILE.SWEET_LEVEL, Integer.class),
+                r.get(DISH_PROFILE.ACID_LEVEL, Integer.class),
+                r.get(DISH_PROFILE.PROTEIN_TYPE),
+                r.get(DISH_PROFILE.COOK_WAY),
+                r.get(DISH_PROFILE.SAUCE_NOTE)
+        );
+        // array_agg по пустому набору даёт NULL, а не пустой массив
+        String[] tagNames = r.get(TAG_NAMES);
+        return new DishContext(
+                dish,
+                profile,
+                tagNames == null ? List.of() : new ArrayList<>(List.of(tagNames)),
+                null
+        );
+    }
+}
@@ -0,0 +1,98 @@
+package ru.topwine.assistant.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import ru.topwine.assistant.model.wine.AvailableWineFilter;
+
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * Разбор dish_wine_filter.filter_json в {@link AvailableWineFilter}. Вызывается при загрузке фильтров,
+ * а не на запросе гостя, поэтому всё, что не удалось понять, попадает в лог с id блюда, а не теряется молча.
+ * Неверное поле пропускается, остальные поля фильтра сохраняются.
+ */
+@Slf4j
+final class DishWineFilterJson {
+
+    private static final Set<String> KNOWN_FIELDS = Set.of(
+            "freeQuery", "color", "country", "region", "grape",
+            "minPriceRub", "maxPriceRub", "minVintageYear", "maxVintageYear"
+    );
+
+    private DishWineFilterJson() {
+    }
+
+    static AvailableWineFilter parse(Long dishId, JsonNode root) {
+        if (root == null || root.isNull() || root.isMissingNode()) {
+            return AvailableWineFilter.empty();
+        }
+        JsonNode node = root;
+        if (node.isArray()) {
+            log.warn("filter_json блюда {}: массив вместо объекта, берём первый элемент из {}", dishId, node.size());
+            node = node.path(0);
+        }
+        if (!node.isObject()) {
+            log.warn("filter_json блюда {}: ожидался объект, получено {}, фильтр блюда пуст", dishId, node.getNodeType());
+            return AvailableWineFilter.empty();
+        }
+        for (Iterator<String> names = node.fieldNames(); names.hasNext(); ) {
+            String name = names.next();
+            if (!KNOWN_FIELDS.contains(name)) {
+                log.warn("filter_json блюда {}: неизвестное поле '{}' пропущено", dishId, name);
+            }
+        }
+
+        AvailableWineFilter filter = new AvailableWineFilter(
+                readString(dishId, node, "freeQuery"),
+                readString(dishId, node, "color"),
+                readString(dishId, node, "country"),
+                readString(dishId, node, "region"),
+                readString(dishId, node, "grape"),
+                readInt(dishId, node, "minPriceRub"),
+                readInt(dishId, node, "maxPriceRub"),
+                readInt(dishId, node, "minVintageYear"),
+                readInt(dishId, node, "maxVintageYear")
+        );
+        warnIfInverted(dishId, "цена", filter.minPriceRub(), filter.maxPriceRub());
+        warnIfInverted(dishId, "год урожая", filter.minVintageYear(), filter.maxVintageYear());
+        return filter;
+    }
+
+    private static String readString(Long dishId, JsonNode node, String field) {
+        JsonNode v = node.get(field);
+        if (v == null || v.isNull()) return null;
+        if (!v.isValueNode() || v.isBinary()) {
+            log.warn("filter_json блюда {}: поле '{}' должно быть строкой, получено {}", dishId, field, v.getNodeType());
+            return null;
+        }
+        String s = v.asText().trim();
+        return s.isEmpty() ? null : s;
+    }
+
+    private static Integer readInt(Long dishId, JsonNode node, String field) {
+        JsonNode v = node.get(field);
+        if (v == null || v.isNull()) return null;
+        if (v.isIntegralNumber() && v.canConvertToInt()) {
+            return v.intValue();
+        } else if (v.isFloatingPointNumber() && Math.abs(v.doubleValue()) <= Integer.MAX_VALUE) {
+            return (int) Math.round(v.doubleValue());
+        } else if (v.isTextual()) {
+            String s = v.textValue().trim();
+            if (s.isEmpty()) return null;
+            try {
+                return Integer.parseInt(s);
+            } catch (NumberFormatException ignore) {
+                // ниже — общее предупреждение
+            }
+        }
+        log.warn("filter_json блюда {}: поле '{}' должно быть целым числом, получено '{}'", dishId, field, v);
+        return null;
+    }
+
+    private static void warnIfInverted(Long dishId, String what, Integer min, Integer max) {
+        if (min != null && max != null && min > max) {
+            log.warn("filter_json блюда {}: {} от {} больше, чем до {}, вин под фильтр не будет", dishId, what, min, max);
+        }
+    }
+}
@@ -1,18 +1,22 @@
 package ru.topwine.assistant.repository;
 
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.jooq.DSLContext;
 import org.jooq.JSONB;
+import org.jooq.Record2;
 import org.springframework.stereotype.Repository;
 import ru.topwine.assistant.model.menu.DishWineFilter;
+import ru.topwine.assistant.model.wine.AvailableWineFilter;
 
-import java.util.Map;
+import java.util.List;
 import java.util.Optional;
 
 import static ru.topwine.assistant.jooq.tables.DishWineFilter.DISH_WINE_FILTER;
 
+@Slf4j
 @Repository
 @RequiredArgsConstructor
 public class DishWineFilterRepository {
@@ -26,19 +30,32 @@ public class DishWineFilterRepository {
                 )
                 .from(DISH_WINE_FILTER)
                 .where(DISH_WINE_FILTER.DISH_ID.eq(dishId))
-                .fetchOptional(r -> new DishWineFilter(
-                        r.get(DISH_WINE_FILTER.DISH_ID),
-                        jsonToMap(r.get(DISH_WINE_FILTER.FILTER_JSON))
-                ));
+                .fetchOptional(this::map);
     }
 
-    private Map<String, Object> jsonToMap(JSONB jsonb) {
-        if (jsonb == null || jsonb.data() == null) return Map.of();
+    public List<DishWineFilter> findAll() {
+        return dsl.select(
+                        DISH_WINE_FILTER.DISH_ID,
+                        DISH_WINE_FILTER.FILTER_JSON
+                )
+                .from(DISH_WINE_FILTER)
+                .fetch(this::map);
+    }
+
+    private DishWineFilter map(Record2<Long, JSONB> r) {
+        Long dishId = r.value1();
+        return new DishWineFilter(dishId, parse(dishId, r.value2()));
+    }
+
+    private AvailableWineFilter parse(Long dishId, JSONB jsonb) {
+        if (jsonb == null || jsonb.data() == null) return AvailableWineFilter.empty();
+        JsonNode root;
         try {
-            return mapper.readValue(jsonb.data(), new TypeReference<>() {
-            });
+            root = mapper.readTree(jsonb.data());
         } catch (Exception e) {
-            return Map.of();
+            log.warn("filter_json блюда {} не разобран, фильтр блюда пуст: {}", dishId, e.getMessage());
+            return AvailableWineFilter.empty();
         }
+        return DishWineFilterJson.parse(dishId, root);
     }
-}
\ No newline at end of file
+}
@@ -83,6 +83,21 @@ public class MenuDishRepository {
                 .fetch(this::map);
     }
 
+    public List<MenuDish> findAllActive() {
+        return dsl.select(
+                        MENU_DISH.ID,
+                        MENU_DISH.SECTION_ID,
+                        MENU_DISH.NAME,
+                        MENU_DISH.DESCRIPTION,
+                        MENU_DISH.PRICE_RUB,
+                        MENU_DISH.IS_ACTIVE
+                )
+                .from(MENU_DISH)
+                .where(MENU_DISH.IS_ACTIVE.isTrue())
+                .orderBy(MENU_DISH.NAME.asc())
+                .fetch(this::map);
+    }
+
     private MenuDish map(Record r) {
         return new MenuDish(
                 r.get(MENU_DISH.ID),
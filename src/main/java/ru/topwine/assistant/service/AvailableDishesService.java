@@ -2,10 +2,16 @@ package ru.topwine.assistant.service;
 
 import ru.topwine.assistant.model.menu.AvailableDish;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface AvailableDishesService {
     List<AvailableDish> all();
 
     List<AvailableDish> bySection(String sectionName);
+
+    /**
+     * Доступные блюда по id в порядке переданных id; недоступные пропускаются.
+     */
+    List<AvailableDish> findByDishIds(Collection<Long> dishIds);
 }
\ No newline at end of file
@@ -1,12 +1,37 @@
 package ru.topwine.assistant.service;
 
+import reactor.core.publisher.Flux;
+import ru.topwine.assistant.model.PriceBucket;
 import ru.topwine.assistant.model.wine.AvailableWine;
 import ru.topwine.assistant.model.wine.AvailableWineFilter;
+import ru.topwine.assistant.model.wine.AvailableWinesPage;
+import ru.topwine.assistant.model.wine.WineCursor;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface AvailableWinesService {
     List<AvailableWine> search(AvailableWineFilter filter, int limit);
 
+    /**
+     * Подбор по ценовому плану: из каждой корзины не больше её targetCount, недобор — самыми дешёвыми из остальных.
+     */
+    List<AvailableWine> searchBucketed(AvailableWineFilter filter, List<PriceBucket> plan, int limit);
+
+    /**
+     * Доступные позиции по id остатков в порядке переданных id; закончившиеся пропускаются.
+     */
+    List<AvailableWine> findByStockIds(Collection<Long> stockIds);
+
+    /**
+     * Страница каталога по курсору; {@code after == null} — первая страница.
+     */
+    AvailableWinesPage page(AvailableWineFilter filter, WineCursor after, int limit);
+
+    /**
+     * Все подходящие позиции потоком, без ограничения по количеству.
+     */
+    Flux<AvailableWine> export(AvailableWineFilter filter);
+
     AvailableWineFilter deriveFilterFromUserText(String userText);
 }
@@ -0,0 +1,15 @@
+package ru.topwine.assistant.service;
+
+import ru.topwine.assistant.model.DishContext;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface DishContextService {
+    Optional<DishContext> findByDishId(Long dishId);
+
+    List<DishContext> findAllActive();
+
+    List<DishContext> findActiveByDishIds(Collection<Long> dishIds);
+}
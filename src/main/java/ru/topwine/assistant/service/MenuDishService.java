@@ -11,4 +11,6 @@ public interface MenuDishService {
     List<MenuDish> searchByTextContains(String query, int limit);
 
     List<MenuDish> findBySectionId(Long sectionId);
+
+    List<MenuDish> findAllActive();
 }
\ No newline at end of file
@@ -1,9 +1,25 @@
 package ru.topwine.assistant.service;
 
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
 public interface SommelierService {
-    String advise(String clientId, String userMessage);
+
+    /**
+     * Неблокирующая версия подбора: обращения к БД выполняются на boundedElastic, вызов LLM не держит поток.
+     */
+    Mono<String> adviseReactive(String clientId, String userMessage);
+
+    default String advise(String clientId, String userMessage) {
+        return adviseReactive(clientId, userMessage).block();
+    }
 
     default String advise(String userMessage) {
         return advise("default", userMessage);
     }
-}
\ No newline at end of file
+
+    /**
+     * То же, что {@link #adviseReactive(String, String)}, но ответ отдаётся фрагментами по мере генерации.
+     */
+    Flux<String> adviseStream(String clientId, String userMessage);
+}
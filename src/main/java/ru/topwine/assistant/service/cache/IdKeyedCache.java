@@ -0,0 +1,79 @@
+package ru.topwine.assistant.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Кэш строк каталога по id с пакетной догрузкой: всё, чего нет в кэше, читается одним запросом {@code loader}.
+ * Id, которых загрузчик не вернул (позиция закончилась или удалена), в кэш не попадают и из ответа выпадают.
+ */
+public final class IdKeyedCache<V> {
+
+    private final Cache<Long, V> cache;
+    private final Function<V, Long> idOf;
+    private final Function<Collection<Long>, List<V>> loader;
+
+    public IdKeyedCache(String name,
+                        int maxSize,
+                        Duration ttl,
+                        Function<V, Long> idOf,
+                        Function<Collection<Long>, List<V>> loader,
+                        MeterRegistry meterRegistry) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats();
+        if (ttl != null) {
+            builder.expireAfterWrite(ttl);
+        }
+        this.cache = builder.build();
+        this.idOf = idOf;
+        this.loader = loader;
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+    }
+
+    /**
+     * @return найденные строки в порядке запрошенных id, без повторов
+     */
+    public List<V> getAll(Collection<Long> ids) {
+        if (ids == null || ids.isEmpty()) return List.of();
+        Set<Long> distinct = new LinkedHashSet<>(ids);
+        distinct.remove(null);
+        Map<Long, V> found = cache.getAll(distinct, this::load);
+
+        List<V> out = new ArrayList<>(found.size());
+        for (Long id : distinct) {
+            V value = found.get(id);
+            if (value != null) out.add(value);
+        }
+        return out;
+    }
+
+    public void invalidate(Long id) {
+        if (id == null) {
+            cache.invalidateAll();
+        } else {
+            cache.invalidate(id);
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private Map<Long, V> load(Set<? extends Long> missing) {
+        return loader.apply(List.copyOf(missing)).stream()
+                .collect(Collectors.toMap(idOf, Function.identity(), (a, b) -> a));
+    }
+}
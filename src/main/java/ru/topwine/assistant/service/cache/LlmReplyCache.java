@@ -0,0 +1,97 @@
+package ru.topwine.assistant.service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import ru.topwine.assistant.configuration.ReplyCacheProps;
+import ru.topwine.assistant.model.wine.AvailableWineFilter;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Кэш ответов LLM. Ключ — хэш нормализованного текста гостя, итогового фильтра и точного набора
+ * stockId/dishId, попавших в промпт: изменение остатков меняет набор id, и запрос просто не попадает в кэш.
+ */
+@Component
+public class LlmReplyCache {
+
+    private static final Locale RU = Locale.forLanguageTag("ru-RU");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+    private static final Pattern EDGE_PUNCTUATION = Pattern.compile("^[\\p{Punct}\\s]+|[\\p{Punct}\\s]+$");
+
+    private final boolean enabled;
+    private final Cache<String, String> cache;
+
+    public LlmReplyCache(ReplyCacheProps props, MeterRegistry meterRegistry) {
+        this.enabled = props.enabled();
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .maximumSize(props.maxSize())
+                .recordStats();
+        if (props.ttl() != null) {
+            builder.expireAfterWrite(props.ttl());
+        }
+        this.cache = builder.build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "llm.reply");
+    }
+
+    public String keyOf(String model,
+                        String userText,
+                        AvailableWineFilter filter,
+                        List<Long> wineStockIds,
+                        List<Long> dishIds) {
+        String material = String.join("\u0001",
+                String.valueOf(model),
+                normalize(userText),
+                String.valueOf(filter),
+                String.valueOf(wineStockIds),
+                String.valueOf(dishIds));
+        return sha256(material);
+    }
+
+    public Optional<String> get(String key) {
+        if (!enabled || key == null) return Optional.empty();
+        return Optional.ofNullable(cache.getIfPresent(key));
+    }
+
+    public void put(String key, String reply) {
+        if (!enabled || key == null || reply == null || reply.isBlank()) return;
+        cache.put(key, reply);
+    }
+
+    /**
+     * Ответ из кэша, а при промахе — вызов модели с сохранением ответа. Пустой ответ модели и ошибка
+     * не кэшируются: заглушку подставляет вызывающий, и следующий гость с тем же запросом снова спросит модель.
+     */
+    public Mono<String> getOrCall(String key, Supplier<Mono<String>> call) {
+        return Mono.defer(() -> get(key)
+                .map(Mono::just)
+                .orElseGet(() -> call.get().doOnNext(reply -> put(key, reply))));
+    }
+
+    static String normalize(String text) {
+        if (text == null) return "";
+        String lowered = text.toLowerCase(RU).replace('ё', 'е');
+        String collapsed = SPACES.matcher(lowered).replaceAll(" ");
+        return EDGE_PUNCTUATION.matcher(collapsed).replaceAll("");
+    }
+
+    private static String sha256(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package ru.topwine.assistant.service.catalog;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.topwine.assistant.configuration.CatalogProps;
+import ru.topwine.assistant.model.change.DataChangeEvent;
+import ru.topwine.assistant.model.enums.ChangedTable;
+import ru.topwine.assistant.model.wine.CatalogStats;
+import ru.topwine.assistant.model.wine.CatalogVersion;
+import ru.topwine.assistant.repository.AvailableWinesRepository;
+import ru.topwine.assistant.service.change.DataChangeListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Версия каталога доступных вин для ETag/Last-Modified.
+ * <p>
+ * Версия считается одним агрегирующим запросом и держится в памяти, пока не придёт уведомление об изменении
+ * вин или остатков (или не истечёт {@code catalog.version-ttl}). ETag зависит только от состояния каталога,
+ * поэтому после рестарта и на другой реплике сохранённый клиентом ETag по-прежнему совпадает.
+ */
+@Slf4j
+@Component
+public class CatalogVersionTracker implements DataChangeListener {
+
+    private static final Duration DEFAULT_TTL = Duration.ofMinutes(1);
+
+    private final AvailableWinesRepository availableWinesRepository;
+    private final long ttlNanos;
+    private final AtomicLong changeCounter = new AtomicLong();
+    private final AtomicReference<Instant> lastChangeAt = new AtomicReference<>();
+    private final AtomicReference<Cached> cached = new AtomicReference<>();
+
+    private record Cached(CatalogVersion version, long counter, long loadedAtNanos) {
+    }
+
+    public CatalogVersionTracker(AvailableWinesRepository availableWinesRepository, CatalogProps props) {
+        this.availableWinesRepository = availableWinesRepository;
+        this.ttlNanos = (props.versionTtl() == null ? DEFAULT_TTL : props.versionTtl()).toNanos();
+    }
+
+    public CatalogVersion current() {
+        long counter = changeCounter.get();
+        Cached snapshot = cached.get();
+        if (snapshot != null && snapshot.counter() == counter && System.nanoTime() - snapshot.loadedAtNanos() < ttlNanos) {
+            return snapshot.version();
+        }
+        CatalogVersion version = load();
+        // счётчик читаем до запроса: если изменение пришло во время загрузки, версия не закэшируется как свежая
+        cached.set(new Cached(version, counter, System.nanoTime()));
+        return version;
+    }
+
+    @Override
+    public void onDataChange(DataChangeEvent event) {
+        if (!event.affects(ChangedTable.WINE_ITEM, ChangedTable.WINE_STOCK)) return;
+        lastChangeAt.set(Instant.now());
+        changeCounter.incrementAndGet();
+    }
+
+    private CatalogVersion load() {
+        CatalogStats stats = availableWinesRepository.fetchStats();
+        String etag = etagOf(stats);
+
+        Instant lastModified = stats.lastUpdatedAt() == null ? null : stats.lastUpdatedAt().toInstant();
+        Instant changedAt = lastChangeAt.get();
+        if (changedAt != null && (lastModified == null || changedAt.isAfter(lastModified))) {
+            lastModified = changedAt;
+        }
+        log.debug("Версия каталога пересчитана: etag={}, lastModified={}", etag, lastModified);
+        return new CatalogVersion(etag, lastModified);
+    }
+
+    static String etagOf(CatalogStats stats) {
+        long hash = stats.contentHash();
+        hash = 31 * hash + stats.rows();
+        hash = 31 * hash + stats.bottles();
+        hash = 31 * hash + stats.priceSum().stripTrailingZeros().hashCode();
+        hash = 31 * hash + stats.stockIdSum();
+        hash = 31 * hash + Objects.hashCode(stats.lastUpdatedAt() == null ? null : stats.lastUpdatedAt().toInstant());
+        return "\"wines-" + stats.rows() + "-" + Long.toHexString(hash) + "\"";
+    }
+}
@@ -0,0 +1,176 @@
+package ru.topwine.assistant.service.catalog;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.topwine.assistant.model.change.DataChangeEvent;
+import ru.topwine.assistant.model.enums.ChangedTable;
+import ru.topwine.assistant.model.menu.AvailableDish;
+import ru.topwine.assistant.model.wine.AvailableWine;
+import ru.topwine.assistant.repository.AvailableDishesViewRepository;
+import ru.topwine.assistant.repository.AvailableWinesRepository;
+import ru.topwine.assistant.service.change.DataChangeListener;
+import ru.topwine.assistant.service.text.AhoCorasickMatcher;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Упоминания вин и блюд каталога в тексте ответа — за один проход автоматом Ахо — Корасик.
+ * <p>
+ * Образцы: полная этикетка вина (производитель, название, год), название вина, производитель, название блюда.
+ * Автомат строится по всему каталогу один раз на версию ({@link CatalogVersionTracker}) и сбрасывается
+ * уведомлениями об изменении вин и меню. Из перекрывающихся совпадений остаётся самое длинное:
+ * «Кьянти Классико» не даёт заодно «Кьянти». Производитель сам по себе неоднозначен, поэтому совпадение
+ * по нему засчитывается только для вин, показанных гостю последними.
+ */
+@Slf4j
+@Component
+public class MentionIndex implements DataChangeListener {
+
+    public record Mentions(List<Long> wineStockIds, List<Long> dishIds) {
+        public boolean isEmpty() {
+            return wineStockIds.isEmpty() && dishIds.isEmpty();
+        }
+    }
+
+    private enum Kind {
+        WINE_LABEL,
+        WINE_NAME,
+        PRODUCER,
+        DISH
+    }
+
+    /**
+     * @param ids все позиции с таким текстом (одно название может быть у нескольких годов и объёмов)
+     */
+    private record Target(Kind kind, List<Long> ids) {
+    }
+
+    private record Built(String version, AhoCorasickMatcher<Target> matcher) {
+    }
+
+    private final AvailableWinesRepository availableWinesRepository;
+    private final AvailableDishesViewRepository availableDishesRepository;
+    private final CatalogVersionTracker catalogVersionTracker;
+    private final AtomicReference<Built> current = new AtomicReference<>();
+
+    public MentionIndex(AvailableWinesRepository availableWinesRepository,
+                        AvailableDishesViewRepository availableDishesRepository,
+                        CatalogVersionTracker catalogVersionTracker) {
+        this.availableWinesRepository = availableWinesRepository;
+        this.availableDishesRepository = availableDishesRepository;
+        this.catalogVersionTracker = catalogVersionTracker;
+    }
+
+    /**
+     * @param lastShownStockIds вина из последней рекомендации: им отдаётся предпочтение, и только для них
+     *                          засчитывается упоминание производителя
+     * @param lastShownDishIds  блюда из последней рекомендации: предпочтительны при одинаковых названиях
+     */
+    public Mentions find(String text, Collection<Long> lastShownStockIds, Collection<Long> lastShownDishIds) {
+        if (text == null || text.isBlank()) return new Mentions(List.of(), List.of());
+        Set<Long> shownWines = lastShownStockIds == null ? Set.of() : new HashSet<>(lastShownStockIds);
+        Set<Long> shownDishes = lastShownDishIds == null ? Set.of() : new HashSet<>(lastShownDishIds);
+
+        LinkedHashSet<Long> wines = new LinkedHashSet<>();
+        LinkedHashSet<Long> dishes = new LinkedHashSet<>();
+        List<AhoCorasickMatcher.Match<Target>> matches =
+                matcher().findLongestNonOverlapping(text, m -> AhoCorasickMatcher.startsWord(text, m));
+        for (AhoCorasickMatcher.Match<Target> match : matches) {
+            Target target = match.payload();
+            switch (target.kind()) {
+                case WINE_LABEL, WINE_NAME -> wines.addAll(preferShown(target.ids(), shownWines));
+                case PRODUCER -> target.ids().stream().filter(shownWines::contains).forEach(wines::add);
+                case DISH -> dishes.addAll(preferShown(target.ids(), shownDishes));
+            }
+        }
+        return new Mentions(List.copyOf(wines), List.copyOf(dishes));
+    }
+
+    @Override
+    public void onDataChange(DataChangeEvent event) {
+        if (event.affects(ChangedTable.WINE_ITEM, ChangedTable.WINE_STOCK, ChangedTable.MENU_DISH, ChangedTable.MENU_SECTION)) {
+            current.set(null);
+        }
+    }
+
+    private AhoCorasickMatcher<Target> matcher() {
+        String version = catalogVersionTracker.current().etag();
+        Built built = current.get();
+        if (built != null && built.version().equals(version)) {
+            return built.matcher();
+        }
+        synchronized (this) {
+            built = current.get();
+            if (built == null || !built.version().equals(version)) {
+                built = new Built(version, build());
+                current.set(built);
+            }
+            return built.matcher();
+        }
+    }
+
+    private AhoCorasickMatcher<Target> build() {
+        long startNanos = System.nanoTime();
+        Map<String, List<Long>> labels = new HashMap<>();
+        Map<String, List<Long>> names = new HashMap<>();
+        Map<String, List<Long>> producers = new HashMap<>();
+        Map<String, List<Long>> dishNames = new HashMap<>();
+
+        for (AvailableWine wine : availableWinesRepository.findAllAvailable()) {
+            collect(labels, label(wine), wine.stockId());
+            collect(names, wine.wineName(), wine.stockId());
+            collect(producers, wine.producerName(), wine.stockId());
+        }
+        for (AvailableDish dish : availableDishesRepository.findAll()) {
+            collect(dishNames, dish.dishName(), dish.dishId());
+        }
+
+        AhoCorasickMatcher.Builder<Target> builder = AhoCorasickMatcher.builder();
+        labels.forEach((text, ids) -> builder.add(text, new Target(Kind.WINE_LABEL, ids)));
+        names.forEach((text, ids) -> builder.add(text, new Target(Kind.WINE_NAME, ids)));
+        producers.forEach((text, ids) -> builder.add(text, new Target(Kind.PRODUCER, ids)));
+        dishNames.forEach((text, ids) -> builder.add(text, new Target(Kind.DISH, ids)));
+        AhoCorasickMatcher<Target> matcher = builder.build();
+
+        log.info("Индекс упоминаний построен: образцов={}, время={} мс",
+                matcher.patternCount(), (System.nanoTime() - startNanos) / 1_000_000);
+        return matcher;
+    }
+
+    private static List<Long> preferShown(List<Long> ids, Set<Long> shown) {
+        if (ids.size() == 1 || shown.isEmpty()) return ids;
+        List<Long> shownOnly = ids.stream().filter(shown::contains).toList();
+        return shownOnly.isEmpty() ? ids : shownOnly;
+    }
+
+    private static void collect(Map<String, List<Long>> byText, String text, Long id) {
+        if (text == null || text.isBlank()) return;
+        byText.computeIfAbsent(normalizeKey(text), k -> new ArrayList<>()).add(id);
+    }
+
+    private static String normalizeKey(String text) {
+        StringBuilder out = new StringBuilder(text.length());
+        String stripped = text.strip();
+        for (int i = 0; i < stripped.length(); i++) {
+            char c = Character.toLowerCase(stripped.charAt(i));
+            out.append(c == 'ё' ? 'е' : c);
+        }
+        return out.toString();
+    }
+
+    private static String label(AvailableWine wine) {
+        StringBuilder b = new StringBuilder();
+        if (wine.producerName() != null && !wine.producerName().isBlank()) b.append(wine.producerName()).append(' ');
+        b.append(wine.wineName());
+        if (wine.vintageYear() != null) b.append(' ').append(wine.vintageYear());
+        return b.toString();
+    }
+}
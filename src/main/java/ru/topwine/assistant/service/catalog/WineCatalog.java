@@ -0,0 +1,137 @@
+package ru.topwine.assistant.service.catalog;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.topwine.assistant.configuration.CatalogProps;
+import ru.topwine.assistant.model.change.DataChangeEvent;
+import ru.topwine.assistant.model.enums.ChangedTable;
+import ru.topwine.assistant.model.wine.AvailableWine;
+import ru.topwine.assistant.repository.AvailableWinesRepository;
+import ru.topwine.assistant.service.change.DataChangeListener;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Держит текущий {@link WineCatalogSnapshot} и перечитывает его из v_available_wines по уведомлениям
+ * об изменении вин и остатков, а на всякий случай ещё и по расписанию.
+ * Новый снимок строится целиком в стороне и подменяется одной атомарной записью: читатели видят либо
+ * старый, либо новый каталог, но никогда не смесь. Если перечитать не удалось, остаётся прежний снимок.
+ */
+@Slf4j
+@Component
+public class WineCatalog implements DataChangeListener {
+
+    private static final Duration INITIAL_RETRY_DELAY = Duration.ofSeconds(30);
+    private static final Duration CHANGE_DEBOUNCE = Duration.ofMillis(200);
+
+    private final AvailableWinesRepository availableWinesRepository;
+    private final CatalogProps props;
+    private final AtomicReference<WineCatalogSnapshot> current = new AtomicReference<>();
+    private final AtomicBoolean refreshPending = new AtomicBoolean(false);
+    private volatile long nextInitialAttemptNanos = Long.MIN_VALUE;
+
+    public WineCatalog(AvailableWinesRepository availableWinesRepository,
+                       CatalogProps props,
+                       MeterRegistry meterRegistry) {
+        this.availableWinesRepository = availableWinesRepository;
+        this.props = props;
+        Gauge.builder("catalog.wines.size", current, ref -> ref.get() == null ? 0 : ref.get().size())
+                .description("Вин в снимке каталога")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Текущий снимок; при первом обращении загружается синхронно. Пусто, если каталог не загрузился ни разу.
+     */
+    public Optional<WineCatalogSnapshot> snapshot() {
+        WineCatalogSnapshot snapshot = current.get();
+        if (snapshot == null) {
+            synchronized (this) {
+                snapshot = current.get();
+                // пока БД недоступна, не пытаемся грузить каталог на каждом запросе
+                // MIN_VALUE — ещё не пробовали; без этой проверки разность переполняется и загрузки не будет
+                if (snapshot == null && (nextInitialAttemptNanos == Long.MIN_VALUE
+                                         || System.nanoTime() - nextInitialAttemptNanos >= 0)) {
+                    snapshot = refresh();
+                    if (snapshot == null) {
+                        nextInitialAttemptNanos = System.nanoTime() + INITIAL_RETRY_DELAY.toNanos();
+                    }
+                }
+            }
+        }
+        return Optional.ofNullable(snapshot);
+    }
+
+    /**
+     * Снимок грузится сразу после старта, а не на первом запросе: до загрузки уведомления об изменениях
+     * пропускаются, и ждать их пришлось бы до первого перечитывания по расписанию.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (props.inMemory()) {
+            snapshot();
+        }
+    }
+
+    @Scheduled(
+            initialDelayString = "${catalog.refresh-interval:PT5M}",
+            fixedDelayString = "${catalog.refresh-interval:PT5M}"
+    )
+    public void scheduledRefresh() {
+        if (props.inMemory()) {
+            refresh();
+        }
+    }
+
+    /**
+     * Изменения вин и остатков перечитывают снимок в фоне. Пачка изменений из одной транзакции
+     * приходит подряд, поэтому пока перечитывание не началось, новые события к нему просто присоединяются.
+     */
+    @Override
+    public void onDataChange(DataChangeEvent event) {
+        if (!props.inMemory() || !event.affects(ChangedTable.WINE_ITEM, ChangedTable.WINE_STOCK)) return;
+        if (current.get() == null) return;
+        if (refreshPending.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("wine-catalog-refresh").start(() -> {
+                sleepQuietly(CHANGE_DEBOUNCE);
+                refreshPending.set(false);
+                refresh();
+            });
+        }
+    }
+
+    /**
+     * Перечитывает каталог и подменяет снимок. Возвращает актуальный снимок (новый или прежний при ошибке).
+     */
+    public WineCatalogSnapshot refresh() {
+        long startNanos = System.nanoTime();
+        try {
+            List<AvailableWine> wines = availableWinesRepository.findAllAvailable();
+            WineCatalogSnapshot fresh = WineCatalogSnapshot.of(wines);
+            current.set(fresh);
+            log.info("Снимок каталога вин обновлён: позиций={}, время={} мс",
+                    fresh.size(), (System.nanoTime() - startNanos) / 1_000_000);
+            return fresh;
+        } catch (Exception ex) {
+            log.warn("Не удалось обновить снимок каталога вин, остаётся прежний: {}", ex.toString());
+            return current.get();
+        }
+    }
+
+    private void sleepQuietly(Duration delay) {
+        try {
+            Thread.sleep(delay.toMillis());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package ru.topwine.assistant.service.catalog;
+
+import ru.topwine.assistant.model.PriceBucket;
+import ru.topwine.assistant.model.wine.AvailableWine;
+import ru.topwine.assistant.model.wine.AvailableWineFilter;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Неизменяемый снимок доступных вин, разложенный по колонкам.
+ * <p>
+ * Строки отсортированы так же, как в SQL-поиске (цена по возрастанию, null в конце, затем название),
+ * поэтому поиск — один проход с ранним выходом по лимиту. Цвет, страна, регион и сорт закодированы
+ * словарями: условие фильтра один раз переводится в набор подходящих кодов, дальше сравниваются только int.
+ * Семантика условий повторяет {@code AvailableWinesRepository}: цвет — точное совпадение без учёта регистра,
+ * страна/регион/сорт и свободный запрос — вхождение подстроки, строки без цены или года под условия по ним не попадают.
+ */
+public final class WineCatalogSnapshot {
+
+    private static final Locale ROOT = Locale.ROOT;
+    private static final long NO_PRICE = Long.MAX_VALUE;
+    private static final int NO_VINTAGE = Integer.MIN_VALUE;
+    private static final int MAX_LIMIT = 50;
+
+    static final Comparator<AvailableWine> SEARCH_ORDER = Comparator
+            .comparing(AvailableWine::priceRub, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(AvailableWine::wineName, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final AvailableWine[] rows;
+    private final long[] priceKopecks;
+    private final int[] vintage;
+    private final int[] quantity;
+
+    private final Dictionary colors;
+    private final Dictionary countries;
+    private final Dictionary regions;
+    private final Dictionary grapes;
+    private final String[] lowerWineName;
+    private final String[] lowerProducer;
+
+    private final Instant loadedAt;
+
+    private WineCatalogSnapshot(List<AvailableWine> sorted, Instant loadedAt) {
+        int size = sorted.size();
+        this.rows = sorted.toArray(new AvailableWine[0]);
+        this.priceKopecks = new long[size];
+        this.vintage = new int[size];
+        this.quantity = new int[size];
+        this.lowerWineName = new String[size];
+        this.lowerProducer = new String[size];
+        this.loadedAt = loadedAt;
+
+        Dictionary.Builder colorBuilder = new Dictionary.Builder(size);
+        Dictionary.Builder countryBuilder = new Dictionary.Builder(size);
+        Dictionary.Builder regionBuilder = new Dictionary.Builder(size);
+        Dictionary.Builder grapeBuilder = new Dictionary.Builder(size);
+
+        for (int i = 0; i < size; i++) {
+            AvailableWine wine = rows[i];
+            priceKopecks[i] = toKopecks(wine.priceRub());
+            vintage[i] = wine.vintageYear() == null ? NO_VINTAGE : wine.vintageYear();
+            quantity[i] = wine.quantityBottles();
+            lowerWineName[i] = lower(wine.wineName());
+            lowerProducer[i] = lower(wine.producerName());
+            colorBuilder.add(wine.wineColor());
+            countryBuilder.add(wine.countryName());
+            regionBuilder.add(wine.regionName());
+            grapeBuilder.add(wine.grapeVarieties());
+        }
+
+        this.colors = colorBuilder.build();
+        this.countries = countryBuilder.build();
+        this.regions = regionBuilder.build();
+        this.grapes = grapeBuilder.build();
+    }
+
+    public static WineCatalogSnapshot of(List<AvailableWine> wines) {
+        List<AvailableWine> sorted = new ArrayList<>(wines);
+        sorted.sort(SEARCH_ORDER);
+        return new WineCatalogSnapshot(sorted, Instant.now());
+    }
+
+    public int size() {
+        return rows.length;
+    }
+
+    public Instant loadedAt() {
+        return loadedAt;
+    }
+
+    public List<AvailableWine> search(AvailableWineFilter filter, int limit) {
+        int safeLimit = Math.max(1, Math.min(MAX_LIMIT, limit));
+        Matcher matcher = new Matcher(filter);
+        List<AvailableWine> out = new ArrayList<>(Math.min(safeLimit, rows.length));
+        for (int i = 0; i < rows.length && out.size() < safeLimit; i++) {
+            if (matcher.matches(i)) out.add(rows[i]);
+        }
+        return out;
+    }
+
+    /**
+     * То же, что {@code AvailableWinesRepository.searchBucketed}: сначала до targetCount строк каждой корзины
+     * в порядке плана, затем самые дешёвые из остальных.
+     */
+    public List<AvailableWine> searchBucketed(AvailableWineFilter filter, List<PriceBucket> plan, int limit) {
+        if (plan == null || plan.isEmpty()) return search(filter, limit);
+        int safeLimit = Math.max(1, Math.min(MAX_LIMIT, limit));
+        Matcher matcher = new Matcher(filter);
+
+        int[] taken = new int[plan.size()];
+        List<List<AvailableWine>> perBucket = new ArrayList<>(plan.size());
+        for (int b = 0; b < plan.size(); b++) perBucket.add(new ArrayList<>());
+        List<AvailableWine> rest = new ArrayList<>();
+
+        for (int i = 0; i < rows.length; i++) {
+            if (!matcher.matches(i)) continue;
+            int bucket = bucketOf(priceKopecks[i], plan);
+            if (bucket >= 0 && taken[bucket] < plan.get(bucket).targetCount()) {
+                taken[bucket]++;
+                perBucket.get(bucket).add(rows[i]);
+            } else if (rest.size() < safeLimit) {
+                rest.add(rows[i]);
+            }
+        }
+
+        List<AvailableWine> out = new ArrayList<>(safeLimit);
+        for (List<AvailableWine> bucketRows : perBucket) {
+            for (AvailableWine wine : bucketRows) {
+                if (out.size() >= safeLimit) return out;
+                out.add(wine);
+            }
+        }
+        for (AvailableWine wine : rest) {
+            if (out.size() >= safeLimit) break;
+            out.add(wine);
+        }
+        return out;
+    }
+
+    private int bucketOf(long kopecks, List<PriceBucket> plan) {
+        if (kopecks == NO_PRICE) return -1;
+        for (int b = 0; b < plan.size(); b++) {
+            PriceBucket bucket = plan.get(b);
+            if (bucket.minInclusive() != null && kopecks < bucket.minInclusive() * 100L) continue;
+            if (bucket.maxExclusive() != null && kopecks >= bucket.maxExclusive() * 100L) continue;
+            return b;
+        }
+        return -1;
+    }
+
+    private static long toKopecks(BigDecimal price) {
+        return price == null ? NO_PRICE : price.movePointRight(2).longValue();
+    }
+
+    private static String lower(String value) {
+        return value == null ? null : value.toLowerCase(ROOT);
+    }
+
+    private static String normalizeOrNull(String value) {
+        if (value == null) return null;
+        String s = value.trim();
+        return s.isEmpty() ? null : s.toLowerCase(ROOT);
+    }
+
+    /**
+     * Фильтр, скомпилированный под этот снимок.
+     */
+    private final class Matcher {
+        private final boolean[] colorAllowed;
+        private final boolean[] countryAllowed;
+        private final boolean[] regionAllowed;
+        private final boolean[] grapeAllowed;
+        private final long minPrice;
+        private final long maxPrice;
+        private final int minVintage;
+        private final int maxVintage;
+        private final String freeQuery;
+        private final boolean[] freeRegion;
+        private final boolean[] freeGrape;
+
+        private Matcher(AvailableWineFilter filter) {
+            AvailableWineFilter f = filter == null ? AvailableWineFilter.empty() : filter;
+            this.colorAllowed = colors.codesEqualTo(normalizeOrNull(f.color()));
+            this.countryAllowed = countries.codesContaining(normalizeOrNull(f.country()));
+            this.regionAllowed = regions.codesContaining(normalizeOrNull(f.region()));
+            this.grapeAllowed = grapes.codesContaining(normalizeOrNull(f.grape()));
+            this.minPrice = f.minPriceRub() == null ? Long.MIN_VALUE : f.minPriceRub() * 100L;
+            this.maxPrice = f.maxPriceRub() == null ? Long.MIN_VALUE : f.maxPriceRub() * 100L;
+            this.minVintage = f.minVintageYear() == null ? NO_VINTAGE : f.minVintageYear();
+            this.maxVintage = f.maxVintageYear() == null ? NO_VINTAGE : f.maxVintageYear();
+            this.freeQuery = normalizeOrNull(f.freeQuery());
+            this.freeRegion = freeQuery == null ? null : regions.codesContaining(freeQuery);
+            this.freeGrape = freeQuery == null ? null : grapes.codesContaining(freeQuery);
+        }
+
+        private boolean matches(int i) {
+            if (colorAllowed != null && !colorAllowed[colors.codes[i]]) return false;
+            if (countryAllowed != null && !countryAllowed[countries.codes[i]]) return false;
+            if (regionAllowed != null && !regionAllowed[regions.codes[i]]) return false;
+            if (grapeAllowed != null && !grapeAllowed[grapes.codes[i]]) return false;
+            if (minPrice != Long.MIN_VALUE && (priceKopecks[i] == NO_PRICE || priceKopecks[i] < minPrice)) return false;
+            if (maxPrice != Long.MIN_VALUE && (priceKopecks[i] == NO_PRICE || priceKopecks[i] > maxPrice)) return false;
+            if (minVintage != NO_VINTAGE && (vintage[i] == NO_VINTAGE || vintage[i] < minVintage)) return false;
+            if (maxVintage != NO_VINTAGE && (vintage[i] == NO_VINTAGE || vintage[i] > maxVintage)) return false;
+            if (freeQuery != null) {
+                return contains(lowerWineName[i], freeQuery)
+                       || contains(lowerProducer[i], freeQuery)
+                       || freeRegion[regions.codes[i]]
+                       || freeGrape[grapes.codes[i]];
+            }
+            return true;
+        }
+
+        private boolean contains(String haystack, String needle) {
+            return haystack != null && haystack.contains(needle);
+        }
+    }
+
+    /**
+     * Словарное кодирование колонки: код 0 зарезервирован под null.
+     */
+    private static final class Dictionary {
+        private final String[] lowerValues;
+        private final int[] codes;
+
+        private Dictionary(String[] lowerValues, int[] codes) {
+            this.lowerValues = lowerValues;
+            this.codes = codes;
+        }
+
+        /**
+         * @return null, если условия нет; иначе маска подходящих кодов
+         */
+        private boolean[] codesEqualTo(String lowerNeedle) {
+            if (lowerNeedle == null) return null;
+            boolean[] mask = new boolean[lowerValues.length];
+            for (int code = 1; code < lowerValues.length; code++) {
+                mask[code] = lowerValues[code].equals(lowerNeedle);
+            }
+            return mask;
+        }
+
+        private boolean[] codesContaining(String lowerNeedle) {
+            if (lowerNeedle == null) return null;
+            boolean[] mask = new boolean[lowerValues.length];
+            for (int code = 1; code < lowerValues.length; code++) {
+                mask[code] = lowerValues[code].contains(lowerNeedle);
+            }
+            return mask;
+        }
+
+        private static final class Builder {
+            private final Map<String, Integer> codeByValue = new HashMap<>();
+            private final List<String> values = new ArrayList<>();
+            private final int[] codes;
+            private int next;
+
+            private Builder(int size) {
+                this.codes = new int[size];
+                values.add(null);
+            }
+
+            private void add(String value) {
+                int code = 0;
+                if (value != null) {
+                    code = codeByValue.computeIfAbsent(value, v -> {
+                        values.add(v.toLowerCase(ROOT));
+                        return values.size() - 1;
+                    });
+                }
+                codes[next++] = code;
+            }
+
+            private Dictionary build() {
+                return new Dictionary(values.toArray(new String[0]), codes);
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package ru.topwine.assistant.service.change;
+
+import ru.topwine.assistant.model.change.DataChangeEvent;
+
+/**
+ * Подписчик на изменения в БД. Вызывается из потока слушателя уведомлений, поэтому
+ * реализация должна быть быстрой: тяжёлую перезагрузку стоит выносить в отдельный поток.
+ */
+public interface DataChangeListener {
+
+    void onDataChange(DataChangeEvent event);
+}
@@ -0,0 +1,178 @@
+package ru.topwine.assistant.service.change;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import ru.topwine.assistant.configuration.ChangeNotifyProps;
+import ru.topwine.assistant.model.change.DataChangeEvent;
+import ru.topwine.assistant.model.enums.ChangedTable;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Слушает канал pg_notify и раздаёт изменения всем {@link DataChangeListener}.
+ * <p>
+ * Держит собственное соединение в обход пула Hikari: LISTEN живёт, пока открыто соединение, а занимать
+ * им слот пула навсегда нельзя. После обрыва соединение открывается заново, и подписчики получают
+ * {@link DataChangeEvent#resync()}: уведомления, пришедшие в разрыве, потеряны.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "change-notify", name = "enabled", havingValue = "true")
+public class PgNotifyListener implements SmartLifecycle {
+
+    /**
+     * Канал, в который пишет триггерная функция topwine_notify_change() из v020-create-change-notify-triggers.yaml.
+     * Имя зашито в SQL, поэтому здесь оно тоже константа, а не настройка: разойтись они не должны.
+     */
+    public static final String CHANNEL = "topwine_changes";
+
+    private final DataSourceProperties dataSourceProperties;
+    private final ChangeNotifyProps props;
+    private final ObjectProvider<DataChangeListener> listeners;
+    private final ObjectMapper objectMapper;
+
+    private volatile boolean running;
+    private volatile Thread worker;
+    private volatile Connection connection;
+
+    public PgNotifyListener(DataSourceProperties dataSourceProperties,
+                            ChangeNotifyProps props,
+                            ObjectProvider<DataChangeListener> listeners,
+                            ObjectMapper objectMapper) {
+        this.dataSourceProperties = dataSourceProperties;
+        this.props = props;
+        this.listeners = listeners;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        worker = Thread.ofPlatform()
+                .name("pg-notify-listener")
+                .daemon(true)
+                .start(this::loop);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread thread = worker;
+        if (thread != null) thread.interrupt();
+        closeQuietly();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void loop() {
+        boolean firstAttempt = true;
+        while (running) {
+            try {
+                connection = connect();
+                log.info("Подписка на изменения в БД: канал={}", CHANNEL);
+                if (!firstAttempt) {
+                    // пока соединения не было, уведомления не доставлялись
+                    dispatch(DataChangeEvent.resync());
+                }
+                poll(connection.unwrap(PGConnection.class));
+            } catch (SQLException | RuntimeException ex) {
+                if (running) {
+                    log.warn("Соединение для уведомлений БД потеряно: {}", ex.toString());
+                }
+            } finally {
+                firstAttempt = false;
+                closeQuietly();
+            }
+            sleep(props.reconnectDelay() == null ? Duration.ofSeconds(5) : props.reconnectDelay());
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        Connection conn = DriverManager.getConnection(
+                dataSourceProperties.determineUrl(),
+                dataSourceProperties.determineUsername(),
+                dataSourceProperties.determinePassword()
+        );
+        conn.setAutoCommit(true);
+        try (Statement statement = conn.createStatement()) {
+            statement.execute("LISTEN " + CHANNEL);
+        }
+        return conn;
+    }
+
+    private void poll(PGConnection pgConnection) throws SQLException {
+        int timeoutMs = (int) (props.pollTimeout() == null ? Duration.ofSeconds(10) : props.pollTimeout()).toMillis();
+        while (running) {
+            // при обрыве getNotifications бросает SQLException, так что отдельная проверка живости не нужна
+            PGNotification[] notifications = pgConnection.getNotifications(timeoutMs);
+            if (notifications == null) continue;
+            for (PGNotification notification : notifications) {
+                parse(notification.getParameter()).ifPresent(this::dispatch);
+            }
+        }
+    }
+
+    private Optional<DataChangeEvent> parse(String payload) {
+        try {
+            JsonNode json = objectMapper.readTree(payload);
+            Optional<ChangedTable> table = ChangedTable.fromTableName(json.path("table").asText(null));
+            if (table.isEmpty()) {
+                log.debug("Уведомление по неизвестной таблице пропущено: {}", payload);
+                return Optional.empty();
+            }
+            DataChangeEvent.Operation operation = DataChangeEvent.Operation.valueOf(json.path("op").asText());
+            JsonNode id = json.path("id");
+            return Optional.of(new DataChangeEvent(table.get(), operation, id.isNumber() ? id.asLong() : null));
+        } catch (Exception ex) {
+            log.warn("Не удалось разобрать уведомление БД «{}»: {}", payload, ex.toString());
+            return Optional.empty();
+        }
+    }
+
+    private void dispatch(DataChangeEvent event) {
+        log.debug("Изменение в БД: {}", event);
+        listeners.orderedStream().forEach(listener -> {
+            try {
+                listener.onDataChange(event);
+            } catch (Exception ex) {
+                log.warn("Подписчик {} не обработал изменение {}: {}",
+                        listener.getClass().getSimpleName(), event, ex.toString());
+            }
+        });
+    }
+
+    private void sleep(Duration delay) {
+        try {
+            Thread.sleep(delay.toMillis());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void closeQuietly() {
+        Connection conn = connection;
+        connection = null;
+        if (conn == null) return;
+        try {
+            conn.close();
+        } catch (SQLException ignored) {
+            // соединение и так уже потеряно
+        }
+    }
+}
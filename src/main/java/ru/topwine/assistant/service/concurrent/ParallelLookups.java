@@ -0,0 +1,69 @@
+package ru.topwine.assistant.service.concurrent;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+import ru.topwine.assistant.configuration.LookupProps;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Параллельный запуск независимых запросов к БД на виртуальных потоках.
+ * Каждый {@link Scope} ограничивает число одновременно выполняемых задач, чтобы один чат-запрос
+ * не забирал весь пул соединений Hikari.
+ */
+@Component
+public class ParallelLookups {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final int maxParallelism;
+
+    public ParallelLookups(LookupProps lookupProps) {
+        this.maxParallelism = Math.max(1, lookupProps.maxParallelism());
+    }
+
+    public Scope open() {
+        return new Scope(new Semaphore(maxParallelism));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    public final class Scope {
+        private final Semaphore permits;
+
+        private Scope(Semaphore permits) {
+            this.permits = permits;
+        }
+
+        public <T> CompletableFuture<T> fork(Supplier<T> lookup) {
+            return CompletableFuture.supplyAsync(() -> {
+                permits.acquireUninterruptibly();
+                try {
+                    return lookup.get();
+                } finally {
+                    permits.release();
+                }
+            }, executor);
+        }
+    }
+
+    /**
+     * Дожидается результата и пробрасывает исходное исключение задачи, а не CompletionException.
+     */
+    public static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            if (e.getCause() instanceof Error err) throw err;
+            throw e;
+        }
+    }
+}
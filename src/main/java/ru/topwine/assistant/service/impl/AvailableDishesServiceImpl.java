@@ -1,17 +1,31 @@
 package ru.topwine.assistant.service.impl;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.stereotype.Service;
+import ru.topwine.assistant.configuration.LookupProps;
+import ru.topwine.assistant.model.change.DataChangeEvent;
+import ru.topwine.assistant.model.enums.ChangedTable;
 import ru.topwine.assistant.model.menu.AvailableDish;
 import ru.topwine.assistant.repository.AvailableDishesViewRepository;
 import ru.topwine.assistant.service.AvailableDishesService;
+import ru.topwine.assistant.service.cache.IdKeyedCache;
+import ru.topwine.assistant.service.change.DataChangeListener;
 
+import java.util.Collection;
 import java.util.List;
 
 @Service
-@RequiredArgsConstructor
-public class AvailableDishesServiceImpl implements AvailableDishesService {
+public class AvailableDishesServiceImpl implements AvailableDishesService, DataChangeListener {
     private final AvailableDishesViewRepository repo;
+    private final IdKeyedCache<AvailableDish> byId;
+
+    public AvailableDishesServiceImpl(AvailableDishesViewRepository repo,
+                                      LookupProps lookupProps,
+                                      MeterRegistry meterRegistry) {
+        this.repo = repo;
+        this.byId = new IdKeyedCache<>("menu.dish.by-id", lookupProps.idCacheMaxSize(), lookupProps.idCacheTtl(),
+                AvailableDish::dishId, repo::findByDishIds, meterRegistry);
+    }
 
     @Override
     public List<AvailableDish> all() {
@@ -22,4 +36,21 @@ public class AvailableDishesServiceImpl implements AvailableDishesService {
     public List<AvailableDish> bySection(String sectionName) {
         return repo.findBySectionName(sectionName);
     }
-}
\ No newline at end of file
+
+    @Override
+    public List<AvailableDish> findByDishIds(Collection<Long> dishIds) {
+        return byId.getAll(dishIds);
+    }
+
+    /**
+     * Правка блюда сбрасывает только его запись; правка раздела меняет sectionName у всех его блюд.
+     */
+    @Override
+    public void onDataChange(DataChangeEvent event) {
+        if (event.table() == ChangedTable.MENU_DISH) {
+            byId.invalidate(event.id());
+        } else if (event.affects(ChangedTable.MENU_SECTION)) {
+            byId.invalidateAll();
+        }
+    }
+}
@@ -1,71 +1,118 @@
 package ru.topwine.assistant.service.impl;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import ru.topwine.assistant.configuration.CatalogProps;
+import ru.topwine.assistant.configuration.LookupProps;
+import ru.topwine.assistant.model.change.DataChangeEvent;
+import ru.topwine.assistant.model.enums.ChangedTable;
+import ru.topwine.assistant.model.PriceBucket;
 import ru.topwine.assistant.model.wine.AvailableWine;
 import ru.topwine.assistant.model.wine.AvailableWineFilter;
+import ru.topwine.assistant.model.wine.AvailableWinesPage;
+import ru.topwine.assistant.model.wine.WineCursor;
 import ru.topwine.assistant.repository.AvailableWinesRepository;
 import ru.topwine.assistant.service.AvailableWinesService;
+import ru.topwine.assistant.service.cache.IdKeyedCache;
+import ru.topwine.assistant.service.catalog.WineCatalog;
+import ru.topwine.assistant.service.catalog.WineCatalogSnapshot;
+import ru.topwine.assistant.service.change.DataChangeListener;
+import ru.topwine.assistant.service.recognition.UserFilterParser;
+import ru.topwine.assistant.service.recognition.WineFilterModel;
 
+import java.util.Collection;
 import java.util.List;
-import java.util.Locale;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Optional;
 
 @Service
-@RequiredArgsConstructor
-public class AvailableWinesServiceImpl implements AvailableWinesService {
+public class AvailableWinesServiceImpl implements AvailableWinesService, DataChangeListener {
     private final AvailableWinesRepository availableWinesRepository;
+    private final WineCatalog wineCatalog;
+    private final CatalogProps catalogProps;
+    private final UserFilterParser userFilterParser;
+    private final IdKeyedCache<AvailableWine> byStockId;
+
+    public AvailableWinesServiceImpl(AvailableWinesRepository availableWinesRepository,
+                                     WineCatalog wineCatalog,
+                                     CatalogProps catalogProps,
+                                     UserFilterParser userFilterParser,
+                                     LookupProps lookupProps,
+                                     MeterRegistry meterRegistry) {
+        this.availableWinesRepository = availableWinesRepository;
+        this.wineCatalog = wineCatalog;
+        this.catalogProps = catalogProps;
+        this.userFilterParser = userFilterParser;
+        this.byStockId = new IdKeyedCache<>("wine.by-stock-id", lookupProps.idCacheMaxSize(), lookupProps.idCacheTtl(),
+                AvailableWine::stockId, availableWinesRepository::findByStockIds, meterRegistry);
+    }
 
     @Override
     public List<AvailableWine> search(AvailableWineFilter filter, int limit) {
+        Optional<WineCatalogSnapshot> snapshot = inMemorySnapshot(filter);
+        if (snapshot.isPresent()) {
+            return snapshot.get().search(filter, limit);
+        }
         return availableWinesRepository.search(filter, limit);
     }
 
+    @Override
+    public List<AvailableWine> searchBucketed(AvailableWineFilter filter, List<PriceBucket> plan, int limit) {
+        Optional<WineCatalogSnapshot> snapshot = inMemorySnapshot(filter);
+        if (snapshot.isPresent()) {
+            return snapshot.get().searchBucketed(filter, plan, limit);
+        }
+        return availableWinesRepository.searchBucketed(filter, plan, limit);
+    }
+
+    @Override
+    public List<AvailableWine> findByStockIds(Collection<Long> stockIds) {
+        return byStockId.getAll(stockIds);
+    }
+
     /**
-     * Очень лёгкий парсер намерений пользователя из свободного текста.
-     * Извлекает цвет и примерный бюджет (в рублях), если встречаются.
-     * Это только «помощь» фильтрам, а не строгая логика.
+     * Правка остатка сбрасывает только его запись; правка карточки вина может касаться нескольких остатков.
      */
     @Override
-    public AvailableWineFilter deriveFilterFromUserText(String userText) {
-        if (userText == null) {
-            return AvailableWineFilter.empty();
+    public void onDataChange(DataChangeEvent event) {
+        if (event.table() == ChangedTable.WINE_STOCK) {
+            byStockId.invalidate(event.id());
+        } else if (event.affects(ChangedTable.WINE_ITEM)) {
+            byStockId.invalidateAll();
         }
+    }
 
-        String normalized = userText.toLowerCase(Locale.ROOT);
+    /**
+     * Постраничная выдача и выгрузка всегда идут в БД: курсор опирается на порядок (цена, название, id остатка),
+     * а снимок в памяти нужен для коротких подборок к промпту.
+     */
+    @Override
+    public AvailableWinesPage page(AvailableWineFilter filter, WineCursor after, int limit) {
+        return availableWinesRepository.searchPage(filter, after, limit);
+    }
 
-        String detectedColor = null;
-        if (normalized.contains("красн")) detectedColor = "red";
-        else if (normalized.contains("бел")) detectedColor = "white";
-        else if (normalized.contains("розе") || normalized.contains("розов")) detectedColor = "rose";
-        else if (normalized.contains("оранж")) detectedColor = "orange";
-        else if (normalized.contains("игрист")
-                 || normalized.contains("шампан")
-                 || normalized.contains("просекко")
-                 || normalized.contains("кава")) detectedColor = "sparkling";
+    @Override
+    public Flux<AvailableWine> export(AvailableWineFilter filter) {
+        return availableWinesRepository.streamAll(filter);
+    }
 
-        Integer detectedBudgetRub = null;
-        // Ищем числа «до 1500», «1500 руб», «1500р», «<= 1500» и т.п.
-        Pattern pricePattern = Pattern.compile("(до|<=)?\\s*(\\d{3,6})\\s*(руб|р|₽)?");
-        Matcher priceMatcher = pricePattern.matcher(normalized);
-        if (priceMatcher.find()) {
-            try {
-                detectedBudgetRub = Integer.parseInt(priceMatcher.group(2));
-            } catch (NumberFormatException ignored) {
-                // Игнорируем ошибки парсинга — фильтр просто не получит бюджет
-            }
-        }
+    /**
+     * В режиме memory — снимок каталога; если он так и не загрузился, ищем в БД.
+     * Свободный текстовый запрос всегда идёт в БД: ранжирование по релевантности держится
+     * на полнотекстовом и trigram-индексах, снимок умеет только вхождение подстроки.
+     */
+    private Optional<WineCatalogSnapshot> inMemorySnapshot(AvailableWineFilter filter) {
+        if (!catalogProps.inMemory()) return Optional.empty();
+        if (filter != null && filter.freeQuery() != null && !filter.freeQuery().isBlank()) return Optional.empty();
+        return wineCatalog.snapshot();
+    }
 
-        return new AvailableWineFilter(
-                null,
-                detectedColor,
-                null,
-                null,
-                null,
-                detectedBudgetRub,
-                null,
-                null
-        );
+    /**
+     * Цвет, страна, регион, сорт, диапазоны цены и года из текста гостя — см. {@link WineFilterModel}.
+     * Это только «помощь» фильтрам, а не строгая логика.
+     */
+    @Override
+    public AvailableWineFilter deriveFilterFromUserText(String userText) {
+        return userFilterParser.parse(userText);
     }
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+package ru.topwine.assistant.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import ru.topwine.assistant.model.DishContext;
+import ru.topwine.assistant.repository.DishContextRepository;
+import ru.topwine.assistant.service.DishContextService;
+import ru.topwine.assistant.service.pairing.DishWineFilterCache;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Service
+@RequiredArgsConstructor
+public class DishContextServiceImpl implements DishContextService {
+    private final DishContextRepository repo;
+    private final DishWineFilterCache dishWineFilterCache;
+
+    @Override
+    public Optional<DishContext> findByDishId(Long dishId) {
+        return repo.findByDishId(dishId).map(this::withDishFilter);
+    }
+
+    @Override
+    public List<DishContext> findAllActive() {
+        return repo.findAllActive().stream().map(this::withDishFilter).toList();
+    }
+
+    @Override
+    public List<DishContext> findActiveByDishIds(Collection<Long> dishIds) {
+        return repo.findActiveByDishIds(dishIds).stream().map(this::withDishFilter).toList();
+    }
+
+    private DishContext withDishFilter(DishContext context) {
+        return context.withDishFilter(dishWineFilterCache.forDish(context.dish().id()));
+    }
+}
@@ -28,4 +28,9 @@ public class MenuDishServiceImpl implements MenuDishService {
     public List<MenuDish> findBySectionId(Long sectionId) {
         return repo.findBySectionId(sectionId);
     }
-}
\ No newline at end of file
+
+    @Override
+    public List<MenuDish> findAllActive() {
+        return repo.findAllActive();
+    }
+}
@@ -2,50 +2,59 @@ package ru.topwine.assistant.service.impl;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import ru.topwine.assistant.configuration.AiProps;
+import ru.topwine.assistant.configuration.WarmupProps;
 import ru.topwine.assistant.guard.AdviceContext;
 import ru.topwine.assistant.guard.AdviceFilterChain;
 import ru.topwine.assistant.http.client.ChatClient;
 import ru.topwine.assistant.http.request.OpenAiChatCompletionsRequest;
 import ru.topwine.assistant.http.request.OpenAiRequestFactory;
 import ru.topwine.assistant.model.ChatMessage;
-import ru.topwine.assistant.model.PriceBucket;
+import ru.topwine.assistant.model.DishContext;
 import ru.topwine.assistant.model.enums.UserRequestType;
 import ru.topwine.assistant.model.menu.AvailableDish;
 import ru.topwine.assistant.model.menu.DishProfile;
-import ru.topwine.assistant.model.menu.DishWineFilter;
 import ru.topwine.assistant.model.menu.MenuDish;
-import ru.topwine.assistant.model.menu.MenuSection;
-import ru.topwine.assistant.model.session.ConversationContext;
+import ru.topwine.assistant.model.session.ConversationTurn;
 import ru.topwine.assistant.model.util.UserRequest;
 import ru.topwine.assistant.model.wine.AvailableWine;
 import ru.topwine.assistant.model.wine.AvailableWineFilter;
 import ru.topwine.assistant.service.AvailableDishesService;
 import ru.topwine.assistant.service.AvailableWinesService;
-import ru.topwine.assistant.service.DishProfileService;
-import ru.topwine.assistant.service.DishWineFilterService;
+import ru.topwine.assistant.service.DishContextService;
 import ru.topwine.assistant.service.MenuDishService;
-import ru.topwine.assistant.service.MenuSectionService;
 import ru.topwine.assistant.service.SommelierService;
-import ru.topwine.assistant.service.TagService;
+import ru.topwine.assistant.service.cache.LlmReplyCache;
+import ru.topwine.assistant.service.catalog.MentionIndex;
+import ru.topwine.assistant.service.concurrent.ParallelLookups;
+import ru.topwine.assistant.service.pairing.DishPairing;
+import ru.topwine.assistant.service.pairing.DishPairingMatrix;
+import ru.topwine.assistant.service.pairing.DishPairingRules;
+import ru.topwine.assistant.service.pairing.GroundingWineSelector;
+import ru.topwine.assistant.service.prompt.PromptBudgeter;
+import ru.topwine.assistant.service.recognition.UserRequestRecognizer;
 import ru.topwine.assistant.service.session.ConversationStore;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.Comparator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class SommelierServiceImpl implements SommelierService {
 
+    private static final String EMPTY_MODEL_REPLY = "Пустой ответ от модели.";
+
     private static final String SYSTEM_PROMPT = """
             Ты — дружелюбный сомелье в винном ресторане. Отвечай ТОЛЬКО НА РУССКОМ.
             Правила:
@@ -60,156 +69,302 @@ public class SommelierServiceImpl implements SommelierService {
             Выводи только финальный ответ БЕЗ рассуждений.
             """;
 
-    private static final int GROUNDING_LIMIT = 12;
-    private static final int OVERFETCH_PER_BUCKET = 50;
     private static final int MENU_DISHES_CONTEXT_LIMIT = 12;
     private static final Locale RU = Locale.forLanguageTag("ru-RU");
+    private static final Comparator<AvailableDish> STABLE_MENU_ORDER = Comparator
+            .comparing(AvailableDish::sectionId, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparing(AvailableDish::dishId, Comparator.nullsLast(Comparator.naturalOrder()));
 
     private final ChatClient chatClient;
     private final AiProps aiProps;
+    private final WarmupProps warmupProps;
     private final AdviceFilterChain adviceFilterChain;
 
     private final AvailableWinesService availableWinesService;
     private final AvailableDishesService availableDishesService;
     private final MenuDishService menuDishService;
-    private final MenuSectionService menuSectionService;
-    private final DishWineFilterService dishWineFilterService;
-    private final DishProfileService dishProfileService;
-    private final TagService tagService;
+    private final DishContextService dishContextService;
 
     private final ConversationStore conversationStore;
+    private final ParallelLookups parallelLookups;
+    private final LlmReplyCache replyCache;
+    private final PromptBudgeter promptBudgeter;
+    private final MentionIndex mentionIndex;
+    private final UserRequestRecognizer userRequestRecognizer;
+    private final GroundingWineSelector groundingWineSelector;
+    private final DishPairingMatrix dishPairingMatrix;
 
     @Override
     public String advise(String userMessage) {
         return advise("default", userMessage);
     }
 
-    public String advise(String clientId, String userMessage) {
+    @Override
+    public Mono<String> adviseReactive(String clientId, String userMessage) {
+        return Mono.fromCallable(() -> prepareAdvice(clientId, userMessage))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(prepared -> {
+                    Mono<String> reply = prepared.request() == null
+                            ? Mono.just(prepared.reply())
+                            : callLlm(prepared);
+                    return reply.flatMap(text -> saveSnapshotAsync(clientId, prepared, text).thenReturn(text));
+                });
+    }
+
+    @Override
+    public Flux<String> adviseStream(String clientId, String userMessage) {
+        return Mono.fromCallable(() -> prepareAdvice(clientId, userMessage))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(prepared -> {
+                    if (prepared.request() == null) {
+                        return Flux.just(prepared.reply())
+                                .concatWith(saveSnapshotAsync(clientId, prepared, prepared.reply()).then(Mono.<String>empty()));
+                    }
+
+                    Optional<String> cached = replyCache.get(prepared.cacheKey());
+                    if (cached.isPresent()) {
+                        return Flux.just(cached.get())
+                                .concatWith(saveSnapshotAsync(clientId, prepared, cached.get()).then(Mono.<String>empty()));
+                    }
+
+                    StringBuilder assembled = new StringBuilder();
+                    return chatClient.stream(prepared.request())
+                            .doOnNext(assembled::append)
+                            .doOnComplete(() -> replyCache.put(prepared.cacheKey(), assembled.toString()))
+                            // модель ничего не прислала — гость получает заглушку, в кэш она не попадает
+                            .concatWith(Mono.fromSupplier(() -> assembled.isEmpty() ? prepared.fallbackReply() : null))
+                            .concatWith(Mono.defer(() -> saveSnapshotAsync(
+                                    clientId,
+                                    prepared,
+                                    assembled.isEmpty() ? prepared.fallbackReply() : assembled.toString()
+                            )).then(Mono.<String>empty()));
+                });
+    }
+
+    private Mono<String> callLlm(PreparedAdvice prepared) {
+        return replyCache.getOrCall(prepared.cacheKey(), () -> chatClient.chatReactive(prepared.request()))
+                .defaultIfEmpty(prepared.fallbackReply());
+    }
+
+    /**
+     * Всё, что нужно сделать до обращения к LLM: фильтры, разбор запроса, подбор вин и меню, сборка промпта.
+     * Если ответ известен без модели, он возвращается сразу в {@link PreparedAdvice#reply()}.
+     */
+    private PreparedAdvice prepareAdvice(String clientId, String userMessage) {
         AdviceContext adviceContext = new AdviceContext(userMessage);
         Optional<String> early = adviceFilterChain.run(adviceContext);
-        if (early.isPresent()) return early.get();
+        if (early.isPresent()) return PreparedAdvice.immediate(early.get());
 
-        UserRequest userRequest = detectUserRequest(userMessage);
+        UserRequest userRequest = userRequestRecognizer.recognize(userMessage);
 
         if (userRequest.type() == UserRequestType.PRICE) {
-            return handlePriceFollowUp(clientId);
+            return PreparedAdvice.immediate(handlePriceFollowUp(clientId));
         }
 
         AvailableWineFilter userFilter = availableWinesService.deriveFilterFromUserText(userMessage);
         AvailableWineFilter effectiveFilter = userFilter;
 
+        // при prefix-stable всё меню уже в префиксе: выборку блюд для контекста не делаем, а в снимок
+        // идут только блюда, о которых спросил гость, — на них и будет ссылаться ответ
+        boolean prefixStable = aiProps.prefixStableLayout();
         String sectionContextLine = null;
         String dishProfileBlock = null;
         List<AvailableDish> menuForContext = List.of();
+        List<Long> focusDishIds = List.of();
+        List<AvailableWine> groundingWines = null;
 
         if (userRequest.type() == UserRequestType.DISH) {
-            MenuDish dish = menuDishService.findByExactName(userRequest.text())
-                    .orElseGet(() -> menuDishService.searchByTextContains(userRequest.text(), 3).stream().findFirst().orElse(null));
-            if (dish != null) {
-                AvailableWineFilter fromDishJson = readDishWineFilter(dish.id());
-                Optional<DishProfile> profileOpt = dishProfileService.findByDishId(dish.id());
-                List<String> tagNames = tagService.findNamesByDishId(dish.id());
-
-                AvailableWineFilter enrichedFromDish = deriveFilterFromProfileAndTags(profileOpt.orElse(null), tagNames, fromDishJson);
+            MenuDish dish = userRequest.dish() != null
+                    ? userRequest.dish()
+                    : menuDishService.searchByTextContains(userRequest.text(), 3).stream().findFirst().orElse(null);
+            Optional<DishPairing> precomputed = dish == null ? Optional.empty() : dishPairingMatrix.get(dish.id());
+            if (dish != null) focusDishIds = List.of(dish.id());
+            if (precomputed.isPresent()) {
+                DishPairing pairing = precomputed.get();
+                effectiveFilter = mergeFilters(pairing.filter(), userFilter);
+                // готовый список годится, только если пожелания гостя фильтр блюда не сузили
+                if (effectiveFilter.equals(pairing.filter())) {
+                    groundingWines = pairing.wines();
+                }
+                dishProfileBlock = buildDishContextBlock(dish, pairing.profile(), pairing.tagNames());
+                if (!prefixStable) menuForContext = pickMenuForContext();
+            } else if (dish != null) {
+                // Контекст блюда приходит одним запросом, меню для контекста читается параллельно с ним
+                ParallelLookups.Scope scope = parallelLookups.open();
+                CompletableFuture<Optional<DishContext>> contextFuture = scope.fork(() -> dishContextService.findByDishId(dish.id()));
+                CompletableFuture<List<AvailableDish>> menuFuture = prefixStable
+                        ? CompletableFuture.completedFuture(List.of())
+                        : scope.fork(this::pickMenuForContext);
+
+                DishContext context = ParallelLookups.join(contextFuture).orElse(null);
+                AvailableWineFilter fromDishJson = context == null ? AvailableWineFilter.empty() : context.dishFilter();
+                DishProfile profile = context == null ? null : context.profile();
+                List<String> tagNames = context == null ? List.of() : context.tagNames();
+
+                AvailableWineFilter enrichedFromDish = DishPairingRules.deriveFilterFromProfileAndTags(profile, tagNames, fromDishJson);
                 effectiveFilter = mergeFilters(enrichedFromDish, userFilter);
 
-                dishProfileBlock = buildDishContextBlock(dish, profileOpt.orElse(null), tagNames);
-                menuForContext = pickMenuForContext();
+                dishProfileBlock = buildDishContextBlock(dish, profile, tagNames);
+                menuForContext = ParallelLookups.join(menuFuture);
             }
         } else if (userRequest.type() == UserRequestType.SECTION) {
-            String sectionName = resolveSectionName(userRequest.text());
+            String sectionName = userRequest.sectionName();
             if (sectionName != null) {
                 sectionContextLine = "Раздел меню: " + sectionName;
                 List<AvailableDish> inSection = availableDishesService.bySection(sectionName);
-                menuForContext = limit(mergeDistinct(inSection, pickMenuForContext()), MENU_DISHES_CONTEXT_LIMIT);
+                focusDishIds = limit(inSection, MENU_DISHES_CONTEXT_LIMIT).stream().map(AvailableDish::dishId).toList();
+                if (!prefixStable) {
+                    menuForContext = limit(mergeDistinct(inSection, pickMenuForContext()), MENU_DISHES_CONTEXT_LIMIT);
+                }
             }
-        } else if (userRequest.type() == UserRequestType.WINE_NAME) {
+        } else if (userRequest.type() == UserRequestType.WINE_NAME && !prefixStable) {
             menuForContext = pickMenuForContext();
         }
 
-        List<AvailableWine> groundingWines = (effectiveFilter.maxPriceRub() != null)
-                ? availableWinesService.search(effectiveFilter, GROUNDING_LIMIT)
-                : fetchBucketedWithoutBudget(effectiveFilter);
+        if (groundingWines == null) {
+            groundingWines = groundingWineSelector.select(effectiveFilter);
+        }
 
         if (groundingWines.isEmpty()) {
-            String reply = buildNoMatchesResponse(effectiveFilter);
-            saveConversationSnapshot(
-                    clientId,
-                    userMessage,
-                    reply,
-                    List.of(),
-                    menuForContext.stream().map(AvailableDish::dishId).toList(),
-                    effectiveFilter
-            );
-            return reply;
+            List<Long> menuDishIds = prefixStable
+                    ? focusDishIds
+                    : menuForContext.stream().map(AvailableDish::dishId).toList();
+            return buildNoMatchesResponse(effectiveFilter)
+                    .withSnapshot(new SnapshotData(userMessage, List.of(), menuDishIds, effectiveFilter));
         }
 
-        StringBuilder systemBlock = new StringBuilder();
-        if (sectionContextLine != null) systemBlock.append(sectionContextLine).append("\n");
-        if (dishProfileBlock != null && !dishProfileBlock.isBlank()) systemBlock.append(dishProfileBlock).append("\n");
-        if (!menuForContext.isEmpty()) {
-            systemBlock.append("Доступные блюда меню (используй только их для пар):\n")
-                    .append(renderMenu(menuForContext))
-                    .append("\n");
+        StringBuilder headerBlock = new StringBuilder();
+        if (sectionContextLine != null) headerBlock.append(sectionContextLine).append("\n");
+        if (dishProfileBlock != null && !dishProfileBlock.isBlank()) headerBlock.append(dishProfileBlock);
+
+        if (prefixStable) {
+            return preparePrefixStable(userRequest, userMessage, headerBlock.toString(), groundingWines,
+                    effectiveFilter, focusDishIds);
         }
-        systemBlock.append("Доступные позиции вина (используй только их):\n")
-                .append(renderWines(groundingWines));
+
+        PromptBudgeter.BudgetedPrompt budgeted = promptBudgeter.assemble(
+                userRequest.type(),
+                SYSTEM_PROMPT,
+                userMessage,
+                headerBlock.toString(),
+                menuEntries(menuForContext),
+                wineEntries(groundingWines)
+        );
+        // в снимок и ключ кэша идут только позиции, реально показанные модели
+        groundingWines = groundingWines.subList(0, budgeted.winesKept());
+        menuForContext = limit(menuForContext, budgeted.menuKept());
 
         List<ChatMessage> messages = new ArrayList<>();
-        messages.add(ChatMessage.system(systemBlock.toString()));
+        messages.add(ChatMessage.system(budgeted.systemBlock()));
         messages.add(ChatMessage.user(userMessage));
 
         OpenAiChatCompletionsRequest request = OpenAiRequestFactory.build(
-                aiProps.model(), SYSTEM_PROMPT, messages, aiProps.temperature(), aiProps.maxTokens()
+                aiProps.model(), SYSTEM_PROMPT, messages, aiProps.temperature(), aiProps.maxTokens(),
+                warmupProps.modelKeepAlive()
         );
 
-        String reply = chatClient.chat(request);
-        reply = (reply == null) ? "" : reply;
+        List<Long> groundingStockIds = groundingWines.stream().map(AvailableWine::stockId).toList();
+        List<Long> menuDishIds = menuForContext.stream().map(AvailableDish::dishId).toList();
+        return PreparedAdvice.llm(request, EMPTY_MODEL_REPLY)
+                .withSnapshot(new SnapshotData(userMessage, groundingStockIds, menuDishIds, effectiveFilter))
+                .withCacheKey(replyCache.keyOf(aiProps.model(), userMessage, effectiveFilter, groundingStockIds, menuDishIds));
+    }
+
+    /**
+     * Раскладка под KV-кэш провайдера: первое системное сообщение — инструкция и активное меню
+     * в стабильном порядке, оно совпадает байт в байт, пока меню не изменилось. Раздел, профиль блюда,
+     * вина и вопрос гостя идут после него и пересчитываются на каждом запросе. Префикс ограничен
+     * prompt-budget.stable-prefix-tokens и считается в бюджете запроса.
+     */
+    private PreparedAdvice preparePrefixStable(UserRequest userRequest,
+                                               String userMessage,
+                                               String headerBlock,
+                                               List<AvailableWine> groundingWines,
+                                               AvailableWineFilter effectiveFilter,
+                                               List<Long> focusDishIds) {
+        List<AvailableDish> fullMenu = availableDishesService.all().stream()
+                .sorted(STABLE_MENU_ORDER)
+                .toList();
+        PromptBudgeter.StablePrefix stablePrefix = promptBudgeter.stablePrefix(SYSTEM_PROMPT, menuEntries(fullMenu));
 
-        saveConversationSnapshot(
-                clientId,
+        PromptBudgeter.BudgetedPrompt budgeted = promptBudgeter.assembleAfterCachedPrefix(
+                userRequest.type(),
+                stablePrefix,
                 userMessage,
-                reply,
-                groundingWines.stream().map(AvailableWine::stockId).toList(),
-                menuForContext.stream().map(AvailableDish::dishId).toList(),
-                effectiveFilter
+                headerBlock,
+                wineEntries(groundingWines)
         );
+        List<AvailableWine> shownWines = groundingWines.subList(0, budgeted.winesKept());
+
+        List<ChatMessage> messages = new ArrayList<>();
+        messages.add(ChatMessage.system(budgeted.systemBlock()));
+        messages.add(ChatMessage.user(userMessage));
 
-        return reply;
+        OpenAiChatCompletionsRequest request = OpenAiRequestFactory.build(
+                aiProps.model(), stablePrefix.text(), messages, aiProps.temperature(), aiProps.maxTokens(),
+                warmupProps.modelKeepAlive()
+        );
+
+        List<Long> groundingStockIds = shownWines.stream().map(AvailableWine::stockId).toList();
+        // ключ кэша — по меню, которое видела модель: иначе после смены меню отдадим ответ про старое
+        List<Long> prefixDishIds = fullMenu.subList(0, stablePrefix.menuKept()).stream()
+                .map(AvailableDish::dishId)
+                .toList();
+        return PreparedAdvice.llm(request, EMPTY_MODEL_REPLY)
+                .withSnapshot(new SnapshotData(userMessage, groundingStockIds, focusDishIds, effectiveFilter))
+                .withCacheKey(replyCache.keyOf(aiProps.model(), userMessage, effectiveFilter, groundingStockIds, prefixDishIds));
     }
 
-    private UserRequest detectUserRequest(String userMessage) {
-        if (userMessage == null || userMessage.isBlank()) {
-            return new UserRequest(UserRequestType.GENERAL, null);
-        }
-        String text = userMessage.trim();
-        String lowered = text.toLowerCase(RU);
 
-        if (lowered.matches(".*\\b(цена|сто(ит|ят)|почем|почём|сколько.*стои(т|тся|тят)|сколько.*они.*стоят)\\b.*")) {
-            return new UserRequest(UserRequestType.PRICE, text);
+    private record PreparedAdvice(
+            String reply,
+            OpenAiChatCompletionsRequest request,
+            String fallbackReply,
+            SnapshotData snapshot,
+            String cacheKey
+    ) {
+        static PreparedAdvice immediate(String reply) {
+            return new PreparedAdvice(reply, null, reply, null, null);
         }
 
-        if (lowered.contains("закуск") || lowered.contains("стартер")
-            || lowered.contains("суп") || lowered.contains("горяч")
-            || lowered.contains("основ") || lowered.contains("десерт")) {
-            return new UserRequest(UserRequestType.SECTION, text);
+        static PreparedAdvice llm(OpenAiChatCompletionsRequest request, String fallbackReply) {
+            return new PreparedAdvice(null, request, fallbackReply, null, null);
         }
 
-        if (menuDishService.findByExactName(text).isPresent()) {
-            return new UserRequest(UserRequestType.DISH, text);
+        PreparedAdvice withSnapshot(SnapshotData snapshotData) {
+            return new PreparedAdvice(reply, request, fallbackReply, snapshotData, cacheKey);
         }
 
-        if (mentionsWineConcept(lowered)) {
-            return new UserRequest(UserRequestType.WINE_NAME, text);
+        PreparedAdvice withCacheKey(String key) {
+            return new PreparedAdvice(reply, request, fallbackReply, snapshot, key);
         }
+    }
 
-        return new UserRequest(UserRequestType.GENERAL, text);
+    private record SnapshotData(
+            String userMessage,
+            List<Long> wineStockIds,
+            List<Long> dishIds,
+            AvailableWineFilter filter
+    ) {
+    }
+
+    private void saveIfNeeded(String clientId, PreparedAdvice prepared, String reply) {
+        SnapshotData snapshot = prepared.snapshot();
+        if (snapshot == null) return;
+        saveConversationSnapshot(
+                clientId,
+                snapshot.userMessage(),
+                reply,
+                snapshot.wineStockIds(),
+                snapshot.dishIds(),
+                snapshot.filter()
+        );
     }
 
-    private boolean mentionsWineConcept(String lowered) {
-        return lowered.contains("каберне") || lowered.contains("мерло") || lowered.contains("пино")
-               || lowered.contains("рислинг") || lowered.contains("шардоне")
-               || lowered.contains("красн") || lowered.contains("бел") || lowered.contains("розе") || lowered.contains("игрист");
+    private Mono<Void> saveSnapshotAsync(String clientId, PreparedAdvice prepared, String reply) {
+        if (prepared.snapshot() == null) return Mono.empty();
+        return Mono.<Void>fromRunnable(() -> saveIfNeeded(clientId, prepared, reply))
+                .subscribeOn(Schedulers.boundedElastic());
     }
 
     private String handlePriceFollowUp(String clientId) {
@@ -224,67 +379,26 @@ public class SommelierServiceImpl implements SommelierService {
             return "Пока не вижу последней рекомендации. Скажите название вина или блюда — подскажу цену.";
         }
 
-        List<AvailableDish> candidateDishes = state.lastShownDishIds().isEmpty()
-                ? List.of()
-                : availableDishesService.all().stream()
-                .filter(d -> state.lastShownDishIds().contains(d.dishId()))
-                .toList();
-
-        List<AvailableWine> candidateWines;
-        if (state.lastShownWineStockIds().isEmpty()) {
-            candidateWines = List.of();
-        } else {
-            var overfetch = availableWinesService.search(AvailableWineFilter.empty(), 500);
-            candidateWines = overfetch.stream()
-                    .filter(w -> state.lastShownWineStockIds().contains(w.stockId()))
-                    .toList();
-        }
-
-        MentionedItems mentions = extractMentions(lastText, candidateWines, candidateDishes);
-        if (mentions.wines().isEmpty() && mentions.dishes().isEmpty()) {
+        // упоминания ищем по всему каталогу; цены берём свежие, закончившиеся позиции выпадают
+        MentionIndex.Mentions mentions =
+                mentionIndex.find(lastText, state.lastShownWineStockIds(), state.lastShownDishIds());
+        List<AvailableWine> mentionedWines = availableWinesService.findByStockIds(mentions.wineStockIds());
+        List<AvailableDish> mentionedDishes = availableDishesService.findByDishIds(mentions.dishIds());
+        if (mentionedWines.isEmpty() && mentionedDishes.isEmpty()) {
             return "Не нашёл упоминаний из последней рекомендации. Назовите конкретное вино или блюдо — скажу цену.";
         }
 
         StringBuilder out = new StringBuilder();
         int i = 1;
-        for (AvailableWine w : mentions.wines()) {
+        for (AvailableWine w : mentionedWines) {
             out.append(i++).append(") ").append(buildLabel(w)).append(" — ").append(formatPrice(w.priceRub())).append('\n');
         }
-        for (AvailableDish d : mentions.dishes()) {
+        for (AvailableDish d : mentionedDishes) {
             out.append(i++).append(") ").append(d.dishName()).append(" — ").append(formatPrice(d.priceRub())).append('\n');
         }
         return out.toString().trim();
     }
 
-    private record MentionedItems(List<AvailableWine> wines, List<AvailableDish> dishes) {
-    }
-
-    private MentionedItems extractMentions(String assistantText,
-                                           List<AvailableWine> candidateWines,
-                                           List<AvailableDish> candidateDishes) {
-        String text = assistantText.toLowerCase(RU);
-
-        var matchedWines = candidateWines.stream()
-                .filter(w -> {
-                    String full = buildLabel(w).toLowerCase(RU);
-                    if (!full.isBlank() && text.contains(full)) return true;
-                    String wineName = w.wineName() == null ? "" : w.wineName().toLowerCase(RU);
-                    if (!wineName.isBlank() && text.contains(wineName)) return true;
-                    String producer = w.producerName() == null ? "" : w.producerName().toLowerCase(RU);
-                    return !producer.isBlank() && text.contains(producer);
-                })
-                .toList();
-
-        List<AvailableDish> matchedDishes = candidateDishes.stream()
-                .filter(d -> {
-                    String name = d.dishName() == null ? "" : d.dishName().toLowerCase(RU);
-                    return !name.isBlank() && text.contains(name);
-                })
-                .toList();
-
-        return new MentionedItems(matchedWines, matchedDishes);
-    }
-
     private void saveConversationSnapshot(
             String clientId,
             String userMsg,
@@ -293,68 +407,7 @@ public class SommelierServiceImpl implements SommelierService {
             List<Long> dishIds,
             AvailableWineFilter lastFilter
     ) {
-        ConversationContext prev = conversationStore.get(clientId).orElseGet(ru.topwine.assistant.model.session.ConversationContext::empty);
-
-        List<String> newUser = appendCap(prev.recentUserMessages(), userMsg, 10);
-        List<String> newAssistant = appendCap(prev.recentAssistantReplies(), assistantReply, 10);
-
-        ConversationContext ctx = new ru.topwine.assistant.model.session.ConversationContext(
-                newUser,
-                newAssistant,
-                wineStockIds == null ? List.of() : wineStockIds,
-                dishIds == null ? List.of() : dishIds,
-                lastFilter,
-                java.time.Instant.now()
-        );
-        conversationStore.save(clientId, ctx);
-    }
-
-    private List<String> appendCap(List<String> src, String val, int cap) {
-        if (val == null || val.isBlank()) return (src == null ? List.of() : src);
-        ArrayList<String> out = new ArrayList<>(src == null ? List.of() : src);
-        out.add(val);
-        if (out.size() > cap) {
-            out = new ArrayList<>(out.subList(out.size() - cap, out.size()));
-        }
-        return out;
-    }
-
-    private String resolveSectionName(String userText) {
-        String lower = userText.toLowerCase(RU);
-        return menuSectionService.activeSections().stream()
-                .map(MenuSection::name)
-                .filter(Objects::nonNull)
-                .filter(name -> lower.contains(name.toLowerCase(RU)) || synonymsMatch(lower, name))
-                .findFirst()
-                .orElseGet(() -> {
-                    if (lower.contains("закуск")) return "Закуски";
-                    if (lower.contains("суп")) return "Супы";
-                    if (lower.contains("горяч") || lower.contains("основ")) return "Горячее";
-                    if (lower.contains("десерт")) return "Десерты";
-                    return null;
-                });
-    }
-
-    private boolean synonymsMatch(String loweredUser, String sectionName) {
-        String lowerName = sectionName.toLowerCase(RU);
-        if (lowerName.contains("закуск")) return loweredUser.contains("стартер");
-        if (lowerName.contains("горяч") || lowerName.contains("основ")) return loweredUser.contains("мэйн");
-        return false;
-    }
-
-    private AvailableWineFilter readDishWineFilter(Long dishId) {
-        Optional<DishWineFilter> raw = dishWineFilterService.findByDishId(dishId);
-        Map<String, Object> map = raw.map(DishWineFilter::filter).orElse(Map.of());
-        return new AvailableWineFilter(
-                readString(map.get("freeQuery")),
-                readString(map.get("color")),
-                readString(map.get("country")),
-                readString(map.get("region")),
-                readString(map.get("grape")),
-                readInt(map.get("maxPriceRub")),
-                readInt(map.get("minVintageYear")),
-                readInt(map.get("maxVintageYear"))
-        );
+        conversationStore.append(clientId, new ConversationTurn(userMsg, assistantReply, wineStockIds, dishIds, lastFilter));
     }
 
     private String buildDishContextBlock(MenuDish dish, DishProfile profile, List<String> tagNames) {
@@ -383,126 +436,7 @@ public class SommelierServiceImpl implements SommelierService {
         return b.toString();
     }
 
-    private AvailableWineFilter deriveFilterFromProfileAndTags(
-            DishProfile profile,
-            List<String> tagNames,
-            AvailableWineFilter base
-    ) {
-        if (profile == null && (tagNames == null || tagNames.isEmpty())) {
-            return base;
-        }
-
-        String chosenColor = base.color();
-        if (chosenColor == null && profile != null) {
-            String protein = safeLower(profile.proteinType());
-            if (protein != null) {
-                switch (protein) {
-                    case "beef", "lamb", "duck" -> chosenColor = "red";
-                    case "fish_white", "seafood", "chicken", "veg", "cheese", "dessert" -> chosenColor = "white";
-                    default -> {
-                    }
-                }
-            }
-        }
-
-        String grapeHint = base.grape();
-        if (grapeHint == null) {
-            grapeHint = inferGrapeFromProfileAndTags(profile, tagNames, chosenColor);
-        }
-
-        return new AvailableWineFilter(
-                base.freeQuery(),
-                chosenColor,
-                base.country(),
-                base.region(),
-                grapeHint,
-                base.maxPriceRub(),
-                base.minVintageYear(),
-                base.maxVintageYear()
-        );
-    }
-
-    private String inferGrapeFromProfileAndTags(
-            DishProfile profile,
-            List<String> tagNames,
-            String chosenColor
-    ) {
-        if (profile == null && (tagNames == null || tagNames.isEmpty())) {
-            return null;
-        }
-
-        Integer fatLevel = profile == null ? null : profile.fatLevel();
-        Integer spiceLevel = profile == null ? null : profile.spiceLevel();
-        String cookWay = safeLower(profile == null ? null : profile.cookWay());
-        String protein = safeLower(profile == null ? null : profile.proteinType());
-
-        if (tagContains(tagNames, "анчоус")) return "albariño";
-        if (tagContains(tagNames, "камамбер")) return "chardonnay";
-        if (tagContains(tagNames, "голландский соус")) return "chablis";
-
-        if (high(fatLevel)) {
-            return (chosenColor == null || "white".equals(chosenColor)) ? "riesling" : "pinot noir";
-        }
-        if (high(spiceLevel)) return "gewürзtraminer".replace('з', 's'); // keep ascii spelling: gewürztraminer
-        if ("grilled".equals(cookWay)) return "syrah";
-        if ("raw".equals(cookWay) && "fish_fatty".equals(protein)) return "sauvignon blanc";
-
-        return null;
-    }
-
-    private String safeLower(String s) {
-        return (s == null) ? null : s.toLowerCase(RU).trim();
-    }
-
-    private boolean tagContains(List<String> tags, String needle) {
-        if (tags == null || tags.isEmpty()) return false;
-        String n = needle.toLowerCase(RU);
-        return tags.stream().anyMatch(t -> t != null && t.toLowerCase(RU).contains(n));
-    }
-
-    private Boolean high(Integer level) {
-        return level != null && level >= 3;
-    }
-
-    private List<AvailableWine> fetchBucketedWithoutBudget(AvailableWineFilter filterWithoutPrice) {
-        List<PriceBucket> plan = List.of(
-                new PriceBucket(1500, 3000, 4),
-                new PriceBucket(3000, 5000, 4),
-                new PriceBucket(5000, 10000, 2),
-                new PriceBucket(null, 1500, 1),
-                new PriceBucket(10000, 30000, 1),
-                new PriceBucket(30000, null, 1)
-        );
-
-        LinkedHashMap<Long, AvailableWine> pickedByStock = new LinkedHashMap<>();
-
-        for (PriceBucket bucket : plan) {
-            if (pickedByStock.size() >= GROUNDING_LIMIT) break;
-
-            AvailableWineFilter repoFilter = withMaxOnly(filterWithoutPrice, bucket.maxExclusive());
-            List<AvailableWine> prefiltered = availableWinesService.search(repoFilter, OVERFETCH_PER_BUCKET);
-
-            List<AvailableWine> inBucket = prefiltered.stream()
-                    .filter(w -> fitsBucket(w.priceRub(), bucket.minInclusive(), bucket.maxExclusive()))
-                    .filter(w -> !pickedByStock.containsKey(w.stockId()))
-                    .limit(bucket.targetCount())
-                    .toList();
-
-            inBucket.forEach(w -> pickedByStock.put(w.stockId(), w));
-        }
-
-        if (pickedByStock.size() < GROUNDING_LIMIT) {
-            List<AvailableWine> topUp = availableWinesService.search(removePrice(filterWithoutPrice), 100);
-            for (AvailableWine w : topUp) {
-                if (pickedByStock.size() >= GROUNDING_LIMIT) break;
-                pickedByStock.putIfAbsent(w.stockId(), w);
-            }
-        }
-
-        return new ArrayList<>(pickedByStock.values());
-    }
-
-    private String buildNoMatchesResponse(AvailableWineFilter filter) {
+    private PreparedAdvice buildNoMatchesResponse(AvailableWineFilter filter) {
         String[] preambles = {
                 "Прошу прощения — сейчас не нашёл точных совпадений.",
                 "Извините, точных совпадений не нашлось.",
@@ -533,7 +467,7 @@ public class SommelierServiceImpl implements SommelierService {
             }
         }
 
-        List<AvailableWine> balanced = fetchBucketedWithoutBudget(
+        List<AvailableWine> balanced = groundingWineSelector.selectWithoutBudget(
                 new AvailableWineFilter(
                         filter == null ? null : filter.freeQuery(),
                         filter == null ? null : filter.color(),
@@ -541,6 +475,7 @@ public class SommelierServiceImpl implements SommelierService {
                         filter == null ? null : filter.region(),
                         filter == null ? null : filter.grape(),
                         null,
+                        null,
                         filter == null ? null : filter.minVintageYear(),
                         filter == null ? null : filter.maxVintageYear()
                 )
@@ -555,7 +490,7 @@ public class SommelierServiceImpl implements SommelierService {
             );
         }
 
-        return preamble + " Похоже, сейчас почти ничего нет в наличии. Могу записать ваши предпочтения (цвет, стиль, бюджет) и предложить, когда появится обновление.";
+        return PreparedAdvice.immediate(preamble + " Похоже, сейчас почти ничего нет в наличии. Могу записать ваши предпочтения (цвет, стиль, бюджет) и предложить, когда появится обновление.");
     }
 
     private List<AvailableWine> randomTrim(List<AvailableWine> source, int min, int max) {
@@ -568,7 +503,7 @@ public class SommelierServiceImpl implements SommelierService {
         return shuffled.subList(0, take);
     }
 
-    private String composeNoMatchesWithLLM(String preamble,
+    private PreparedAdvice composeNoMatchesWithLLM(String preamble,
                                            String middleLine,
                                            List<AvailableWine> shortlist,
                                            String closing) {
@@ -596,10 +531,10 @@ public class SommelierServiceImpl implements SommelierService {
                 SYSTEM_PROMPT,
                 msgs,
                 aiProps.temperature(),
-                aiProps.maxTokens()
+                aiProps.maxTokens(),
+                warmupProps.modelKeepAlive()
         );
-        String reply = chatClient.chat(req);
-        return reply == null ? (preamble + "\n" + middleLine + "\n\n" + renderWines(shortlist) + "\n\n" + closing) : reply;
+        return PreparedAdvice.llm(req, preamble + "\n" + middleLine + "\n\n" + renderWines(shortlist) + "\n\n" + closing);
     }
 
     private List<AvailableWine> pickClosestByBudget(AvailableWineFilter baseFilter, int budgetRub, int limit) {
@@ -610,6 +545,7 @@ public class SommelierServiceImpl implements SommelierService {
                 baseFilter.region(),
                 baseFilter.grape(),
                 null,
+                null,
                 baseFilter.minVintageYear(),
                 baseFilter.maxVintageYear()
         );
@@ -638,27 +574,6 @@ public class SommelierServiceImpl implements SommelierService {
         return priceRub == null ? Integer.MAX_VALUE / 4 : priceRub.intValue();
     }
 
-    private boolean fitsBucket(BigDecimal price, Integer min, Integer max) {
-        if (price == null) return false;
-        int value = price.intValue();
-        if (min != null && value < min) return false;
-        return max == null || value < max;
-    }
-
-    private AvailableWineFilter withMaxOnly(AvailableWineFilter source, Integer newMaxExclusive) {
-        return new AvailableWineFilter(
-                source.freeQuery(), source.color(), source.country(), source.region(),
-                source.grape(), newMaxExclusive, source.minVintageYear(), source.maxVintageYear()
-        );
-    }
-
-    private AvailableWineFilter removePrice(AvailableWineFilter source) {
-        return new AvailableWineFilter(
-                source.freeQuery(), source.color(), source.country(), source.region(),
-                source.grape(), null, source.minVintageYear(), source.maxVintageYear()
-        );
-    }
-
     private AvailableWineFilter mergeFilters(AvailableWineFilter fromDish, AvailableWineFilter fromUser) {
         return new AvailableWineFilter(
                 firstNonNull(fromUser.freeQuery(), fromDish.freeQuery()),
@@ -666,6 +581,7 @@ public class SommelierServiceImpl implements SommelierService {
                 firstNonNull(fromUser.country(), fromDish.country()),
                 firstNonNull(fromUser.region(), fromDish.region()),
                 firstNonNull(fromUser.grape(), fromDish.grape()),
+                firstNonNull(fromUser.minPriceRub(), fromDish.minPriceRub()),
                 firstNonNull(fromUser.maxPriceRub(), fromDish.maxPriceRub()),
                 firstNonNull(fromUser.minVintageYear(), fromDish.minVintageYear()),
                 firstNonNull(fromUser.maxVintageYear(), fromDish.maxVintageYear())
@@ -677,16 +593,28 @@ public class SommelierServiceImpl implements SommelierService {
     }
 
     private String renderWines(List<AvailableWine> wines) {
-        StringBuilder out = new StringBuilder();
+        return wineEntries(wines).stream()
+                .map(entry -> entry.full() + "\n")
+                .collect(Collectors.joining());
+    }
+
+    /**
+     * Сжатая строка вина оставляет то, по чему гость выбирает: название, цвет, сорт и цену.
+     */
+    private List<PromptBudgeter.PromptEntry> wineEntries(List<AvailableWine> wines) {
+        List<PromptBudgeter.PromptEntry> entries = new ArrayList<>(wines.size());
         int idx = 1;
         for (AvailableWine wine : wines) {
-            out.append(idx++).append(") ")
-                    .append(buildLabel(wine)).append(" — ")
-                    .append(buildMeta(wine))
-                    .append("; цена: ").append(formatPrice(wine.priceRub()))
-                    .append(", остаток: ").append(wine.quantityBottles()).append(" шт.\n");
+            String head = (idx++) + ") " + buildLabel(wine) + " — ";
+            entries.add(new PromptBudgeter.PromptEntry(
+                    head + buildMeta(wine)
+                    + "; цена: " + formatPrice(wine.priceRub())
+                    + ", остаток: " + wine.quantityBottles() + " шт.",
+                    head + dash(wine.wineColor()) + ", " + dash(wine.grapeVarieties())
+                    + "; " + formatPrice(wine.priceRub())
+            ));
         }
-        return out.toString();
+        return entries;
     }
 
     private String buildLabel(AvailableWine wine) {
@@ -707,13 +635,19 @@ public class SommelierServiceImpl implements SommelierService {
         );
     }
 
-    private String renderMenu(List<AvailableDish> dishes) {
+    private List<PromptBudgeter.PromptEntry> menuEntries(List<AvailableDish> dishes) {
         return dishes.stream()
-                .limit(MENU_DISHES_CONTEXT_LIMIT)
-                .map(d -> "- " + d.sectionName() + ": " + d.dishName()
-                          + (d.description() == null || d.description().isBlank() ? "" : " — " + d.description())
-                          + "; " + formatPrice(d.priceRub()))
-                .collect(Collectors.joining("\n"));
+                .map(d -> new PromptBudgeter.PromptEntry(
+                        renderMenuLine(d),
+                        "- " + d.dishName() + "; " + formatPrice(d.priceRub())
+                ))
+                .toList();
+    }
+
+    private String renderMenuLine(AvailableDish d) {
+        return "- " + d.sectionName() + ": " + d.dishName()
+               + (d.description() == null || d.description().isBlank() ? "" : " — " + d.description())
+               + "; " + formatPrice(d.priceRub());
     }
 
     private List<AvailableDish> pickMenuForContext() {
@@ -737,39 +671,6 @@ public class SommelierServiceImpl implements SommelierService {
         return (value == null || value.isBlank()) ? "—" : value;
     }
 
-    private String readString(Object v) {
-        return v == null ? null : String.valueOf(v).trim();
-    }
-
-    private Integer readInt(Object v) {
-        switch (v) {
-            case null -> {
-                return null;
-            }
-            case Integer i -> {
-                return i;
-            }
-            case Long l -> {
-                return Math.toIntExact(l);
-            }
-            case Double d -> {
-                return (int) Math.round(d);
-            }
-            case BigDecimal bd -> {
-                return bd.intValue();
-            }
-            default -> {
-            }
-        }
-        String s = String.valueOf(v).trim();
-        if (s.isEmpty()) return null;
-        try {
-            return Integer.parseInt(s);
-        } catch (Exception ignore) {
-            return null;
-        }
-    }
-
     private String nullSafe(Object value) {
         return value == null ? "—" : String.valueOf(value);
     }
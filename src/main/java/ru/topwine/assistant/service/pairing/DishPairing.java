@@ -0,0 +1,22 @@
+package ru.topwine.assistant.service.pairing;
+
+import ru.topwine.assistant.model.menu.DishProfile;
+import ru.topwine.assistant.model.wine.AvailableWine;
+import ru.topwine.assistant.model.wine.AvailableWineFilter;
+
+import java.util.List;
+
+/**
+ * Заранее посчитанная пара для блюда меню.
+ *
+ * @param filter фильтр вин из filter_json, профиля и тегов блюда — без пожеланий гостя
+ * @param wines  вина для промпта по этому фильтру, в порядке {@link GroundingWineSelector}
+ */
+public record DishPairing(
+        Long dishId,
+        DishProfile profile,
+        List<String> tagNames,
+        AvailableWineFilter filter,
+        List<AvailableWine> wines
+) {
+}
@@ -0,0 +1,240 @@
+package ru.topwine.assistant.service.pairing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.topwine.assistant.configuration.PairingProps;
+import ru.topwine.assistant.model.DishContext;
+import ru.topwine.assistant.model.change.DataChangeEvent;
+import ru.topwine.assistant.model.wine.AvailableWine;
+import ru.topwine.assistant.model.wine.AvailableWineFilter;
+import ru.topwine.assistant.repository.AvailableWinesRepository;
+import ru.topwine.assistant.service.DishContextService;
+import ru.topwine.assistant.service.catalog.WineCatalogSnapshot;
+import ru.topwine.assistant.service.change.DataChangeListener;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Матрица пар блюдо–вино: для каждого активного блюда заранее посчитаны фильтр вин (filter_json, профиль, теги)
+ * и вина для промпта. advise() берёт пару отсюда, а при промахе считает её на лету.
+ * <p>
+ * Изменение сразу убирает задетые записи, чтобы гость не увидел закончившееся вино; пересчёт идёт в фоне.
+ * Правка блюда, его профиля, тегов или filter_json пересчитывает это блюдо. Правка остатка — блюда, в чьих
+ * винах этот остаток уже есть, и те, под чей фильтр изменившееся вино теперь подходит. Правка карточки вина,
+ * справочника тегов, TRUNCATE и RESYNC пересчитывают всё. Вина в фоне берутся из БД, а не из снимка каталога:
+ * снимок после того же уведомления может ещё перечитываться. Блюдо, профиль, теги и filter_json читаются
+ * одним запросом ({@link DishContextService}).
+ */
+@Slf4j
+@Component
+public class DishPairingMatrix implements DataChangeListener {
+
+    private static final Duration CHANGE_DEBOUNCE = Duration.ofMillis(200);
+
+    private final DishContextService dishContextService;
+    private final AvailableWinesRepository availableWinesRepository;
+    private final GroundingWineSelector groundingWineSelector;
+    private final PairingProps props;
+
+    private final Map<Long, DishPairing> byDishId = new ConcurrentHashMap<>();
+    private final Set<Long> pendingDishIds = ConcurrentHashMap.newKeySet();
+    private final Set<Long> pendingStockIds = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean pendingAll = new AtomicBoolean(false);
+    private final AtomicBoolean recomputeScheduled = new AtomicBoolean(false);
+    private final Counter hits;
+    private final Counter misses;
+
+    public DishPairingMatrix(DishContextService dishContextService,
+                             AvailableWinesRepository availableWinesRepository,
+                             GroundingWineSelector groundingWineSelector,
+                             PairingProps props,
+                             MeterRegistry meterRegistry) {
+        this.dishContextService = dishContextService;
+        this.availableWinesRepository = availableWinesRepository;
+        this.groundingWineSelector = groundingWineSelector;
+        this.props = props;
+        Gauge.builder("pairing.matrix.size", byDishId, Map::size)
+                .description("Блюд с заранее посчитанной парой")
+                .register(meterRegistry);
+        this.hits = Counter.builder("pairing.matrix.lookups")
+                .description("Обращения advise() к матрице пар")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("pairing.matrix.lookups")
+                .description("Обращения advise() к матрице пар")
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
+
+    public Optional<DishPairing> get(Long dishId) {
+        DishPairing pairing = dishId == null || !props.enabled() ? null : byDishId.get(dishId);
+        (pairing == null ? misses : hits).increment();
+        return Optional.ofNullable(pairing);
+    }
+
+    @Scheduled(
+            initialDelayString = "${pairing.initial-delay:PT10S}",
+            fixedDelayString = "${pairing.refresh-interval:PT30M}"
+    )
+    public void scheduledRebuild() {
+        if (props.enabled()) {
+            rebuildAll();
+        }
+    }
+
+    @Override
+    public void onDataChange(DataChangeEvent event) {
+        if (!props.enabled()) return;
+        if (event.isResync() || event.id() == null) {
+            byDishId.clear();
+            pendingAll.set(true);
+        } else {
+            switch (event.table()) {
+                case WINE_STOCK -> {
+                    byDishId.values().removeIf(pairing -> {
+                        boolean shown = pairing.wines().stream().anyMatch(wine -> event.id().equals(wine.stockId()));
+                        if (shown) pendingDishIds.add(pairing.dishId());
+                        return shown;
+                    });
+                    pendingStockIds.add(event.id());
+                }
+                case MENU_DISH, DISH_PROFILE, DISH_TAG, DISH_WINE_FILTER -> {
+                    byDishId.remove(event.id());
+                    pendingDishIds.add(event.id());
+                }
+                case WINE_ITEM, TAG -> {
+                    byDishId.clear();
+                    pendingAll.set(true);
+                }
+                default -> {
+                    return;
+                }
+            }
+        }
+        scheduleRecompute();
+    }
+
+    /**
+     * Пересчитывает пары всех активных блюд; блюда, снятые с меню, из матрицы убираются.
+     */
+    public synchronized void rebuildAll() {
+        long startNanos = System.nanoTime();
+        try {
+            Set<Long> activeIds = new HashSet<>();
+            for (DishContext context : dishContextService.findAllActive()) {
+                activeIds.add(context.dish().id());
+                byDishId.put(context.dish().id(), compute(context));
+            }
+            byDishId.keySet().retainAll(activeIds);
+            log.info("Матрица пар блюдо–вино пересчитана: блюд={}, время={} мс",
+                    activeIds.size(), (System.nanoTime() - startNanos) / 1_000_000);
+        } catch (Exception ex) {
+            log.warn("Не удалось пересчитать матрицу пар блюдо–вино, advise() посчитает пары на лету: {}", ex.toString());
+        }
+    }
+
+    private void scheduleRecompute() {
+        if (recomputeScheduled.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("dish-pairing-recompute").start(() -> {
+                sleepQuietly(CHANGE_DEBOUNCE);
+                recomputeScheduled.set(false);
+                recomputePending();
+            });
+        }
+    }
+
+    private synchronized void recomputePending() {
+        if (pendingAll.getAndSet(false)) {
+            pendingDishIds.clear();
+            pendingStockIds.clear();
+            rebuildAll();
+            return;
+        }
+        Set<Long> dishIds = drain(pendingDishIds);
+        Set<Long> stockIds = drain(pendingStockIds);
+        if (dishIds.isEmpty() && stockIds.isEmpty()) return;
+
+        long startNanos = System.nanoTime();
+        try {
+            if (!stockIds.isEmpty()) {
+                // пара могла попасть в матрицу уже после того, как событие почистило её, — из идущей
+                // пересборки, посчитанной до изменения; такие пары находим по их винам ещё раз
+                dishIds.addAll(dishesShowing(stockIds));
+                dishIds.addAll(dishesMatching(availableWinesRepository.findByStockIds(stockIds)));
+            }
+            int recomputed = 0;
+            for (DishContext context : dishContextService.findActiveByDishIds(dishIds)) {
+                dishIds.remove(context.dish().id());
+                byDishId.put(context.dish().id(), compute(context));
+                recomputed++;
+            }
+            // оставшиеся id — блюда, которых больше нет в активном меню
+            dishIds.forEach(byDishId::remove);
+            log.debug("Матрица пар: пересчитано блюд={}, время={} мс", recomputed, (System.nanoTime() - startNanos) / 1_000_000);
+        } catch (Exception ex) {
+            dishIds.forEach(byDishId::remove);
+            log.warn("Не удалось пересчитать пары блюд {}, до следующего пересчёта они считаются на лету: {}",
+                    dishIds, ex.toString());
+        }
+    }
+
+    private Set<Long> dishesShowing(Set<Long> stockIds) {
+        Set<Long> affected = new HashSet<>();
+        for (DishPairing pairing : byDishId.values()) {
+            if (pairing.wines().stream().anyMatch(wine -> stockIds.contains(wine.stockId()))) {
+                affected.add(pairing.dishId());
+            }
+        }
+        return affected;
+    }
+
+    /**
+     * Блюда, под чей фильтр подходит хотя бы одно из изменившихся вин. Фильтр со свободным запросом
+     * в БД ищется полнотекстово, поэтому такие блюда пересчитываются всегда.
+     */
+    private Set<Long> dishesMatching(List<AvailableWine> changedWines) {
+        Set<Long> affected = new HashSet<>();
+        if (changedWines.isEmpty()) return affected;
+        WineCatalogSnapshot changed = WineCatalogSnapshot.of(changedWines);
+        for (DishPairing pairing : byDishId.values()) {
+            AvailableWineFilter filter = pairing.filter();
+            boolean freeQuery = filter.freeQuery() != null && !filter.freeQuery().isBlank();
+            if (freeQuery || !changed.search(filter, 1).isEmpty()) {
+                affected.add(pairing.dishId());
+            }
+        }
+        return affected;
+    }
+
+    private DishPairing compute(DishContext context) {
+        AvailableWineFilter filter = DishPairingRules.deriveFilterFromProfileAndTags(
+                context.profile(), context.tagNames(), context.dishFilter());
+        return new DishPairing(context.dish().id(), context.profile(), context.tagNames(), filter,
+                List.copyOf(groundingWineSelector.selectFromDatabase(filter)));
+    }
+
+    private static Set<Long> drain(Set<Long> pending) {
+        Set<Long> drained = new HashSet<>(pending);
+        pending.removeAll(drained);
+        return drained;
+    }
+
+    private void sleepQuietly(Duration delay) {
+        try {
+            Thread.sleep(delay.toMillis());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package ru.topwine.assistant.service.pairing;
+
+import ru.topwine.assistant.model.menu.DishProfile;
+import ru.topwine.assistant.model.wine.AvailableWineFilter;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Правила, по которым из filter_json, профиля и тегов блюда получается фильтр вин.
+ * Сам filter_json разбирается заранее, в {@link ru.topwine.assistant.repository.DishWineFilterRepository}.
+ * Без состояния: ими пользуются и живой путь advise(), и {@link DishPairingMatrix}.
+ */
+public final class DishPairingRules {
+
+    private static final Locale RU = Locale.forLanguageTag("ru-RU");
+
+    private DishPairingRules() {
+    }
+
+    /**
+     * Дополняет фильтр блюда цветом по белку и подсказкой сорта; то, что задано в filter_json, не трогает.
+     */
+    public static AvailableWineFilter deriveFilterFromProfileAndTags(
+            DishProfile profile,
+            List<String> tagNames,
+            AvailableWineFilter base
+    ) {
+        if (profile == null && (tagNames == null || tagNames.isEmpty())) {
+            return base;
+        }
+
+        String chosenColor = base.color();
+        if (chosenColor == null && profile != null) {
+            String protein = safeLower(profile.proteinType());
+            if (protein != null) {
+                switch (protein) {
+                    case "beef", "lamb", "duck" -> chosenColor = "red";
+                    case "fish_white", "seafood", "chicken", "veg", "cheese", "dessert" -> chosenColor = "white";
+                    default -> {
+                    }
+                }
+            }
+        }
+
+        String grapeHint = base.grape();
+        if (grapeHint == null) {
+            grapeHint = inferGrapeFromProfileAndTags(profile, tagNames, chosenColor);
+        }
+
+        return new AvailableWineFilter(
+                base.freeQuery(),
+                chosenColor,
+                base.country(),
+                base.region(),
+                grapeHint,
+                base.minPriceRub(),
+                base.maxPriceRub(),
+                base.minVintageYear(),
+                base.maxVintageYear()
+        );
+    }
+
+    private static String inferGrapeFromProfileAndTags(
+            DishProfile profile,
+            List<String> tagNames,
+            String chosenColor
+    ) {
+        if (profile == null && (tagNames == null || tagNames.isEmpty())) {
+            return null;
+        }
+
+        Integer fatLevel = profile == null ? null : profile.fatLevel();
+        Integer spiceLevel = profile == null ? null : profile.spiceLevel();
+        String cookWay = safeLower(profile == null ? null : profile.cookWay());
+        String protein = safeLower(profile == null ? null : profile.proteinType());
+
+        if (tagContains(tagNames, "анчоус")) return "albariño";
+        if (tagContains(tagNames, "камамбер")) return "chardonnay";
+        if (tagContains(tagNames, "голландский соус")) return "chablis";
+
+        if (high(fatLevel)) {
+            return (chosenColor == null || "white".equals(chosenColor)) ? "riesling" : "pinot noir";
+        }
+        if (high(spiceLevel)) return "gewürзtraminer".replace('з', 's'); // keep ascii spelling: gewürztraminer
+        if ("grilled".equals(cookWay)) return "syrah";
+        if ("raw".equals(cookWay) && "fish_fatty".equals(protein)) return "sauvignon blanc";
+
+        return null;
+    }
+
+    private static String safeLower(String s) {
+        return (s == null) ? null : s.toLowerCase(RU).trim();
+    }
+
+    private static boolean tagContains(List<String> tags, String needle) {
+        if (tags == null || tags.isEmpty()) return false;
+        String n = needle.toLowerCase(RU);
+        return tags.stream().anyMatch(t -> t != null && t.toLowerCase(RU).contains(n));
+    }
+
+    private static boolean high(Integer level) {
+        return level != null && level >= 3;
+    }
+}
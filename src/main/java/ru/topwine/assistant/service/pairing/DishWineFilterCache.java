@@ -0,0 +1,113 @@
+package ru.topwine.assistant.service.pairing;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.topwine.assistant.model.change.DataChangeEvent;
+import ru.topwine.assistant.model.enums.ChangedTable;
+import ru.topwine.assistant.model.menu.DishWineFilter;
+import ru.topwine.assistant.model.wine.AvailableWineFilter;
+import ru.topwine.assistant.repository.DishWineFilterRepository;
+import ru.topwine.assistant.service.change.DataChangeListener;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Уже разобранные фильтры dish_wine_filter по id блюда. Загружаются все разом при старте, JSON проверяется
+ * при загрузке ({@link DishWineFilterRepository}), на запросе гостя остаётся только поиск в map.
+ * <p>
+ * Изменение фильтра блюда помечает запись устаревшей, и она перечитывается при следующем обращении —
+ * так пересчёт пар сразу после того же уведомления уже видит новый фильтр. TRUNCATE и RESYNC перечитывают всё.
+ * Пока загрузить всё не удалось, фильтр читается из БД на каждом обращении, а загрузка повторяется не чаще раза
+ * в 30 секунд.
+ */
+@Slf4j
+@Component
+public class DishWineFilterCache implements DataChangeListener {
+
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(30);
+
+    private final DishWineFilterRepository dishWineFilterRepository;
+    private final Map<Long, AvailableWineFilter> byDishId = new ConcurrentHashMap<>();
+    private final Set<Long> staleDishIds = ConcurrentHashMap.newKeySet();
+    private volatile boolean loaded;
+    private volatile long nextAttemptNanos = Long.MIN_VALUE;
+
+    public DishWineFilterCache(DishWineFilterRepository dishWineFilterRepository, MeterRegistry meterRegistry) {
+        this.dishWineFilterRepository = dishWineFilterRepository;
+        Gauge.builder("pairing.dish_filters.size", byDishId, Map::size)
+                .description("Блюд с разобранным filter_json")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Фильтр блюда; пустой, если для блюда filter_json не задан.
+     */
+    public AvailableWineFilter forDish(Long dishId) {
+        if (dishId == null) return AvailableWineFilter.empty();
+        if (!loaded) {
+            loadAll();
+        }
+        if (!loaded) {
+            return readOne(dishId);
+        }
+        if (staleDishIds.remove(dishId)) {
+            AvailableWineFilter fresh = readOne(dishId);
+            byDishId.put(dishId, fresh);
+            return fresh;
+        }
+        return byDishId.getOrDefault(dishId, AvailableWineFilter.empty());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        loadAll();
+    }
+
+    @Override
+    public void onDataChange(DataChangeEvent event) {
+        if (!event.affects(ChangedTable.DISH_WINE_FILTER)) return;
+        if (event.isResync() || event.id() == null) {
+            loaded = false;
+            nextAttemptNanos = Long.MIN_VALUE;
+        } else {
+            staleDishIds.add(event.id());
+        }
+    }
+
+    private synchronized void loadAll() {
+        if (loaded) return;
+        // MIN_VALUE — ещё не пробовали; без этой проверки разность переполняется и загрузки не будет никогда
+        if (nextAttemptNanos != Long.MIN_VALUE && System.nanoTime() - nextAttemptNanos < 0) return;
+        long startNanos = System.nanoTime();
+        try {
+            // события, пришедшие до чтения, загрузка и так учтёт; пришедшие во время — перечитаем по одному
+            staleDishIds.clear();
+            Map<Long, AvailableWineFilter> fresh = new HashMap<>();
+            for (DishWineFilter row : dishWineFilterRepository.findAll()) {
+                fresh.put(row.dishId(), row.filter());
+            }
+            byDishId.keySet().retainAll(fresh.keySet());
+            byDishId.putAll(fresh);
+            loaded = true;
+            log.info("Фильтры блюд загружены: блюд={}, время={} мс",
+                    fresh.size(), (System.nanoTime() - startNanos) / 1_000_000);
+        } catch (Exception ex) {
+            nextAttemptNanos = System.nanoTime() + RETRY_DELAY.toNanos();
+            log.warn("Не удалось загрузить фильтры блюд, читаем их из БД по одному: {}", ex.toString());
+        }
+    }
+
+    private AvailableWineFilter readOne(Long dishId) {
+        return dishWineFilterRepository.findByDishId(dishId)
+                .map(DishWineFilter::filter)
+                .orElse(AvailableWineFilter.empty());
+    }
+}
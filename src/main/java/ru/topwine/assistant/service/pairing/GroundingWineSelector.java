@@ -0,0 +1,70 @@
+package ru.topwine.assistant.service.pairing;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.topwine.assistant.model.PriceBucket;
+import ru.topwine.assistant.model.wine.AvailableWine;
+import ru.topwine.assistant.model.wine.AvailableWineFilter;
+import ru.topwine.assistant.repository.AvailableWinesRepository;
+import ru.topwine.assistant.service.AvailableWinesService;
+
+import java.util.List;
+
+/**
+ * Подбор вин, которые попадут в промпт: с бюджетом — подходящие по фильтру, без бюджета — по ценовым корзинам,
+ * чтобы гость увидел варианты разного уровня.
+ */
+@Component
+@RequiredArgsConstructor
+public class GroundingWineSelector {
+
+    public static final int GROUNDING_LIMIT = 12;
+    /**
+     * Порядок корзин — приоритет: если мест не хватит, дальние корзины останутся без вин.
+     */
+    private static final List<PriceBucket> GROUNDING_PRICE_PLAN = List.of(
+            new PriceBucket(1500, 3000, 4),
+            new PriceBucket(3000, 5000, 4),
+            new PriceBucket(5000, 10000, 2),
+            new PriceBucket(null, 1500, 1),
+            new PriceBucket(10000, 30000, 1),
+            new PriceBucket(30000, null, 1)
+    );
+
+    private final AvailableWinesService availableWinesService;
+    private final AvailableWinesRepository availableWinesRepository;
+
+    public List<AvailableWine> select(AvailableWineFilter filter) {
+        return hasBudget(filter)
+                ? availableWinesService.search(filter, GROUNDING_LIMIT)
+                : selectWithoutBudget(filter);
+    }
+
+    /**
+     * То же, но сразу из БД, мимо снимка каталога: фоновый пересчёт идёт сразу после изменения остатков,
+     * когда снимок в памяти мог ещё не обновиться.
+     */
+    public List<AvailableWine> selectFromDatabase(AvailableWineFilter filter) {
+        return hasBudget(filter)
+                ? availableWinesRepository.search(filter, GROUNDING_LIMIT)
+                : availableWinesRepository.searchBucketed(removePrice(filter), GROUNDING_PRICE_PLAN, GROUNDING_LIMIT);
+    }
+
+    /**
+     * Границы цены из фильтра отбрасываются: их заменяют корзины.
+     */
+    public List<AvailableWine> selectWithoutBudget(AvailableWineFilter filter) {
+        return availableWinesService.searchBucketed(removePrice(filter), GROUNDING_PRICE_PLAN, GROUNDING_LIMIT);
+    }
+
+    private static boolean hasBudget(AvailableWineFilter filter) {
+        return filter.minPriceRub() != null || filter.maxPriceRub() != null;
+    }
+
+    private static AvailableWineFilter removePrice(AvailableWineFilter source) {
+        return new AvailableWineFilter(
+                source.freeQuery(), source.color(), source.country(), source.region(),
+                source.grape(), null, null, source.minVintageYear(), source.maxVintageYear()
+        );
+    }
+}
@@ -0,0 +1,245 @@
+package ru.topwine.assistant.service.prompt;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.topwine.assistant.configuration.PromptBudgetProps;
+import ru.topwine.assistant.model.enums.UserRequestType;
+
+import java.util.List;
+
+/**
+ * Собирает системный блок промпта в пределах бюджета входных токенов.
+ * <p>
+ * Приоритет блоков: профиль блюда и раздел меню не трогаем, затем вина, затем меню.
+ * Пока оценка выше бюджета: сжимаем строки меню, убираем блюда с конца, сжимаем строки вин,
+ * убираем вина с конца до {@code minWines}. Списки приходят уже упорядоченными по важности.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PromptBudgeter {
+
+    static final String MENU_HEADER = "Доступные блюда меню (используй только их для пар):\n";
+    static final String STABLE_MENU_HEADER = "\nМеню ресторана (для пар используй только эти блюда):\n";
+    static final String WINES_HEADER = "Доступные позиции вина (используй только их):\n";
+
+    /**
+     * Служебные токены чата на каждое сообщение (роль, разделители).
+     */
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+
+    private final PromptBudgetProps props;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Строка списка в полном и сжатом виде.
+     */
+    public record PromptEntry(String full, String compact) {
+    }
+
+    /**
+     * @param winesKept сколько первых вин из переданного списка попало в промпт
+     * @param menuKept  сколько первых блюд из переданного списка попало в промпт
+     */
+    public record BudgetedPrompt(
+            String systemBlock,
+            int estimatedTokens,
+            int budgetTokens,
+            int winesKept,
+            int menuKept
+    ) {
+    }
+
+    /**
+     * Неизменный префикс: инструкция и меню в переданном (стабильном) порядке.
+     *
+     * @param menuKept сколько первых блюд меню попало в префикс
+     */
+    public record StablePrefix(String text, int tokens, int menuKept) {
+    }
+
+    /**
+     * Префикс для раскладки prefix-stable, ужатый до {@code stablePrefixTokens} так же, как меню в обычном
+     * промпте: сначала сжатые строки, затем блюда с конца. Результат зависит только от меню и настройки,
+     * поэтому между запросами префикс совпадает байт в байт, пока меню не изменилось.
+     */
+    public StablePrefix stablePrefix(String systemPrompt, List<PromptEntry> menu) {
+        Block menuBlock = new Block(STABLE_MENU_HEADER, menu);
+        int fixed = estimateTokens(systemPrompt) + MESSAGE_OVERHEAD_TOKENS;
+        if (props.enabled()) {
+            int cap = props.stablePrefixTokens();
+            if (fixed + menuBlock.tokens() > cap) {
+                menuBlock.compact = true;
+            }
+            while (fixed + menuBlock.tokens() > cap && menuBlock.kept > 0) {
+                menuBlock.kept--;
+            }
+        }
+        StringBuilder text = new StringBuilder(systemPrompt);
+        menuBlock.renderTo(text);
+        return new StablePrefix(text.toString(), fixed + menuBlock.tokens(), menuBlock.kept);
+    }
+
+    /**
+     * Вариант для раскладки с неизменным префиксом: префикс провайдер берёт из KV-кэша, но он всё равно
+     * занимает контекст, поэтому считается в бюджете, а остальное ужимается в оставшееся место.
+     * Сам префикс здесь не трогаем — иначе он перестанет совпадать между запросами.
+     */
+    public BudgetedPrompt assembleAfterCachedPrefix(UserRequestType type,
+                                                    StablePrefix prefix,
+                                                    String userMessage,
+                                                    String headerBlock,
+                                                    List<PromptEntry> wines) {
+        return assemble(type, prefix.tokens(), 0, userMessage, headerBlock, List.of(), wines);
+    }
+
+    /**
+     * @param systemPrompt постоянная инструкция сомелье (отдельное системное сообщение)
+     * @param headerBlock  раздел меню и профиль блюда; может быть пустым
+     */
+    public BudgetedPrompt assemble(UserRequestType type,
+                                   String systemPrompt,
+                                   String userMessage,
+                                   String headerBlock,
+                                   List<PromptEntry> menu,
+                                   List<PromptEntry> wines) {
+        return assemble(type, 0, estimateTokens(systemPrompt), userMessage, headerBlock, menu, wines);
+    }
+
+    private BudgetedPrompt assemble(UserRequestType type,
+                                    int cachedPrefixTokens,
+                                    int systemPromptTokens,
+                                    String userMessage,
+                                    String headerBlock,
+                                    List<PromptEntry> menu,
+                                    List<PromptEntry> wines) {
+        int budget = props.budgetFor(type);
+        int remaining = budget - cachedPrefixTokens;
+        int fixed = systemPromptTokens + estimateTokens(userMessage) + estimateTokens(headerBlock)
+                    + 3 * MESSAGE_OVERHEAD_TOKENS;
+
+        Block menuBlock = new Block(MENU_HEADER, menu);
+        Block wineBlock = new Block(WINES_HEADER, wines);
+
+        if (props.enabled()) {
+            if (fixed + menuBlock.tokens() + wineBlock.tokens() > remaining) {
+                menuBlock.compact = true;
+            }
+            while (fixed + menuBlock.tokens() + wineBlock.tokens() > remaining && menuBlock.kept > 0) {
+                menuBlock.kept--;
+            }
+            if (fixed + menuBlock.tokens() + wineBlock.tokens() > remaining) {
+                wineBlock.compact = true;
+            }
+            int minWines = Math.min(props.minWines(), wines.size());
+            while (fixed + menuBlock.tokens() + wineBlock.tokens() > remaining && wineBlock.kept > minWines) {
+                wineBlock.kept--;
+            }
+        }
+
+        int estimated = fixed + menuBlock.tokens() + wineBlock.tokens();
+        int total = cachedPrefixTokens + estimated;
+        boolean trimmed = menuBlock.compact || wineBlock.compact;
+
+        StringBuilder systemBlock = new StringBuilder();
+        if (headerBlock != null && !headerBlock.isBlank()) {
+            systemBlock.append(headerBlock);
+            if (!headerBlock.endsWith("\n")) systemBlock.append('\n');
+        }
+        menuBlock.renderTo(systemBlock);
+        wineBlock.renderTo(systemBlock);
+
+        record(type, total, trimmed);
+        log.info("Промпт собран: тип={}, оценка токенов={} (префикс из кэша {}), бюджет={}, вин={}/{}{}, блюд={}/{}{}",
+                type, total, cachedPrefixTokens, budget,
+                wineBlock.kept, wines.size(), wineBlock.compact ? " (сжато)" : "",
+                menuBlock.kept, menu.size(), menuBlock.compact ? " (сжато)" : "");
+        if (total > budget) {
+            log.warn("Промпт превышает бюджет даже после сокращения: тип={}, оценка={}, бюджет={}", type, total, budget);
+        }
+
+        return new BudgetedPrompt(systemBlock.toString(), total, budget, wineBlock.kept, menuBlock.kept);
+    }
+
+    /**
+     * Грубая оценка числа токенов без токенизатора модели: кириллица в BPE-словарях дробится сильнее латиницы,
+     * поэтому считаем примерно 2.5 символа на токен для кириллицы и 4 — для остального.
+     * Для бюджета важна не точность, а монотонность и стабильность оценки.
+     */
+    public static int estimateTokens(CharSequence text) {
+        if (text == null || text.isEmpty()) return 0;
+        int cyrillic = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.UnicodeBlock.of(c) == Character.UnicodeBlock.CYRILLIC) {
+                cyrillic++;
+            } else {
+                other++;
+            }
+        }
+        return (int) Math.ceil(cyrillic / 2.5 + other / 4.0);
+    }
+
+    private void record(UserRequestType type, int estimated, boolean trimmed) {
+        String typeTag = type == null ? "UNKNOWN" : type.name();
+        DistributionSummary.builder("llm.prompt.tokens.estimated")
+                .description("Оценка входных токенов промпта")
+                .baseUnit("tokens")
+                .tag("type", typeTag)
+                .register(meterRegistry)
+                .record(estimated);
+        if (trimmed) {
+            Counter.builder("llm.prompt.trimmed")
+                    .description("Промпты, ужатые под бюджет токенов")
+                    .tag("type", typeTag)
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+
+    private static final class Block {
+        private final String header;
+        private final List<PromptEntry> entries;
+        private final int[] fullTokens;
+        private final int[] compactTokens;
+        private final int headerTokens;
+        private boolean compact;
+        private int kept;
+
+        private Block(String header, List<PromptEntry> entries) {
+            this.header = header;
+            this.entries = entries == null ? List.of() : entries;
+            this.headerTokens = estimateTokens(header);
+            this.fullTokens = new int[this.entries.size()];
+            this.compactTokens = new int[this.entries.size()];
+            for (int i = 0; i < this.entries.size(); i++) {
+                PromptEntry entry = this.entries.get(i);
+                fullTokens[i] = estimateTokens(entry.full()) + 1;
+                compactTokens[i] = estimateTokens(entry.compact()) + 1;
+            }
+            this.kept = this.entries.size();
+        }
+
+        private int tokens() {
+            if (kept == 0) return 0;
+            int[] source = compact ? compactTokens : fullTokens;
+            int sum = headerTokens;
+            for (int i = 0; i < kept; i++) sum += source[i];
+            return sum;
+        }
+
+        private void renderTo(StringBuilder out) {
+            if (kept == 0) return;
+            out.append(header);
+            for (int i = 0; i < kept; i++) {
+                PromptEntry entry = entries.get(i);
+                out.append(compact ? entry.compact() : entry.full()).append('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package ru.topwine.assistant.service.recognition;
+
+import ru.topwine.assistant.model.enums.UserRequestType;
+import ru.topwine.assistant.model.menu.MenuDish;
+import ru.topwine.assistant.model.menu.MenuSection;
+import ru.topwine.assistant.model.util.UserRequest;
+import ru.topwine.assistant.service.text.AhoCorasickMatcher;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Скомпилированный распознаватель запроса гостя: один автомат над словарями цены, разделов меню,
+ * названий блюд, сортов и цветов вина. Классификация и поиск сущностей — один проход по тексту без обращений к БД.
+ * <p>
+ * Приоритет типов прежний: цена, раздел, блюдо, вино, общий вопрос. Из пересекающихся совпадений остаётся
+ * самое длинное, поэтому «Суп том ям» из меню — это блюдо, а не раздел «Супы». Основы словарей совпадают
+ * с началом слова («красн» → «красное»), названия блюд и разделов — только целыми словами.
+ */
+public final class RecognizerModel {
+
+    private static final Locale RU = Locale.forLanguageTag("ru-RU");
+    private static final Pattern GRAPE_SEPARATORS = Pattern.compile("[,;/]");
+
+    private static final List<String> PRICE_WORDS = List.of(
+            "цена", "цены", "цену", "ценой", "стоит", "стоят", "стоится", "стоимость", "почем", "почём"
+    );
+
+    private static final List<String> WINE_STEMS = List.of(
+            "каберне", "мерло", "пино", "рислинг", "шардоне", "красн", "бел", "розе", "игрист"
+    );
+
+    /**
+     * Основы, по которым узнаём раздел, и название раздела на случай, если в меню такого не нашлось.
+     */
+    private static final List<SectionStem> SECTION_STEMS = List.of(
+            new SectionStem(List.of("закуск", "стартер"), List.of("закуск"), "Закуски"),
+            new SectionStem(List.of("суп"), List.of("суп"), "Супы"),
+            new SectionStem(List.of("горяч", "основ", "мэйн"), List.of("горяч", "основ"), "Горячее"),
+            new SectionStem(List.of("десерт"), List.of("десерт"), "Десерты")
+    );
+
+    private record SectionStem(List<String> triggers, List<String> sectionNameStems, String fallbackName) {
+    }
+
+    private enum Kind {
+        PRICE,
+        SECTION,
+        DISH,
+        WINE
+    }
+
+    private record Token(Kind kind, boolean wholeWord, String sectionName, MenuDish dish) {
+    }
+
+    private static final RecognizerModel LEXICON_ONLY = compile(List.of(), List.of(), List.of());
+
+    private final AhoCorasickMatcher<Token> matcher;
+
+    private RecognizerModel(AhoCorasickMatcher<Token> matcher) {
+        this.matcher = matcher;
+    }
+
+    /**
+     * @param grapeVarieties значения grape_varieties из каталога, в том числе «Санджовезе, Мерло»
+     */
+    public static RecognizerModel compile(Collection<MenuSection> sections,
+                                          Collection<MenuDish> dishes,
+                                          Collection<String> grapeVarieties) {
+        AhoCorasickMatcher.Builder<Token> builder = AhoCorasickMatcher.builder();
+
+        Token price = new Token(Kind.PRICE, false, null, null);
+        PRICE_WORDS.forEach(word -> builder.add(word, price));
+
+        List<String> sectionNames = sections.stream().map(MenuSection::name).filter(Objects::nonNull).toList();
+        for (String name : sectionNames) {
+            builder.add(name, new Token(Kind.SECTION, true, name, null));
+        }
+        for (SectionStem stem : SECTION_STEMS) {
+            Token token = new Token(Kind.SECTION, false, resolveSection(stem, sectionNames), null);
+            stem.triggers().forEach(trigger -> builder.add(trigger, token));
+        }
+
+        for (MenuDish dish : dishes) {
+            builder.add(dish.name(), new Token(Kind.DISH, true, null, dish));
+        }
+
+        Token wine = new Token(Kind.WINE, false, null, null);
+        WINE_STEMS.forEach(stem -> builder.add(stem, wine));
+        for (String varieties : grapeVarieties) {
+            if (varieties == null) continue;
+            for (String grape : GRAPE_SEPARATORS.split(varieties)) {
+                builder.add(grape, new Token(Kind.WINE, true, null, null));
+            }
+        }
+
+        return new RecognizerModel(builder.build());
+    }
+
+    /**
+     * Только встроенные словари — на случай, если меню и каталог прочитать не удалось.
+     */
+    public static RecognizerModel lexiconOnly() {
+        return LEXICON_ONLY;
+    }
+
+    public UserRequest recognize(String userMessage) {
+        if (userMessage == null || userMessage.isBlank()) {
+            return new UserRequest(UserRequestType.GENERAL, null);
+        }
+        String text = userMessage.trim();
+
+        List<AhoCorasickMatcher.Match<Token>> matches = matcher.findLongestNonOverlapping(text, m -> m.payload().wholeWord()
+                ? AhoCorasickMatcher.isWholeWord(text, m)
+                : AhoCorasickMatcher.startsWord(text, m));
+
+        Token section = null;
+        Token dish = null;
+        boolean wine = false;
+        for (AhoCorasickMatcher.Match<Token> match : matches) {
+            Token token = match.payload();
+            switch (token.kind()) {
+                case PRICE -> {
+                    return new UserRequest(UserRequestType.PRICE, text);
+                }
+                case SECTION -> section = section == null ? token : section;
+                case DISH -> dish = dish == null ? token : dish;
+                case WINE -> wine = true;
+            }
+        }
+
+        if (section != null) return new UserRequest(UserRequestType.SECTION, text, null, section.sectionName());
+        if (dish != null) return new UserRequest(UserRequestType.DISH, text, dish.dish());
+        if (wine) return new UserRequest(UserRequestType.WINE_NAME, text);
+        return new UserRequest(UserRequestType.GENERAL, text);
+    }
+
+    private static String resolveSection(SectionStem stem, List<String> sectionNames) {
+        for (String name : sectionNames) {
+            String lower = name.toLowerCase(RU);
+            for (String nameStem : stem.sectionNameStems()) {
+                if (lower.contains(nameStem)) return name;
+            }
+        }
+        return stem.fallbackName();
+    }
+}
@@ -0,0 +1,73 @@
+package ru.topwine.assistant.service.recognition;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.topwine.assistant.model.change.DataChangeEvent;
+import ru.topwine.assistant.model.enums.ChangedTable;
+import ru.topwine.assistant.model.wine.AvailableWineFilter;
+import ru.topwine.assistant.repository.AvailableWinesRepository;
+import ru.topwine.assistant.service.change.DataChangeListener;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Держит {@link WineFilterModel} со справочником стран, регионов и сортов каталога
+ * и пересобирает его по уведомлениям об изменении карточек вин.
+ * Если каталог прочитать не удалось, разбираем только цвет, цену и год и пробуем снова не чаще раза в 30 секунд.
+ */
+@Slf4j
+@Component
+public class UserFilterParser implements DataChangeListener {
+
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(30);
+
+    private final AvailableWinesRepository availableWinesRepository;
+    private final AtomicReference<WineFilterModel> current = new AtomicReference<>();
+    private volatile long nextAttemptNanos = Long.MIN_VALUE;
+
+    public UserFilterParser(AvailableWinesRepository availableWinesRepository) {
+        this.availableWinesRepository = availableWinesRepository;
+    }
+
+    public AvailableWineFilter parse(String userText) {
+        return model().parse(userText);
+    }
+
+    @Override
+    public void onDataChange(DataChangeEvent event) {
+        if (event.affects(ChangedTable.WINE_ITEM)) {
+            current.set(null);
+            nextAttemptNanos = Long.MIN_VALUE;
+        }
+    }
+
+    private WineFilterModel model() {
+        WineFilterModel model = current.get();
+        if (model != null) return model;
+        synchronized (this) {
+            model = current.get();
+            if (model != null) return model;
+            // MIN_VALUE — ещё не пробовали; без этой проверки разность переполняется и сборки не будет никогда
+            if (nextAttemptNanos != Long.MIN_VALUE && System.nanoTime() - nextAttemptNanos < 0) {
+                return WineFilterModel.lexiconOnly();
+            }
+            try {
+                long startNanos = System.nanoTime();
+                model = WineFilterModel.compile(
+                        availableWinesRepository.findDistinctCountries(),
+                        availableWinesRepository.findDistinctRegions(),
+                        availableWinesRepository.findDistinctGrapeVarieties()
+                );
+                current.set(model);
+                log.info("Справочник фильтров собран за {} мс", (System.nanoTime() - startNanos) / 1_000_000);
+                return model;
+            } catch (Exception ex) {
+                nextAttemptNanos = System.nanoTime() + RETRY_DELAY.toNanos();
+                log.warn("Не удалось собрать справочник фильтров из каталога, разбираем только цвет, цену и год: {}",
+                        ex.toString());
+                return WineFilterModel.lexiconOnly();
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ru.topwine.assistant.service.recognition;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.topwine.assistant.model.change.DataChangeEvent;
+import ru.topwine.assistant.model.enums.ChangedTable;
+import ru.topwine.assistant.model.util.UserRequest;
+import ru.topwine.assistant.repository.AvailableWinesRepository;
+import ru.topwine.assistant.service.MenuDishService;
+import ru.topwine.assistant.service.MenuSectionService;
+import ru.topwine.assistant.service.change.DataChangeListener;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Держит скомпилированную {@link RecognizerModel} и пересобирает её по уведомлениям об изменении меню и вин.
+ * Распознавание само в БД не ходит: модель собирается при первом запросе и после изменений.
+ * Если меню прочитать не удалось, работаем на встроенных словарях и пробуем снова не чаще раза в 30 секунд.
+ */
+@Slf4j
+@Component
+public class UserRequestRecognizer implements DataChangeListener {
+
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(30);
+
+    private final MenuSectionService menuSectionService;
+    private final MenuDishService menuDishService;
+    private final AvailableWinesRepository availableWinesRepository;
+    private final AtomicReference<RecognizerModel> current = new AtomicReference<>();
+    private volatile long nextAttemptNanos = Long.MIN_VALUE;
+
+    public UserRequestRecognizer(MenuSectionService menuSectionService,
+                                 MenuDishService menuDishService,
+                                 AvailableWinesRepository availableWinesRepository) {
+        this.menuSectionService = menuSectionService;
+        this.menuDishService = menuDishService;
+        this.availableWinesRepository = availableWinesRepository;
+    }
+
+    public UserRequest recognize(String userMessage) {
+        return model().recognize(userMessage);
+    }
+
+    @Override
+    public void onDataChange(DataChangeEvent event) {
+        if (event.affects(ChangedTable.MENU_DISH, ChangedTable.MENU_SECTION, ChangedTable.WINE_ITEM)) {
+            current.set(null);
+            nextAttemptNanos = Long.MIN_VALUE;
+        }
+    }
+
+    private RecognizerModel model() {
+        RecognizerModel model = current.get();
+        if (model != null) return model;
+        synchronized (this) {
+            model = current.get();
+            if (model != null) return model;
+            // MIN_VALUE — ещё не пробовали; без этой проверки разность переполняется и сборки не будет никогда
+            if (nextAttemptNanos != Long.MIN_VALUE && System.nanoTime() - nextAttemptNanos < 0) {
+                return RecognizerModel.lexiconOnly();
+            }
+            try {
+                long startNanos = System.nanoTime();
+                model = RecognizerModel.compile(
+                        menuSectionService.activeSections(),
+                        menuDishService.findAllActive(),
+                        availableWinesRepository.findDistinctGrapeVarieties()
+                );
+                current.set(model);
+                log.info("Распознаватель запросов собран за {} мс", (System.nanoTime() - startNanos) / 1_000_000);
+                return model;
+            } catch (Exception ex) {
+                nextAttemptNanos = System.nanoTime() + RETRY_DELAY.toNanos();
+                log.warn("Не удалось собрать распознаватель из меню и каталога, работаем на встроенных словарях: {}",
+                        ex.toString());
+                return RecognizerModel.lexiconOnly();
+            }
+        }
+    }
+}
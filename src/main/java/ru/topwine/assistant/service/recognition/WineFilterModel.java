@@ -0,0 +1,472 @@
+package ru.topwine.assistant.service.recognition;
+
+import ru.topwine.assistant.model.wine.AvailableWineFilter;
+import ru.topwine.assistant.service.text.AhoCorasickMatcher;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Скомпилированный разбор пожеланий гостя в {@link AvailableWineFilter}.
+ * <p>
+ * Справочник (газеттир) — страны, регионы и сорта из каталога плюс встроенные основы цветов и прилагательных
+ * («немецкое» → Германия) — собран в один автомат. Названия из каталога хранятся основами без окончания
+ * («Италия» → «итал»), поэтому «итальянское», «из Италии» и «италию» находят одну и ту же страну.
+ * Числа разбирает однопроходный токенизатор: диапазоны «от 2000 до 4000», «2–4 тыс.», границы «до», «не дороже»,
+ * «после 2015», годы урожая с «год»/«урожай» рядом. Четырёхзначное число без такого признака считается ценой.
+ * <p>
+ * Если в тексте названо несколько разных значений одного поля («Италия или Франция»), поле остаётся пустым:
+ * фильтр по одному из них отрезал бы второе.
+ */
+public final class WineFilterModel {
+
+    private static final Locale RU = Locale.forLanguageTag("ru-RU");
+    private static final Pattern GRAPE_SEPARATORS = Pattern.compile("[,;/]");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    /**
+     * Окончания, которые срезаются с последнего слова названия; длинные проверяются раньше коротких.
+     */
+    private static final List<String> ENDINGS = List.of(
+            "ия", "ие", "ья", "ье", "ая", "ое", "ой", "ий", "ый",
+            "а", "я", "о", "е", "и", "ы", "у", "ю", "ь"
+    );
+    private static final int MIN_STEM_LENGTH = 4;
+
+    private static final int MIN_PRICE_RUB = 100;
+    private static final int MAX_PRICE_RUB = 1_000_000;
+    private static final int MIN_YEAR = 1900;
+    private static final int MAX_YEAR = 2100;
+
+    private static final Map<String, String> COLOR_STEMS = Map.of(
+            "красн", "red",
+            "бел", "white",
+            "розов", "rose",
+            "розе", "rose",
+            "оранж", "orange",
+            "игрист", "sparkling",
+            "шампан", "sparkling",
+            "просекко", "sparkling"
+    );
+
+    /**
+     * Прилагательные, основа которых не совпадает с основой названия страны.
+     * Попадают в справочник, только если такая страна есть в каталоге.
+     */
+    private static final Map<String, String> COUNTRY_ADJECTIVES = Map.of(
+            "немецк", "Германия",
+            "американск", "США",
+            "новозеландск", "Новая Зеландия",
+            "южноафриканск", "ЮАР",
+            "русск", "Россия",
+            "армянск", "Армения",
+            "венгерск", "Венгрия",
+            "греческ", "Греция",
+            "молдавск", "Молдова"
+    );
+
+    /**
+     * Слова перед числом, задающие границу: true — нижняя, false — верхняя. «не» перед словом меняет границу.
+     */
+    private static final Map<String, Boolean> BOUND_WORDS = Map.ofEntries(
+            Map.entry("от", true),
+            Map.entry("с", true),
+            Map.entry("после", true),
+            Map.entry("дороже", true),
+            Map.entry("больше", true),
+            Map.entry("более", true),
+            Map.entry("выше", true),
+            Map.entry("свыше", true),
+            Map.entry("моложе", true),
+            Map.entry("позже", true),
+            Map.entry("до", false),
+            Map.entry("по", false),
+            Map.entry("дешевле", false),
+            Map.entry("меньше", false),
+            Map.entry("менее", false),
+            Map.entry("ниже", false),
+            Map.entry("максимум", false),
+            Map.entry("старше", false),
+            Map.entry("раньше", false)
+    );
+
+    private static final Set<String> RANGE_WORDS = Set.of("до", "по");
+
+    private enum Field {
+        COLOR,
+        COUNTRY,
+        REGION,
+        GRAPE
+    }
+
+    private record Hit(Field field, String value) {
+    }
+
+    private record Entry(boolean wholeWord, List<Hit> hits) {
+    }
+
+    private static final WineFilterModel LEXICON_ONLY = compile(List.of(), List.of(), List.of());
+
+    private final AhoCorasickMatcher<Entry> gazetteer;
+
+    private WineFilterModel(AhoCorasickMatcher<Entry> gazetteer) {
+        this.gazetteer = gazetteer;
+    }
+
+    /**
+     * @param grapeVarieties значения grape_varieties из каталога, в том числе «Санджовезе, Мерло»
+     */
+    public static WineFilterModel compile(Collection<String> countries,
+                                          Collection<String> regions,
+                                          Collection<String> grapeVarieties) {
+        Map<String, Entry> byPattern = new LinkedHashMap<>();
+        COLOR_STEMS.forEach((stem, color) -> put(byPattern, stem, false, new Hit(Field.COLOR, color)));
+        put(byPattern, "кава", true, new Hit(Field.COLOR, "sparkling"));
+
+        Map<String, String> countryByLower = new LinkedHashMap<>();
+        for (String country : countries) {
+            if (country == null || country.isBlank()) continue;
+            countryByLower.putIfAbsent(normalize(country), country.strip());
+            putName(byPattern, country, Field.COUNTRY);
+        }
+        COUNTRY_ADJECTIVES.forEach((stem, country) -> {
+            String catalogName = countryByLower.get(normalize(country));
+            if (catalogName != null) put(byPattern, stem, false, new Hit(Field.COUNTRY, catalogName));
+        });
+
+        for (String region : regions) {
+            if (region != null && !region.isBlank()) putName(byPattern, region, Field.REGION);
+        }
+        for (String varieties : grapeVarieties) {
+            if (varieties == null) continue;
+            for (String grape : GRAPE_SEPARATORS.split(varieties)) {
+                if (!grape.isBlank()) putName(byPattern, grape, Field.GRAPE);
+            }
+        }
+
+        AhoCorasickMatcher.Builder<Entry> builder = AhoCorasickMatcher.builder();
+        byPattern.forEach(builder::add);
+        return new WineFilterModel(builder.build());
+    }
+
+    /**
+     * Только цвета и числа — на случай, если каталог прочитать не удалось.
+     */
+    public static WineFilterModel lexiconOnly() {
+        return LEXICON_ONLY;
+    }
+
+    public AvailableWineFilter parse(String userText) {
+        if (userText == null || userText.isBlank()) {
+            return AvailableWineFilter.empty();
+        }
+
+        Map<Field, Set<String>> found = new EnumMap<>(Field.class);
+        List<AhoCorasickMatcher.Match<Entry>> matches = gazetteer.findLongestNonOverlapping(userText, m -> m.payload().wholeWord()
+                ? AhoCorasickMatcher.isWholeWord(userText, m)
+                : AhoCorasickMatcher.startsWord(userText, m));
+        for (AhoCorasickMatcher.Match<Entry> match : matches) {
+            for (Hit hit : match.payload().hits()) {
+                found.computeIfAbsent(hit.field(), f -> new LinkedHashSet<>()).add(hit.value());
+            }
+        }
+
+        Bounds bounds = new Bounds();
+        bounds.read(tokenize(userText));
+
+        return new AvailableWineFilter(
+                null,
+                single(found, Field.COLOR),
+                single(found, Field.COUNTRY),
+                single(found, Field.REGION),
+                single(found, Field.GRAPE),
+                bounds.minPrice,
+                bounds.maxPrice,
+                bounds.minYear,
+                bounds.maxYear
+        );
+    }
+
+    private static String single(Map<Field, Set<String>> found, Field field) {
+        Set<String> values = found.get(field);
+        return values != null && values.size() == 1 ? values.iterator().next() : null;
+    }
+
+    private static void putName(Map<String, Entry> byPattern, String name, Field field) {
+        String stem = stem(name);
+        if (stem.length() < 3) return;
+        // короткие названия вроде «США» ищем только целым словом
+        put(byPattern, stem, stem.length() < MIN_STEM_LENGTH, new Hit(field, name.strip()));
+    }
+
+    /**
+     * Один образец на основу: «Шампань» (регион) и «шампан» (игристое) дают оба попадания.
+     */
+    private static void put(Map<String, Entry> byPattern, String pattern, boolean wholeWord, Hit hit) {
+        byPattern.merge(pattern, new Entry(wholeWord, List.of(hit)), (left, right) -> {
+            List<Hit> hits = new ArrayList<>(left.hits());
+            if (!hits.contains(hit)) hits.add(hit);
+            return new Entry(left.wholeWord() && right.wholeWord(), hits);
+        });
+    }
+
+    /**
+     * Срезает окончание последнего слова, если остаётся хотя бы {@value #MIN_STEM_LENGTH} буквы.
+     */
+    private static String stem(String name) {
+        String normalized = normalize(name);
+        int lastWord = normalized.lastIndexOf(' ') + 1;
+        String word = normalized.substring(lastWord);
+        for (String ending : ENDINGS) {
+            if (word.endsWith(ending) && word.length() - ending.length() >= MIN_STEM_LENGTH) {
+                return normalized.substring(0, normalized.length() - ending.length());
+            }
+        }
+        return normalized;
+    }
+
+    private static String normalize(String value) {
+        return SPACES.matcher(value.strip().toLowerCase(RU).replace('ё', 'е')).replaceAll(" ");
+    }
+
+    private enum TokenKind {
+        WORD,
+        NUMBER,
+        DASH,
+        LESS,
+        GREATER
+    }
+
+    /**
+     * @param attached слово идёт сразу за цифрами, без пробела («5к»)
+     */
+    private record Token(TokenKind kind, String word, long number, boolean attached) {
+        boolean isWord(String value) {
+            return kind == TokenKind.WORD && word.equals(value);
+        }
+    }
+
+    /**
+     * Один проход по тексту: слова в нижнем регистре, числа (в том числе с разрядами через пробел — «3 000»),
+     * тире и знаки сравнения. Остальные символы пропускаются.
+     */
+    private static List<Token> tokenize(String text) {
+        List<Token> tokens = new ArrayList<>();
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (Character.isLetter(c)) {
+                int start = i;
+                while (i < length && Character.isLetter(text.charAt(i))) i++;
+                boolean attached = start > 0 && Character.isDigit(text.charAt(start - 1));
+                tokens.add(new Token(TokenKind.WORD, text.substring(start, i).toLowerCase(RU).replace('ё', 'е'), 0, attached));
+            } else if (Character.isDigit(c)) {
+                long value = 0;
+                int digits = 0;
+                while (i < length && Character.isDigit(text.charAt(i))) {
+                    value = value * 10 + Character.digit(text.charAt(i++), 10);
+                    digits++;
+                }
+                boolean grouped = digits <= 3;
+                while (grouped && digits <= 9 && isThousandsGroup(text, i)) {
+                    for (int k = 1; k <= 3; k++) value = value * 10 + Character.digit(text.charAt(i + k), 10);
+                    digits += 3;
+                    i += 4;
+                }
+                // десятичную часть («1500,50») отбрасываем
+                if (i + 1 < length && (text.charAt(i) == ',' || text.charAt(i) == '.') && Character.isDigit(text.charAt(i + 1))) {
+                    i++;
+                    while (i < length && Character.isDigit(text.charAt(i))) i++;
+                }
+                if (digits <= 9) tokens.add(new Token(TokenKind.NUMBER, null, value, false));
+            } else {
+                switch (c) {
+                    case '-', '–', '—' -> tokens.add(new Token(TokenKind.DASH, null, 0, false));
+                    case '<', '≤' -> tokens.add(new Token(TokenKind.LESS, null, 0, false));
+                    case '>', '≥' -> tokens.add(new Token(TokenKind.GREATER, null, 0, false));
+                    case '₽' -> tokens.add(new Token(TokenKind.WORD, "₽", 0, false));
+                    default -> {
+                    }
+                }
+                i++;
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isThousandsGroup(String text, int at) {
+        if (at + 3 >= text.length()) return false;
+        char separator = text.charAt(at);
+        if (separator != ' ' && separator != '\u00a0' && separator != '\u202f') return false;
+        for (int k = 1; k <= 3; k++) {
+            if (!Character.isDigit(text.charAt(at + k))) return false;
+        }
+        return at + 4 == text.length() || !Character.isDigit(text.charAt(at + 4));
+    }
+
+    /**
+     * Границы цены и года. Берётся первое упоминание каждой границы.
+     */
+    private static final class Bounds {
+        private Integer minPrice;
+        private Integer maxPrice;
+        private Integer minYear;
+        private Integer maxYear;
+
+        private record Amount(long value, boolean thousands, int next) {
+        }
+
+        private void read(List<Token> tokens) {
+            int i = 0;
+            while (i < tokens.size()) {
+                if (tokens.get(i).kind() != TokenKind.NUMBER) {
+                    i++;
+                    continue;
+                }
+                Amount from = amount(tokens, i);
+                int next = from.next();
+                Amount to = null;
+                if (next + 1 < tokens.size()
+                    && (tokens.get(next).kind() == TokenKind.DASH || isRangeWord(tokens.get(next)))
+                    && tokens.get(next + 1).kind() == TokenKind.NUMBER) {
+                    to = amount(tokens, next + 1);
+                    next = to.next();
+                }
+
+                if (to == null) {
+                    point(tokens, i, from, next);
+                } else {
+                    // «от 2 до 4 тысяч»: множитель второго числа относится и к первому
+                    long low = to.thousands() && !from.thousands() && from.value() < 1000 ? from.value() * 1000 : from.value();
+                    range(tokens, i, Math.min(low, to.value()), Math.max(low, to.value()), next);
+                }
+                i = next;
+            }
+        }
+
+        private void point(List<Token> tokens, int at, Amount amount, int next) {
+            Boolean lower = boundBefore(tokens, at);
+            if (isYear(amount.value()) && yearMarked(tokens, at, next)) {
+                int year = (int) amount.value();
+                if (lower == null) {
+                    minYear = firstNonNull(minYear, year);
+                    maxYear = firstNonNull(maxYear, year);
+                } else if (lower) {
+                    minYear = firstNonNull(minYear, year);
+                } else {
+                    maxYear = firstNonNull(maxYear, year);
+                }
+            } else if (isPrice(amount.value())) {
+                // число без «от»/«до» — это бюджет
+                if (Boolean.TRUE.equals(lower)) {
+                    minPrice = firstNonNull(minPrice, (int) amount.value());
+                } else {
+                    maxPrice = firstNonNull(maxPrice, (int) amount.value());
+                }
+            }
+        }
+
+        private void range(List<Token> tokens, int at, long low, long high, int next) {
+            if (isYear(low) && isYear(high) && yearMarked(tokens, at, next)) {
+                minYear = firstNonNull(minYear, (int) low);
+                maxYear = firstNonNull(maxYear, (int) high);
+            } else if (isPrice(low) && isPrice(high)) {
+                minPrice = firstNonNull(minPrice, (int) low);
+                maxPrice = firstNonNull(maxPrice, (int) high);
+            }
+        }
+
+        /**
+         * Число с необязательным множителем «тыс»/«к»; единица «руб»/«р»/«₽» пропускается.
+         */
+        private static Amount amount(List<Token> tokens, int at) {
+            long value = tokens.get(at).number();
+            int next = at + 1;
+            boolean thousands = false;
+            if (next < tokens.size() && isThousandsWord(tokens, next)) {
+                thousands = true;
+                if (value < 1000) value *= 1000;
+                next++;
+            }
+            if (next < tokens.size() && isCurrencyWord(tokens.get(next))) next++;
+            return new Amount(value, thousands, next);
+        }
+
+        /**
+         * Слово-граница перед числом (с учётом «не»); «от» пропускается, если за ним идёт диапазон.
+         *
+         * @return true — нижняя граница, false — верхняя, null — границы нет
+         */
+        private static Boolean boundBefore(List<Token> tokens, int at) {
+            if (at == 0) return null;
+            Token previous = tokens.get(at - 1);
+            if (previous.kind() == TokenKind.LESS) return false;
+            if (previous.kind() == TokenKind.GREATER) return true;
+            if (previous.kind() != TokenKind.WORD) return null;
+            Boolean lower = BOUND_WORDS.get(previous.word());
+            if (lower == null) return null;
+            boolean negated = at >= 2 && tokens.get(at - 2).isWord("не");
+            return negated != lower;
+        }
+
+        /**
+         * Год узнаём по соседним словам: «2015 года», «2015 г.», «урожая 2015», «урожая от 2015».
+         */
+        private static boolean yearMarked(List<Token> tokens, int at, int next) {
+            if (next < tokens.size() && tokens.get(next).kind() == TokenKind.WORD) {
+                String word = tokens.get(next).word();
+                if (word.startsWith("год") || word.equals("г") || word.equals("гг")) return true;
+            }
+            for (int k = Math.max(0, at - 2); k < at; k++) {
+                Token token = tokens.get(k);
+                if (token.kind() == TokenKind.WORD
+                    && (token.word().startsWith("урожа") || token.word().startsWith("винтаж") || token.word().startsWith("год"))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean isRangeWord(Token token) {
+            return token.kind() == TokenKind.WORD && RANGE_WORDS.contains(token.word());
+        }
+
+        /**
+         * «тыс» — всегда множитель. Одиночные «к» и «т» — только вплотную к числу («5к») или перед валютой
+         * («5 к руб»): отдельное «к» обычно предлог («до 900 к стейку»).
+         */
+        private static boolean isThousandsWord(List<Token> tokens, int at) {
+            Token token = tokens.get(at);
+            if (token.kind() != TokenKind.WORD) return false;
+            if (token.word().startsWith("тыс")) return true;
+            if (!token.word().equals("т") && !token.word().equals("к")) return false;
+            return token.attached() || (at + 1 < tokens.size() && isCurrencyWord(tokens.get(at + 1)));
+        }
+
+        private static boolean isCurrencyWord(Token token) {
+            return token.kind() == TokenKind.WORD
+                   && (token.word().startsWith("руб") || token.word().equals("р") || token.word().equals("₽"));
+        }
+
+        private static boolean isYear(long value) {
+            return value >= MIN_YEAR && value <= MAX_YEAR;
+        }
+
+        private static boolean isPrice(long value) {
+            return value >= MIN_PRICE_RUB && value <= MAX_PRICE_RUB;
+        }
+
+        private static Integer firstNonNull(Integer current, int candidate) {
+            return current != null ? current : candidate;
+        }
+    }
+}
@@ -1,13 +1,18 @@
 package ru.topwine.assistant.service.session;
 
 import ru.topwine.assistant.model.session.ConversationContext;
+import ru.topwine.assistant.model.session.ConversationTurn;
 
 import java.util.Optional;
 
 public interface ConversationStore {
     Optional<ConversationContext> get(String clientId);
 
-    void save(String clientId, ConversationContext context);
+    /**
+     * Атомарно дописывает реплики в историю (не больше последних 10 каждой стороны), заменяет показанное
+     * последним и продлевает срок жизни диалога.
+     */
+    void append(String clientId, ConversationTurn turn);
 
     void clear(String clientId);
-}
\ No newline at end of file
+}
@@ -2,30 +2,81 @@ package ru.topwine.assistant.service.session.impl;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 import ru.topwine.assistant.model.session.ConversationContext;
+import ru.topwine.assistant.model.session.ConversationTurn;
+import ru.topwine.assistant.model.wine.AvailableWineFilter;
 import ru.topwine.assistant.service.session.ConversationStore;
 
 import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
+/**
+ * Диалог лежит в трёх ключах: списки реплик гостя (:u) и ассистента (:a) и JSON с показанным последним (:s).
+ * Id клиента в фигурных скобках — все три ключа попадают в один слот кластера, и скрипт может их трогать вместе.
+ * Дописывание и чтение — по одному Lua-скрипту: один поход в Redis, и быстрые сообщения подряд
+ * не затирают реплики друг друга, как было при GET + SET целого JSON.
+ */
+@Slf4j
 @Component
 @RequiredArgsConstructor
 public class RedisConversationStore implements ConversationStore {
 
-    private static final String KEY_PREFIX = "conv:";
+    private static final String KEY_PREFIX = "conv:v2:";
     private static final Duration TTL = Duration.ofMinutes(40);
+    private static final int HISTORY_CAP = 10;
+
+    /**
+     * KEYS: реплики гостя, реплики ассистента, показанное. ARGV: реплика гостя, реплика ассистента
+     * (пустая строка — не дописывать), JSON показанного, размер истории, TTL в мс.
+     */
+    private static final RedisScript<Long> APPEND = RedisScript.of("""
+            local cap = tonumber(ARGV[4])
+            local ttl = tonumber(ARGV[5])
+            if ARGV[1] ~= '' then redis.call('RPUSH', KEYS[1], ARGV[1]) end
+            if ARGV[2] ~= '' then redis.call('RPUSH', KEYS[2], ARGV[2]) end
+            redis.call('LTRIM', KEYS[1], -cap, -1)
+            redis.call('LTRIM', KEYS[2], -cap, -1)
+            redis.call('PEXPIRE', KEYS[1], ttl)
+            redis.call('PEXPIRE', KEYS[2], ttl)
+            redis.call('SET', KEYS[3], ARGV[3], 'PX', ttl)
+            return 1
+            """, Long.class);
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> READ = RedisScript.of("""
+            return {
+              redis.call('LRANGE', KEYS[1], 0, -1),
+              redis.call('LRANGE', KEYS[2], 0, -1),
+              redis.call('GET', KEYS[3])
+            }
+            """, List.class);
 
     private final StringRedisTemplate redis;
     private final ObjectMapper objectMapper;
 
     @Override
+    @SuppressWarnings("unchecked")
     public Optional<ConversationContext> get(String clientId) {
-        String json = redis.opsForValue().get(key(clientId));
-        if (json == null || json.isBlank()) return Optional.empty();
+        List<Object> parts = redis.execute(READ, keys(clientId));
+        if (parts == null || parts.size() < 3 || !(parts.get(2) instanceof String json) || json.isBlank()) {
+            return Optional.empty();
+        }
         try {
-            return Optional.of(objectMapper.readValue(json, ConversationContext.class));
+            LastShown shown = objectMapper.readValue(json, LastShown.class);
+            return Optional.of(new ConversationContext(
+                    (List<String>) parts.get(0),
+                    (List<String>) parts.get(1),
+                    shown.wineStockIds() == null ? List.of() : shown.wineStockIds(),
+                    shown.dishIds() == null ? List.of() : shown.dishIds(),
+                    shown.filter(),
+                    shown.updatedAt()
+            ));
         } catch (Exception e) {
             clear(clientId);
             return Optional.empty();
@@ -33,21 +84,45 @@ public class RedisConversationStore implements ConversationStore {
     }
 
     @Override
-    public void save(String clientId, ConversationContext context) {
+    public void append(String clientId, ConversationTurn turn) {
         try {
-            String json = objectMapper.writeValueAsString(context);
-            redis.opsForValue().set(key(clientId), json, TTL);
+            String shown = objectMapper.writeValueAsString(new LastShown(
+                    turn.shownWineStockIds() == null ? List.of() : turn.shownWineStockIds(),
+                    turn.shownDishIds() == null ? List.of() : turn.shownDishIds(),
+                    turn.usedFilter(),
+                    Instant.now()
+            ));
+            redis.execute(APPEND, keys(clientId),
+                    blankToEmpty(turn.userMessage()),
+                    blankToEmpty(turn.assistantReply()),
+                    shown,
+                    String.valueOf(HISTORY_CAP),
+                    String.valueOf(TTL.toMillis()));
         } catch (Exception e) {
-            // swallow: caching must not break UX
+            // история диалога — удобство, из-за неё ответ гостю ломаться не должен
+            log.warn("Не удалось сохранить реплики диалога {}: {}", clientId, e.toString());
         }
     }
 
     @Override
     public void clear(String clientId) {
-        redis.delete(key(clientId));
+        redis.delete(keys(clientId));
+    }
+
+    private List<String> keys(String clientId) {
+        String base = KEY_PREFIX + "{" + clientId + "}:";
+        return List.of(base + "u", base + "a", base + "s");
+    }
+
+    private static String blankToEmpty(String s) {
+        return s == null || s.isBlank() ? "" : s;
     }
 
-    private String key(String clientId) {
-        return KEY_PREFIX + clientId;
+    private record LastShown(
+            List<Long> wineStockIds,
+            List<Long> dishIds,
+            AvailableWineFilter filter,
+            Instant updatedAt
+    ) {
     }
 }
@@ -0,0 +1,199 @@
+package ru.topwine.assistant.service.text;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Поиск множества образцов за один проход по тексту (автомат Ахо — Корасик).
+ * <p>
+ * Строится один раз и дальше только читается, поэтому безопасен для общего использования из разных потоков.
+ * Образцы и текст сравниваются без учёта регистра, «ё» приравнивается к «е»; нормализация посимвольная,
+ * так что позиции совпадений указывают прямо в исходный текст.
+ *
+ * @param <T> что привязано к образцу (например, позиция каталога)
+ */
+public final class AhoCorasickMatcher<T> {
+
+    /**
+     * Совпадение образца в тексте: {@code text.substring(start, end)}.
+     */
+    public record Match<T>(int start, int end, T payload) {
+        public int length() {
+            return end - start;
+        }
+    }
+
+    private static final int ROOT = 0;
+    private static final int[] NO_OUTPUTS = new int[0];
+
+    private final List<Map<Character, Integer>> transitions;
+    private final int[] fail;
+    private final int[] dictionaryLink;
+    private final int[][] outputs;
+    private final int[] patternLength;
+    private final List<T> payloads;
+
+    private AhoCorasickMatcher(Builder<T> builder) {
+        this.transitions = builder.transitions;
+        this.payloads = List.copyOf(builder.payloads);
+        this.patternLength = builder.patternLength.stream().mapToInt(Integer::intValue).toArray();
+        int size = transitions.size();
+        this.outputs = new int[size][];
+        for (int node = 0; node < size; node++) {
+            List<Integer> own = builder.outputs.get(node);
+            outputs[node] = own == null ? NO_OUTPUTS : own.stream().mapToInt(Integer::intValue).toArray();
+        }
+        this.fail = new int[size];
+        this.dictionaryLink = new int[size];
+        Arrays.fill(dictionaryLink, -1);
+        linkFailures();
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    public int patternCount() {
+        return payloads.size();
+    }
+
+    /**
+     * Все вхождения всех образцов, в том числе перекрывающиеся, в порядке окончания в тексте.
+     */
+    public List<Match<T>> findAll(CharSequence text) {
+        if (text == null || text.isEmpty() || payloads.isEmpty()) return List.of();
+        List<Match<T>> matches = new ArrayList<>();
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            char c = normalize(text.charAt(i));
+            while (state != ROOT && !transitions.get(state).containsKey(c)) {
+                state = fail[state];
+            }
+            state = transitions.get(state).getOrDefault(c, ROOT);
+
+            for (int node = state; node != -1; node = dictionaryLink[node]) {
+                for (int pattern : outputs[node]) {
+                    int end = i + 1;
+                    matches.add(new Match<>(end - patternLength[pattern], end, payloads.get(pattern)));
+                }
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Непересекающиеся совпадения: жадно от длинных к коротким (при равной длине — левее), каждое
+     * должно пройти {@code accept} (например, проверку границ слова). Результат — в порядке появления в тексте.
+     */
+    public List<Match<T>> findLongestNonOverlapping(CharSequence text, Predicate<Match<T>> accept) {
+        List<Match<T>> all = findAll(text);
+        if (all.isEmpty()) return all;
+        all.sort(Comparator.<Match<T>>comparingInt(Match::length).reversed().thenComparingInt(Match::start));
+
+        boolean[] taken = new boolean[text.length()];
+        List<Match<T>> accepted = new ArrayList<>();
+        for (Match<T> match : all) {
+            if (!accept.test(match)) continue;
+            boolean free = true;
+            for (int i = match.start(); i < match.end() && free; i++) {
+                free = !taken[i];
+            }
+            if (!free) continue;
+            Arrays.fill(taken, match.start(), match.end(), true);
+            accepted.add(match);
+        }
+        accepted.sort(Comparator.comparingInt(Match::start));
+        return accepted;
+    }
+
+    /**
+     * Совпадение начинается с начала слова.
+     */
+    public static boolean startsWord(CharSequence text, Match<?> match) {
+        return match.start() == 0 || !Character.isLetterOrDigit(text.charAt(match.start() - 1));
+    }
+
+    /**
+     * Совпадение — целые слова: не начинается и не заканчивается посреди слова.
+     */
+    public static boolean isWholeWord(CharSequence text, Match<?> match) {
+        return startsWord(text, match)
+               && (match.end() == text.length() || !Character.isLetterOrDigit(text.charAt(match.end())));
+    }
+
+    static char normalize(char c) {
+        char lower = Character.toLowerCase(c);
+        return lower == 'ё' ? 'е' : lower;
+    }
+
+    /**
+     * Ссылки неудачи строятся обходом в ширину; ссылка на словарь ведёт к ближайшему суффиксу-образцу,
+     * чтобы при поиске не проходить по всей цепочке неудач.
+     */
+    private void linkFailures() {
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : transitions.get(ROOT).values()) {
+            fail[child] = ROOT;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            dictionaryLink[node] = outputs[fail[node]].length > 0 ? fail[node] : dictionaryLink[fail[node]];
+            for (Map.Entry<Character, Integer> edge : transitions.get(node).entrySet()) {
+                char c = edge.getKey();
+                int child = edge.getValue();
+                int candidate = fail[node];
+                while (candidate != ROOT && !transitions.get(candidate).containsKey(c)) {
+                    candidate = fail[candidate];
+                }
+                Integer target = transitions.get(candidate).get(c);
+                fail[child] = target == null ? ROOT : target;
+                queue.add(child);
+            }
+        }
+    }
+
+    public static final class Builder<T> {
+        private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+        private final Map<Integer, List<Integer>> outputs = new HashMap<>();
+        private final List<Integer> patternLength = new ArrayList<>();
+        private final List<T> payloads = new ArrayList<>();
+
+        private Builder() {
+            transitions.add(new HashMap<>());
+        }
+
+        /**
+         * Пустые и пробельные образцы пропускаются.
+         */
+        public Builder<T> add(String pattern, T payload) {
+            if (pattern == null || pattern.isBlank()) return this;
+            String trimmed = pattern.strip();
+            int node = ROOT;
+            for (int i = 0; i < trimmed.length(); i++) {
+                char c = normalize(trimmed.charAt(i));
+                Integer next = transitions.get(node).get(c);
+                if (next == null) {
+                    next = transitions.size();
+                    transitions.add(new HashMap<>());
+                    transitions.get(node).put(c, next);
+                }
+                node = next;
+            }
+            outputs.computeIfAbsent(node, k -> new ArrayList<>()).add(payloads.size());
+            patternLength.add(trimmed.length());
+            payloads.add(payload);
+            return this;
+        }
+
+        public AhoCorasickMatcher<T> build() {
+            return new AhoCorasickMatcher<>(this);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package ru.topwine.assistant.startup;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.topwine.assistant.configuration.AiProps;
+import ru.topwine.assistant.configuration.WarmupProps;
+import ru.topwine.assistant.http.client.ChatClient;
+import ru.topwine.assistant.http.request.OpenAiRequestFactory;
+
+import java.time.LocalTime;
+import java.time.ZoneId;
+
+/**
+ * В часы работы периодически пингует модель, чтобы Ollama не выгружала её в затишье
+ * и следующий гость не ждал холодной загрузки. Вне часов работы пинги прекращаются, и модель выгружается сама.
+ */
+@Component
+@Profile("!test")
+@RequiredArgsConstructor
+@Slf4j
+class LlmKeepAliveScheduler {
+
+    private final ChatClient chatClient;
+    private final AiProps ai;
+    private final WarmupProps props;
+
+    @Scheduled(
+            initialDelayString = "${warmup.keep-alive.interval:PT4M}",
+            fixedDelayString = "${warmup.keep-alive.interval:PT4M}"
+    )
+    public void ping() {
+        WarmupProps.KeepAlive keepAlive = props.keepAlive();
+        if (keepAlive == null || !keepAlive.enabled()) return;
+
+        ZoneId zone = keepAlive.zone() == null ? ZoneId.systemDefault() : keepAlive.zone();
+        if (!keepAlive.isServiceTime(LocalTime.now(zone))) return;
+
+        long startNanos = System.nanoTime();
+        chatClient.keepAlive(OpenAiRequestFactory.keepAlivePing(ai.model(), props.modelKeepAlive()))
+                .subscribe(
+                        ignored -> {
+                        },
+                        ex -> log.warn("Keep-alive модели не удался: {}", ex.toString()),
+                        () -> log.debug("Keep-alive модели: {} мс", (System.nanoTime() - startNanos) / 1_000_000)
+                );
+    }
+}
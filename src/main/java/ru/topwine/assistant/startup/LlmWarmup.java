@@ -2,35 +2,82 @@ package ru.topwine.assistant.startup;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
 import org.springframework.context.annotation.Profile;
-import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 import ru.topwine.assistant.configuration.AiProps;
+import ru.topwine.assistant.configuration.WarmupProps;
 import ru.topwine.assistant.http.client.ChatClient;
-import ru.topwine.assistant.http.request.OpenAiChatCompletionsRequest;
 import ru.topwine.assistant.http.request.OpenAiRequestFactory;
+import ru.topwine.assistant.service.SommelierService;
+import ru.topwine.assistant.service.session.ConversationStore;
 
+import java.time.Duration;
 import java.util.List;
 
+/**
+ * Прогрев до того, как узел объявит готовность. Spring Boot переводит readiness в ACCEPTING_TRAFFIC
+ * только после всех {@link ApplicationRunner}, поэтому пока идёт прогрев, /actuator/health/readiness
+ * отвечает OUT_OF_SERVICE.
+ * <p>
+ * Сначала модель загружается на всех бэкендах, затем типовые вопросы проходят полный путь advise():
+ * БД, jOOQ, Jackson, сборку промпта и сам префикс промпта в KV-кэше модели.
+ */
 @Component
 @Profile("!test")
 @RequiredArgsConstructor
 @Slf4j
-class LlmWarmup {
+class LlmWarmup implements ApplicationRunner {
+
+    private static final String WARMUP_CLIENT_ID = "warmup";
+
     private final ChatClient chatClient;
+    private final SommelierService sommelierService;
+    private final ConversationStore conversationStore;
     private final AiProps ai;
+    private final WarmupProps props;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!props.enabled()) {
+            log.info("Прогрев LLM отключён");
+            return;
+        }
+        long startNanos = System.nanoTime();
+        Duration maxDuration = props.maxDuration() == null ? Duration.ofMinutes(2) : props.maxDuration();
+
+        try {
+            chatClient.keepAlive(OpenAiRequestFactory.keepAlivePing(ai.model(), props.modelKeepAlive())).block(maxDuration);
+            log.info("Модель загружена: время={} мс", (System.nanoTime() - startNanos) / 1_000_000);
+        } catch (Exception ex) {
+            log.warn("Не удалось загрузить модель при прогреве: {}", ex.toString());
+        }
+
+        List<String> messages = props.messages() == null ? List.of() : props.messages();
+        int succeeded = 0;
+        for (String message : messages) {
+            Duration left = maxDuration.minusNanos(System.nanoTime() - startNanos);
+            if (left.isNegative() || left.isZero()) {
+                log.warn("Прогрев прерван по времени: выполнено {} из {} запросов", succeeded, messages.size());
+                break;
+            }
+            long callStart = System.nanoTime();
+            try {
+                sommelierService.adviseReactive(WARMUP_CLIENT_ID, message).block(left);
+                succeeded++;
+                log.info("Прогрев: «{}» за {} мс", message, (System.nanoTime() - callStart) / 1_000_000);
+            } catch (Exception ex) {
+                log.warn("Прогрев: запрос «{}» не удался: {}", message, ex.toString());
+            }
+        }
 
-    @EventListener(ApplicationReadyEvent.class)
-    public void warmup() {
-        OpenAiChatCompletionsRequest req = OpenAiRequestFactory.build(
-                ai.model(), "You are a system.", List.of(), 0.0, 1
-        );
         try {
-            chatClient.chat(req);
-            log.info("LLM warmup done");
+            conversationStore.clear(WARMUP_CLIENT_ID);
         } catch (Exception ex) {
-            log.warn("LLM warmup failed: {}", ex.toString());
+            log.warn("Не удалось очистить сессию прогрева: {}", ex.toString());
         }
+        log.info("Прогрев завершён: успешно {} из {}, время={} мс",
+                succeeded, messages.size(), (System.nanoTime() - startNanos) / 1_000_000);
     }
 }
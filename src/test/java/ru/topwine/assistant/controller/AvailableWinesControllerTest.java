@@ -0,0 +1,109 @@
+package ru.topwine.assistant.controller;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import ru.topwine.assistant.exception.GlobalExceptionHandler;
+import ru.topwine.assistant.model.wine.AvailableWinesPage;
+import ru.topwine.assistant.model.wine.CatalogVersion;
+import ru.topwine.assistant.model.wine.WineCursor;
+import ru.topwine.assistant.service.AvailableWinesService;
+import ru.topwine.assistant.service.catalog.CatalogVersionTracker;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+
+@WebFluxTest(controllers = AvailableWinesController.class)
+@Import(GlobalExceptionHandler.class)
+class AvailableWinesControllerTest {
+
+    private static final CatalogVersion VERSION =
+            new CatalogVersion("\"wines-test-1\"", Instant.parse("2026-01-10T12:00:00Z"));
+    private static final String JSON_ETAG = "\"wines-test-1-json\"";
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockitoBean
+    private AvailableWinesService availableWinesService;
+
+    @MockitoBean
+    private CatalogVersionTracker catalogVersionTracker;
+
+    @Test
+    @DisplayName("given каталог не менялся when GET с If-None-Match then 304 без поиска")
+    void given_unchanged_catalog_when_conditional_get_then_304_without_search() {
+        Mockito.when(catalogVersionTracker.current()).thenReturn(VERSION);
+
+        webTestClient.get()
+                .uri("/api/available-wines?color=red")
+                .header(HttpHeaders.IF_NONE_MATCH, JSON_ETAG)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, JSON_ETAG)
+                .expectHeader().valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+
+        Mockito.verifyNoInteractions(availableWinesService);
+    }
+
+    @Test
+    @DisplayName("given есть следующая страница when GET then ETag и курсор в заголовках")
+    void given_next_page_when_get_then_etag_and_cursor_headers() {
+        WineCursor next = new WineCursor(new BigDecimal("1500.00"), "Кьянти", 7L);
+        Mockito.when(catalogVersionTracker.current()).thenReturn(VERSION);
+        Mockito.when(availableWinesService.page(any(), any(), anyInt()))
+                .thenReturn(new AvailableWinesPage(List.of(), next));
+
+        webTestClient.get()
+                .uri("/api/available-wines?limit=1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, JSON_ETAG)
+                .expectHeader().valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                .expectHeader().exists(HttpHeaders.LAST_MODIFIED)
+                .expectHeader().valueEquals(AvailableWinesController.NEXT_CURSOR_HEADER, next.encode());
+    }
+
+    @Test
+    @DisplayName("given закэширован JSON when NDJSON-запрос с его ETag then 200 и выгрузка, а не 304")
+    void given_json_etag_when_ndjson_request_then_full_export() {
+        Mockito.when(catalogVersionTracker.current()).thenReturn(VERSION);
+        Mockito.when(availableWinesService.export(any())).thenReturn(Flux.empty());
+
+        webTestClient.get()
+                .uri("/api/available-wines")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.IF_NONE_MATCH, JSON_ETAG)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"wines-test-1-ndjson\"")
+                .expectHeader().valueEquals(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+    }
+
+    @Test
+    @DisplayName("given каталог не менялся when NDJSON-запрос с его ETag then 304 без выгрузки")
+    void given_unchanged_catalog_when_conditional_ndjson_then_304_without_export() {
+        Mockito.when(catalogVersionTracker.current()).thenReturn(VERSION);
+
+        webTestClient.get()
+                .uri("/api/available-wines")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"wines-test-1-ndjson\"")
+                .exchange()
+                .expectStatus().isNotModified();
+
+        Mockito.verify(availableWinesService, Mockito.never()).export(any());
+    }
+}
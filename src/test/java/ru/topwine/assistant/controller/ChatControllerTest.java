@@ -9,6 +9,7 @@ import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
 import ru.topwine.assistant.exception.GlobalExceptionHandler;
 import ru.topwine.assistant.exception.TopWineException;
 import ru.topwine.assistant.model.ChatRequest;
@@ -34,8 +35,8 @@ class ChatControllerExceptionTest {
     @Test
     @DisplayName("given непредвиденная ошибка when POST /api/chat then 504 и JSON с code=1001")
     void given_unexpected_error_when_chat_then_504_and_json_body() {
-        Mockito.when(sommelierService.advise(anyString(), anyString()))
-                .thenThrow(new TopWineException(TopWineException.Kind.PROVIDER_TIMEOUT, 30));
+        Mockito.when(sommelierService.adviseReactive(anyString(), anyString()))
+                .thenReturn(Mono.error(new TopWineException(TopWineException.Kind.PROVIDER_TIMEOUT, 30)));
 
         ChatRequest request = new ChatRequest("steak");
 
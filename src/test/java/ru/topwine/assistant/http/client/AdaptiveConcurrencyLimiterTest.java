@@ -0,0 +1,91 @@
+package ru.topwine.assistant.http.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.topwine.assistant.configuration.AiProps;
+import ru.topwine.assistant.exception.TopWineException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("given лимит исчерпан и очередь полна when acquire then быстрый отказ PROVIDER_BUSY")
+    void given_limit_and_queue_full_when_acquire_then_busy() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 0, Duration.ofSeconds(1));
+
+        limiter.acquire().block(Duration.ofSeconds(1));
+
+        assertThatThrownBy(() -> limiter.acquire().block(Duration.ofSeconds(1)))
+                .isInstanceOf(TopWineException.class)
+                .extracting(ex -> ((TopWineException) ex).getKind())
+                .isEqualTo(TopWineException.Kind.PROVIDER_BUSY);
+        assertThat(meterRegistry.get("llm.limiter.rejected").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("given ожидающий в очереди when слот освобождён then ожидающий получает разрешение")
+    void given_waiter_when_permit_released_then_waiter_granted() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 1, Duration.ofSeconds(5));
+        AdaptiveConcurrencyLimiter.Permit first = limiter.acquire().block(Duration.ofSeconds(1));
+
+        AtomicReference<AdaptiveConcurrencyLimiter.Permit> second = new AtomicReference<>();
+        limiter.acquire().subscribe(second::set);
+        assertThat(limiter.queueDepth()).isEqualTo(1);
+        assertThat(second.get()).isNull();
+
+        first.ignore();
+
+        assertThat(second.get()).isNotNull();
+        assertThat(limiter.queueDepth()).isZero();
+        assertThat(limiter.inFlight()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("given ожидание дольше max-queue-wait when acquire then отказ и очередь пуста")
+    void given_queue_wait_expired_when_acquire_then_busy() {
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 1, Duration.ofMillis(100));
+        limiter.acquire().block(Duration.ofSeconds(1));
+
+        assertThatThrownBy(() -> limiter.acquire().block(Duration.ofSeconds(2)))
+                .isInstanceOf(TopWineException.class);
+        assertThat(limiter.queueDepth()).isZero();
+    }
+
+    @Test
+    @DisplayName("given таймаут провайдера when dropped then лимит уменьшается")
+    void given_timeout_when_dropped_then_limit_decreases() {
+        AdaptiveConcurrencyLimiter limiter = limiter(4, 0, Duration.ofSeconds(1));
+
+        limiter.acquire().block(Duration.ofSeconds(1)).dropped();
+
+        assertThat(limiter.currentLimit()).isEqualTo(2);
+        assertThat(limiter.inFlight()).isZero();
+    }
+
+    @Test
+    @DisplayName("given повторное освобождение when release then счётчик не уходит в минус")
+    void given_double_release_when_release_then_counted_once() {
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 0, Duration.ofSeconds(1));
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire().block(Duration.ofSeconds(1));
+
+        permit.success();
+        permit.ignore();
+
+        assertThat(limiter.inFlight()).isZero();
+    }
+
+    private AdaptiveConcurrencyLimiter limiter(int initialLimit, int maxQueue, Duration maxQueueWait) {
+        AiProps.Limiter props = new AiProps.Limiter(
+                true, initialLimit, 1, 8, maxQueue, maxQueueWait, Duration.ofSeconds(5), 0.5
+        );
+        return new AdaptiveConcurrencyLimiter(props, meterRegistry);
+    }
+}
@@ -0,0 +1,106 @@
+package ru.topwine.assistant.http.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.topwine.assistant.http.request.OpenAiChatCompletionsRequest;
+import ru.topwine.assistant.http.request.OpenAiRequestFactory;
+import ru.topwine.assistant.model.ChatMessage;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CoalescingChatClientTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("given шесть одинаковых одновременных запросов when chatReactive then один вызов провайдера")
+    void given_identical_concurrent_requests_when_chat_then_single_upstream_call() {
+        CountingChatClient upstream = new CountingChatClient();
+        CoalescingChatClient client = new CoalescingChatClient(upstream, new ObjectMapper(), meterRegistry);
+        OpenAiChatCompletionsRequest request = request("красное к стейку");
+
+        List<String> replies = Flux.range(0, 6)
+                .flatMap(i -> client.chatReactive(request))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(replies).hasSize(6).containsOnly("ответ-1");
+        assertThat(upstream.calls.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("llm.requests.coalesced").tag("mode", "unary").counter().count())
+                .isEqualTo(5.0);
+    }
+
+    @Test
+    @DisplayName("given разные запросы when chatReactive then каждый уходит к провайдеру")
+    void given_different_requests_when_chat_then_not_coalesced() {
+        CountingChatClient upstream = new CountingChatClient();
+        CoalescingChatClient client = new CoalescingChatClient(upstream, new ObjectMapper(), meterRegistry);
+
+        Flux.merge(client.chatReactive(request("белое")), client.chatReactive(request("красное")))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(upstream.calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("given завершённый запрос when тот же запрос повторно then новый вызов провайдера")
+    void given_completed_request_when_repeated_then_new_upstream_call() {
+        CountingChatClient upstream = new CountingChatClient();
+        CoalescingChatClient client = new CoalescingChatClient(upstream, new ObjectMapper(), meterRegistry);
+        OpenAiChatCompletionsRequest request = request("игристое");
+
+        client.chatReactive(request).block(Duration.ofSeconds(5));
+        String second = client.chatReactive(request).block(Duration.ofSeconds(5));
+
+        assertThat(second).isEqualTo("ответ-2");
+        assertThat(upstream.calls.get()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("given одинаковые потоковые запросы when stream then все получают полный текст от одного вызова")
+    void given_identical_streams_when_stream_then_shared_upstream() {
+        CountingChatClient upstream = new CountingChatClient();
+        CoalescingChatClient client = new CoalescingChatClient(upstream, new ObjectMapper(), meterRegistry);
+        OpenAiChatCompletionsRequest request = request("розе");
+
+        List<String> assembled = Flux.range(0, 3)
+                .flatMap(i -> client.stream(request).collectList().map(chunks -> String.join("", chunks)))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(assembled).containsOnly("раз-два-три");
+        assertThat(upstream.streams.get()).isEqualTo(1);
+    }
+
+    private static OpenAiChatCompletionsRequest request(String text) {
+        return OpenAiRequestFactory.build("test-model", "system", List.of(ChatMessage.user(text)), 0.1, 16, null);
+    }
+
+    private static final class CountingChatClient implements ChatClient {
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger streams = new AtomicInteger();
+
+        @Override
+        public Mono<String> chatReactive(OpenAiChatCompletionsRequest request) {
+            return Mono.defer(() -> Mono.delay(Duration.ofMillis(100))
+                    .map(tick -> "ответ-" + calls.incrementAndGet()));
+        }
+
+        @Override
+        public Flux<String> stream(OpenAiChatCompletionsRequest request) {
+            return Flux.defer(() -> {
+                streams.incrementAndGet();
+                return Flux.just("раз-", "два-", "три").delayElements(Duration.ofMillis(50));
+            });
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package ru.topwine.assistant.http.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import ru.topwine.assistant.configuration.AiProps;
+import ru.topwine.assistant.exception.ProviderHttpException;
+import ru.topwine.assistant.exception.TopWineException;
+import ru.topwine.assistant.http.request.OpenAiChatCompletionsRequest;
+import ru.topwine.assistant.http.request.OpenAiRequestFactory;
+import ru.topwine.assistant.model.ChatMessage;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PooledChatClientTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("given один бэкенд занят when новые запросы then они уходят на свободный бэкенд")
+    void given_busy_backend_when_chat_then_least_outstanding_chosen() {
+        FakeBackend slow = new FakeBackend("slow", Duration.ofMillis(500), false);
+        FakeBackend fast = new FakeBackend("fast", Duration.ofMillis(10), false);
+        PooledChatClient client = pool(props(3, false), slow, fast);
+
+        client.chatReactive(request()).subscribe();
+        for (int i = 0; i < 3; i++) {
+            assertThat(client.chatReactive(request()).block(Duration.ofSeconds(1))).isEqualTo("fast");
+        }
+
+        assertThat(slow.calls.get()).isEqualTo(1);
+        assertThat(fast.calls.get()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("given ошибки подряд when порог достигнут then бэкенд выводится из ротации")
+    void given_consecutive_failures_when_threshold_reached_then_backend_ejected() {
+        FakeBackend broken = new FakeBackend("broken", Duration.ZERO, true);
+        FakeBackend healthy = new FakeBackend("healthy", Duration.ZERO, false);
+        PooledChatClient client = pool(props(2, false), broken, healthy);
+
+        for (int i = 0; i < 10; i++) {
+            client.chatReactive(request()).onErrorReturn("ошибка").block(Duration.ofSeconds(1));
+        }
+
+        assertThat(broken.calls.get()).isEqualTo(2);
+        assertThat(healthy.calls.get()).isEqualTo(8);
+        assertThat(meterRegistry.get("llm.pool.ejected").tag("endpoint", "broken").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("given бэкенд завис when включено дублирование then отвечает второй бэкенд")
+    void given_stuck_backend_when_hedging_then_backup_answers() {
+        FakeBackend first = new FakeBackend("first", Duration.ofMillis(5), false);
+        FakeBackend second = new FakeBackend("second", Duration.ofMillis(5), false);
+        PooledChatClient client = pool(props(3, true), first, second);
+        for (int i = 0; i < 30; i++) {
+            client.chatReactive(request()).block(Duration.ofSeconds(1));
+        }
+
+        first.delay = Duration.ofSeconds(10);
+        // запросы идут по очереди, поэтому один из двух обязательно начнётся на зависшем бэкенде
+        List<String> replies = Flux.range(0, 2)
+                .concatMap(i -> client.chatReactive(request()))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(replies).containsOnly("second");
+        assertThat(meterRegistry.get("llm.pool.hedged").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("given провайдер отвергает запрос (4xx) when ошибки подряд then бэкенд остаётся в ротации")
+    void given_client_errors_when_repeated_then_backend_not_ejected() {
+        FakeBackend rejecting = new FakeBackend("rejecting", Duration.ZERO, false);
+        rejecting.failStatus = 400;
+        PooledChatClient client = pool(props(2, false), rejecting);
+
+        for (int i = 0; i < 5; i++) {
+            client.chatReactive(request()).onErrorReturn("ошибка").block(Duration.ofSeconds(1));
+        }
+
+        assertThat(rejecting.calls.get()).isEqualTo(5);
+        assertThat(meterRegistry.get("llm.pool.ejected").tag("endpoint", "rejecting").counter().count()).isZero();
+        assertThat(PooledChatClient.isBackendFault(new ProviderHttpException(502, "bad gateway"))).isTrue();
+        assertThat(PooledChatClient.isBackendFault(
+                new TopWineException(TopWineException.Kind.PROVIDER_TIMEOUT, 30))).isTrue();
+    }
+
+    @Test
+    @DisplayName("given включено дублирование when основной бэкенд ответил пусто then пустой результат сразу, без ошибки")
+    void given_hedging_when_primary_empty_then_empty_without_waiting_for_hedge() {
+        FakeBackend first = new FakeBackend("first", Duration.ofMillis(5), false);
+        FakeBackend second = new FakeBackend("second", Duration.ofMillis(5), false);
+        PooledChatClient client = pool(props(3, true), first, second);
+        for (int i = 0; i < 30; i++) {
+            client.chatReactive(request()).block(Duration.ofSeconds(1));
+        }
+        first.empty = true;
+        second.empty = true;
+        first.delay = Duration.ZERO;
+        second.delay = Duration.ZERO;
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(client.chatReactive(request()).blockOptional(Duration.ofSeconds(1))).isEmpty();
+        }
+        // если бы пустой ответ придерживался до срабатывания дубля, дубль ушёл бы на простаивающий бэкенд
+        assertThat(meterRegistry.get("llm.pool.hedged").counter().count()).isZero();
+    }
+
+    private PooledChatClient pool(AiProps.Pool props, FakeBackend... backends) {
+        List<PooledChatClient.Endpoint> endpoints = List.of(backends).stream()
+                .map(b -> new PooledChatClient.Endpoint(b.name, b))
+                .toList();
+        return new PooledChatClient(endpoints, props, meterRegistry);
+    }
+
+    private static AiProps.Pool props(int ejectAfterFailures, boolean hedge) {
+        return new AiProps.Pool(ejectAfterFailures, Duration.ofMinutes(1), hedge, 0.95, Duration.ofMillis(100));
+    }
+
+    private static OpenAiChatCompletionsRequest request() {
+        return OpenAiRequestFactory.build("test-model", "system", List.of(ChatMessage.user("вино")), 0.1, 16, null);
+    }
+
+    private static final class FakeBackend implements ChatClient {
+        private final String name;
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile Duration delay;
+        private volatile int failStatus;
+        private volatile boolean empty;
+
+        private FakeBackend(String name, Duration delay, boolean failing) {
+            this.name = name;
+            this.delay = delay;
+            this.failStatus = failing ? 503 : 0;
+        }
+
+        @Override
+        public Mono<String> chatReactive(OpenAiChatCompletionsRequest request) {
+            return Mono.defer(() -> {
+                calls.incrementAndGet();
+                if (failStatus != 0) {
+                    return Mono.error(new ProviderHttpException(failStatus, name));
+                }
+                Mono<Long> wait = Mono.delay(delay);
+                return empty ? wait.then(Mono.empty()) : wait.thenReturn(name);
+            });
+        }
+
+        @Override
+        public Flux<String> stream(OpenAiChatCompletionsRequest request) {
+            return chatReactive(request).flux();
+        }
+    }
+}
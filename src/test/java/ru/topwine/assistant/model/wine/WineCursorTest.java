@@ -0,0 +1,43 @@
+package ru.topwine.assistant.model.wine;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.topwine.assistant.exception.TopWineException;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WineCursorTest {
+
+    @Test
+    @DisplayName("given курсор с «|» в названии when кодирование и разбор then значения совпадают")
+    void given_cursor_with_separator_in_name_when_round_trip_then_equal() {
+        WineCursor cursor = new WineCursor(new BigDecimal("1890.50"), "Кьянти | Классико", 42L);
+
+        assertThat(WineCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    @DisplayName("given курсор выдачи со свободным запросом when кодирование и разбор then релевантность сохраняется точно")
+    void given_ranked_cursor_when_round_trip_then_rank_exact() {
+        WineCursor cursor = new WineCursor(new BigDecimal("1890.50"), "r|Кьянти", 42L, 0.1 + 0.2);
+
+        WineCursor decoded = WineCursor.decode(cursor.encode());
+
+        assertThat(decoded).isEqualTo(cursor);
+        assertThat(decoded.rank()).isEqualTo(0.1 + 0.2);
+        assertThat(WineCursor.decode(new WineCursor(BigDecimal.TEN, "r1|x", 1L).encode()).rank()).isNull();
+    }
+
+    @Test
+    @DisplayName("given испорченный курсор when разбор then ошибка валидации")
+    void given_broken_cursor_when_decode_then_validation_error() {
+        assertThatThrownBy(() -> WineCursor.decode("не-курсор"))
+                .isInstanceOf(TopWineException.class)
+                .extracting(ex -> ((TopWineException) ex).getKind())
+                .isEqualTo(TopWineException.Kind.VALIDATION);
+        assertThat(WineCursor.decode(" ")).isNull();
+    }
+}
@@ -0,0 +1,115 @@
+package ru.topwine.assistant.repository;
+
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.Select;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import ru.topwine.assistant.configuration.CatalogProps;
+import ru.topwine.assistant.model.wine.AvailableWineFilter;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Сравнивает оценку стоимости одного и того же поиска по v_available_wines и по available_wine_mat
+ * на 10k и 100k строк остатков. Оценки попадают в сообщение проверки; строки засеваются в транзакции
+ * (available_wine_mat при этом ведут триггеры) и откатываются. Запускается только при заданном DB_HOST,
+ * вариант на 100k — ещё и с ./gradlew test -Dbenchmark=true (build.gradle пробрасывает свойство в JVM тестов).
+ */
+@EnabledIfEnvironmentVariable(named = "DB_HOST", matches = ".+")
+class AvailableWinesMaterializedCostTest {
+
+    private Connection connection;
+
+    @AfterEach
+    void rollback() throws SQLException {
+        if (connection != null) {
+            connection.rollback();
+            connection.close();
+        }
+    }
+
+    @Test
+    @DisplayName("given 10k строк остатков when поиск по цвету, цене и году then материализованная таблица дешевле представления")
+    void given_10k_stock_when_filtered_search_then_materialized_cheaper() throws SQLException {
+        assertMaterializedCheaper(10_000);
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    @DisplayName("benchmark: 100k строк остатков, материализованная таблица против представления")
+    void benchmark_100k_stock_materialized_vs_view() throws SQLException {
+        assertMaterializedCheaper(100_000);
+    }
+
+    private void assertMaterializedCheaper(int stockRows) throws SQLException {
+        DSLContext dsl = seed(stockRows);
+        AvailableWinesRepository viaView = repository(dsl, CatalogProps.WineSource.VIEW);
+        AvailableWinesRepository viaMat = repository(dsl, CatalogProps.WineSource.MATERIALIZED);
+        AvailableWineFilter filter = new AvailableWineFilter(null, "white", null, null, null, null, 3000, 2015, 2020);
+
+        double viewCost = cost(viaView.searchQuery(filter, 20));
+        double matCost = cost(viaMat.searchQuery(filter, 20));
+        assertThat(dsl.fetchCount(DSL.table(DSL.name(AvailableWinesRepository.MATERIALIZED_TABLE))))
+                .isEqualTo(dsl.fetchCount(DSL.table(DSL.name("v_available_wines"))));
+        assertThat(matCost)
+                .as("строк остатков=%d: стоимость через представление=%.1f, через available_wine_mat=%.1f",
+                        stockRows, viewCost, matCost)
+                .isLessThan(viewCost);
+    }
+
+    /**
+     * План снимаем через контекст самого запроса: подмена таблицы живёт в его настройках рендеринга.
+     */
+    private static double cost(Select<?> query) {
+        return query.configuration().dsl().explain(query).cost();
+    }
+
+    private DSLContext seed(int stockRows) throws SQLException {
+        String url = "jdbc:postgresql://%s:%s/%s".formatted(
+                System.getenv("DB_HOST"), env("DB_PORT", "5432"), env("DB_NAME", "topwine"));
+        connection = DriverManager.getConnection(url, env("DB_USER", "topwine"), env("DB_PASSWORD", "topwine"));
+        connection.setAutoCommit(false);
+
+        try (Statement st = connection.createStatement()) {
+            st.execute("""
+                    INSERT INTO wine_item (wine_name, producer_name, country_name, region_name, grape_varieties, wine_color, vintage_year)
+                    SELECT 'Вино ' || md5(g::text),
+                           'Хозяйство ' || (g % 5000),
+                           (ARRAY['Италия', 'Франция', 'Испания', 'Россия', 'Чили'])[1 + g % 5],
+                           'Регион ' || (g % 2000),
+                           (ARRAY['Санджовезе', 'Мерло', 'Рислинг', 'Шардоне', 'Пино нуар'])[1 + g % 5],
+                           (ARRAY['red', 'white', 'rose'])[1 + g % 3],
+                           1990 + g % 35
+                    FROM generate_series(1, %d) AS g
+                    """.formatted(stockRows));
+            // каждая десятая позиция закончилась — её отсекает условие quantity_bottles > 0
+            st.execute("""
+                    INSERT INTO wine_stock (wine_id, quantity_bottles, price_rub)
+                    SELECT id, id % 10, 900 + id % 9000 FROM wine_item
+                    """);
+            st.execute("ANALYZE wine_item");
+            st.execute("ANALYZE wine_stock");
+            st.execute("ANALYZE " + AvailableWinesRepository.MATERIALIZED_TABLE);
+        }
+        return DSL.using(connection, SQLDialect.POSTGRES);
+    }
+
+    private static AvailableWinesRepository repository(DSLContext dsl, CatalogProps.WineSource source) {
+        return new AvailableWinesRepository(dsl, new CatalogProps(CatalogProps.SearchMode.SQL, null, source, null));
+    }
+
+    private static String env(String name, String fallback) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? fallback : value;
+    }
+}
@@ -0,0 +1,145 @@
+package ru.topwine.assistant.repository;
+
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import ru.topwine.assistant.configuration.CatalogProps;
+import ru.topwine.assistant.model.wine.AvailableWine;
+import ru.topwine.assistant.model.wine.AvailableWineFilter;
+import ru.topwine.assistant.model.wine.AvailableWinesPage;
+import ru.topwine.assistant.model.wine.WineCursor;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Проверяет по EXPLAIN, что поиск по тексту идёт через индексы v021, а не через полный просмотр wine_item.
+ * Нужна PostgreSQL с применёнными миграциями (те же переменные окружения, что у liquibaseUpdate);
+ * каталог засевается внутри транзакции и откатывается после теста.
+ */
+@EnabledIfEnvironmentVariable(named = "DB_HOST", matches = ".+")
+class AvailableWinesSearchPlanTest {
+
+    private static final int SEEDED_WINES = 50_000;
+
+    private Connection connection;
+    private AvailableWinesRepository repository;
+    private DSLContext dsl;
+
+    @BeforeEach
+    void seed() throws SQLException {
+        String url = "jdbc:postgresql://%s:%s/%s".formatted(
+                System.getenv("DB_HOST"), env("DB_PORT", "5432"), env("DB_NAME", "topwine"));
+        connection = DriverManager.getConnection(url, env("DB_USER", "topwine"), env("DB_PASSWORD", "topwine"));
+        connection.setAutoCommit(false);
+
+        try (Statement st = connection.createStatement()) {
+            st.execute("""
+                    INSERT INTO wine_item (wine_name, producer_name, country_name, region_name, grape_varieties, wine_color, vintage_year)
+                    SELECT 'Вино ' || md5(g::text),
+                           'Хозяйство ' || (g % 5000),
+                           (ARRAY['Италия', 'Франция', 'Испания', 'Россия', 'Чили'])[1 + g % 5],
+                           'Регион ' || (g % 2000),
+                           (ARRAY['Санджовезе', 'Мерло', 'Рислинг', 'Шардоне', 'Пино нуар'])[1 + g % 5],
+                           (ARRAY['red', 'white', 'rose'])[1 + g % 3],
+                           1990 + g % 35
+                    FROM generate_series(1, %d) AS g
+                    """.formatted(SEEDED_WINES));
+            st.execute("""
+                    INSERT INTO wine_item (wine_name, producer_name, country_name, region_name, grape_varieties, wine_color)
+                    VALUES ('Бароло Каннубби', 'Луиджи Эйнауди', 'Италия', 'Пьемонт Ланге', 'Неббиоло', 'red')
+                    """);
+            st.execute("""
+                    INSERT INTO wine_stock (wine_id, quantity_bottles, price_rub)
+                    SELECT id, 1 + id % 12, 900 + id % 9000 FROM wine_item
+                    """);
+            st.execute("ANALYZE wine_item");
+            st.execute("ANALYZE wine_stock");
+        }
+
+        dsl = DSL.using(connection, SQLDialect.POSTGRES);
+        repository = new AvailableWinesRepository(dsl,
+                new CatalogProps(CatalogProps.SearchMode.SQL, null, CatalogProps.WineSource.VIEW, null));
+    }
+
+    @AfterEach
+    void rollback() throws SQLException {
+        if (connection != null) {
+            connection.rollback();
+            connection.close();
+        }
+    }
+
+    @Test
+    @DisplayName("given большой каталог when свободный запрос then план идёт через полнотекстовый и trigram-индексы")
+    void given_large_catalog_when_free_query_then_fts_and_trigram_indexes_used() {
+        String plan = explain(filter("бароло", null));
+
+        assertThat(plan).contains("ix_wine_item_search_tsv").contains("ix_wine_item_name_trgm");
+        assertThat(plan).doesNotContain("Seq Scan on wine_item");
+    }
+
+    @Test
+    @DisplayName("given большой каталог when фильтр по региону then используется trigram-индекс региона")
+    void given_large_catalog_when_region_filter_then_region_trigram_index_used() {
+        String plan = explain(filter(null, "пьемонт"));
+
+        assertThat(plan).contains("ix_wine_item_region_trgm");
+        assertThat(plan).doesNotContain("Seq Scan on wine_item");
+    }
+
+    @Test
+    @DisplayName("given свободный запрос when листаем страницами по одной then порядок тот же, что у поиска по релевантности")
+    void given_free_query_when_paged_then_same_order_as_ranked_search() throws SQLException {
+        try (Statement st = connection.createStatement()) {
+            st.execute("""
+                    INSERT INTO wine_item (wine_name, producer_name, country_name, region_name, grape_varieties, wine_color)
+                    VALUES ('Кьянти', 'Антинори', 'Италия', 'Тоскана', 'Санджовезе', 'red'),
+                           ('Кьянти Классико Ризерва', 'Фонтероли', 'Италия', 'Тоскана', 'Санджовезе', 'red'),
+                           ('Тоскана Россо', 'Кьянтиджана', 'Италия', 'Тоскана', 'Санджовезе', 'red')
+                    """);
+            st.execute("""
+                    INSERT INTO wine_stock (wine_id, quantity_bottles, price_rub)
+                    SELECT id, 6, 5000 - length(wine_name) * 10 FROM wine_item
+                    WHERE wine_name IN ('Кьянти', 'Кьянти Классико Ризерва', 'Тоскана Россо')
+                    """);
+        }
+        AvailableWineFilter filter = filter("кьянти", null);
+        List<Long> ranked = repository.search(filter, 50).stream().map(AvailableWine::stockId).toList();
+
+        List<Long> paged = new ArrayList<>();
+        WineCursor cursor = null;
+        do {
+            AvailableWinesPage page = repository.searchPage(filter, cursor, 1);
+            page.items().forEach(wine -> paged.add(wine.stockId()));
+            cursor = page.nextCursor();
+        } while (cursor != null && paged.size() < 50);
+
+        assertThat(ranked).hasSizeGreaterThanOrEqualTo(3);
+        assertThat(paged).isEqualTo(ranked);
+    }
+
+    private String explain(AvailableWineFilter filter) {
+        return dsl.explain(repository.searchQuery(filter, 20)).plan();
+    }
+
+    private static AvailableWineFilter filter(String freeQuery, String region) {
+        return new AvailableWineFilter(freeQuery, null, null, region, null, null, null, null, null);
+    }
+
+    private static String env(String name, String fallback) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? fallback : value;
+    }
+}
@@ -0,0 +1,39 @@
+package ru.topwine.assistant.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.topwine.assistant.model.wine.AvailableWineFilter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DishWineFilterJsonTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    @DisplayName("given filter_json с числами строками и дробями when разбор then поля фильтра типизированы")
+    void given_mixed_number_formats_when_parse_then_typed_filter() throws JsonProcessingException {
+        AvailableWineFilter filter = parse("""
+                {"color": " red ", "grape": "", "minPriceRub": "1500", "maxPriceRub": 4999.6, "minVintageYear": 2015}
+                """);
+
+        assertThat(filter).isEqualTo(new AvailableWineFilter(null, "red", null, null, null, 1500, 5000, 2015, null));
+    }
+
+    @Test
+    @DisplayName("given неверные поля и массив вместо объекта when разбор then неверное пропущено, остальное сохранено")
+    void given_invalid_fields_and_array_when_parse_then_valid_fields_kept() throws JsonProcessingException {
+        AvailableWineFilter filter = parse("""
+                [{"country": "Италия", "maxPriceRub": "дорого", "region": {"name": "Тоскана"}, "colour": "red"}, {"color": "white"}]
+                """);
+
+        assertThat(filter).isEqualTo(new AvailableWineFilter(null, null, "Италия", null, null, null, null, null, null));
+        assertThat(parse("\"red\"")).isEqualTo(AvailableWineFilter.empty());
+    }
+
+    private AvailableWineFilter parse(String json) throws JsonProcessingException {
+        return DishWineFilterJson.parse(42L, mapper.readTree(json));
+    }
+}
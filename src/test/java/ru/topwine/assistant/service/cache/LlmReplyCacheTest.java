@@ -0,0 +1,55 @@
+package ru.topwine.assistant.service.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import ru.topwine.assistant.configuration.ReplyCacheProps;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LlmReplyCacheTest {
+
+    private static final String FALLBACK = "Сейчас не получается подобрать вино, попробуйте ещё раз.";
+
+    private final LlmReplyCache cache = new LlmReplyCache(
+            new ReplyCacheProps(true, 100, Duration.ofMinutes(30)), new SimpleMeterRegistry());
+    private final AtomicInteger modelCalls = new AtomicInteger();
+
+    @Test
+    @DisplayName("given ответ модели закэширован when тот же запрос then модель не вызывается")
+    void given_cached_reply_when_same_key_then_model_not_called() {
+        String key = cache.keyOf("m", "Красное к стейку", null, List.of(1L), List.of());
+
+        assertThat(call(key, Mono.just("Бароло"))).isEqualTo("Бароло");
+        assertThat(call(key, Mono.just("другой ответ"))).isEqualTo("Бароло");
+        assertThat(modelCalls).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("given модель вернула пустой ответ when тот же запрос then заглушка не кэшируется и модель спрошена снова")
+    void given_empty_model_reply_when_same_key_then_not_cached() {
+        String key = cache.keyOf("m", "Белое к рыбе", null, List.of(2L), List.of());
+
+        assertThat(call(key, Mono.empty())).isEqualTo(FALLBACK);
+        assertThat(cache.get(key)).isEmpty();
+        assertThat(call(key, Mono.just("Шабли"))).isEqualTo("Шабли");
+        assertThat(modelCalls).hasValue(2);
+    }
+
+    /**
+     * Так же, как callLlm в SommelierServiceImpl: заглушка подставляется после кэша.
+     */
+    private String call(String key, Mono<String> modelReply) {
+        return cache.getOrCall(key, () -> {
+                    modelCalls.incrementAndGet();
+                    return modelReply;
+                })
+                .defaultIfEmpty(FALLBACK)
+                .block(Duration.ofSeconds(5));
+    }
+}
@@ -0,0 +1,42 @@
+package ru.topwine.assistant.service.catalog;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import ru.topwine.assistant.configuration.CatalogProps;
+import ru.topwine.assistant.model.wine.CatalogStats;
+import ru.topwine.assistant.repository.AvailableWinesRepository;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CatalogVersionTrackerTest {
+
+    private static final CatalogStats STATS = new CatalogStats(
+            3, 18, new BigDecimal("12000.00"), 6, OffsetDateTime.parse("2026-01-10T12:00:00Z"), 42L);
+
+    private final CatalogProps props = new CatalogProps(null, null, null, null);
+
+    @Test
+    @DisplayName("given тот же каталог when версию считают два процесса then ETag совпадает")
+    void given_same_catalog_when_two_trackers_then_same_etag() {
+        AvailableWinesRepository repository = Mockito.mock(AvailableWinesRepository.class);
+        Mockito.when(repository.fetchStats()).thenReturn(STATS);
+
+        String first = new CatalogVersionTracker(repository, props).current().etag();
+        String afterRestart = new CatalogVersionTracker(repository, props).current().etag();
+
+        assertThat(afterRestart).isEqualTo(first);
+    }
+
+    @Test
+    @DisplayName("given правка без смены updated_at и сумм when версия пересчитана then ETag другой")
+    void given_content_change_only_when_recomputed_then_etag_differs() {
+        CatalogStats renamed = new CatalogStats(STATS.rows(), STATS.bottles(), STATS.priceSum(),
+                STATS.stockIdSum(), STATS.lastUpdatedAt(), 43L);
+
+        assertThat(CatalogVersionTracker.etagOf(renamed)).isNotEqualTo(CatalogVersionTracker.etagOf(STATS));
+    }
+}
@@ -0,0 +1,61 @@
+package ru.topwine.assistant.service.catalog;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.topwine.assistant.model.PriceBucket;
+import ru.topwine.assistant.model.wine.AvailableWine;
+import ru.topwine.assistant.model.wine.AvailableWineFilter;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WineCatalogSnapshotTest {
+
+    private final WineCatalogSnapshot snapshot = WineCatalogSnapshot.of(List.of(
+            wine(1, "Кьянти Классико", "Италия", "Санджовезе", "red", 2019, 2900),
+            wine(2, "Бароло", "Италия", "Неббиоло", "red", 2017, 7800),
+            wine(3, "Шабли", "Франция", "Шардоне", "white", 2021, 3400),
+            wine(4, "Сансер", "Франция", "Совиньон Блан", "white", null, 4100),
+            wine(5, "Просекко", "Италия", "Глера", "sparkling", null, 1200),
+            wine(6, "Бургундия Руж", "Франция", "Пино Нуар", "Red", 2020, 5200)
+    ));
+
+    @Test
+    @DisplayName("given цвет и страна when search then точный цвет без учёта регистра, страна по вхождению, порядок по цене")
+    void given_color_and_country_when_search_then_sql_semantics() {
+        List<AvailableWine> found = snapshot.search(
+                new AvailableWineFilter(null, "RED", "франц", null, null, null, null, null, null), 10);
+
+        assertThat(found).extracting(AvailableWine::stockId).containsExactly(6L);
+    }
+
+    @Test
+    @DisplayName("given год и бюджет when search then позиции без года отсекаются, цена включительно")
+    void given_vintage_and_budget_when_search_then_nulls_excluded() {
+        List<AvailableWine> found = snapshot.search(
+                new AvailableWineFilter(null, null, null, null, null, null, 3400, 2018, null), 10);
+
+        assertThat(found).extracting(AvailableWine::stockId).containsExactly(1L, 3L);
+    }
+
+    @Test
+    @DisplayName("given ценовой план when searchBucketed then корзины по порядку плана, затем добор самыми дешёвыми")
+    void given_price_plan_when_search_bucketed_then_plan_order_then_top_up() {
+        List<PriceBucket> plan = List.of(
+                new PriceBucket(3000, 5000, 1),
+                new PriceBucket(null, 3000, 1)
+        );
+
+        List<AvailableWine> found = snapshot.searchBucketed(AvailableWineFilter.empty(), plan, 4);
+
+        assertThat(found).extracting(AvailableWine::stockId).containsExactly(3L, 5L, 1L, 4L);
+    }
+
+    private static AvailableWine wine(long id, String name, String country, String grape,
+                                      String color, Integer vintage, int price) {
+        return new AvailableWine(id, id, name, null, country, null, grape, color, vintage, 750,
+                null, 6, BigDecimal.valueOf(price), null, null, null, null, null);
+    }
+}
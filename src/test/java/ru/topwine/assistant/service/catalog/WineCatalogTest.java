@@ -0,0 +1,51 @@
+package ru.topwine.assistant.service.catalog;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import ru.topwine.assistant.configuration.CatalogProps;
+import ru.topwine.assistant.model.wine.AvailableWine;
+import ru.topwine.assistant.repository.AvailableWinesRepository;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WineCatalogTest {
+
+    private final AvailableWinesRepository availableWinesRepository = Mockito.mock(AvailableWinesRepository.class);
+    private final WineCatalog catalog = new WineCatalog(
+            availableWinesRepository,
+            new CatalogProps(CatalogProps.SearchMode.MEMORY, Duration.ofMinutes(30), CatalogProps.WineSource.VIEW, null),
+            new SimpleMeterRegistry());
+
+    @Test
+    @DisplayName("given вина в БД when приложение запущено then снимок загружен сразу, а не по расписанию")
+    void given_wines_in_db_when_application_ready_then_snapshot_loaded() {
+        Mockito.when(availableWinesRepository.findAllAvailable()).thenReturn(List.of(wine(1, "Бароло")));
+
+        catalog.loadOnStartup();
+
+        assertThat(catalog.snapshot()).map(WineCatalogSnapshot::size).contains(1);
+        Mockito.verify(availableWinesRepository, Mockito.times(1)).findAllAvailable();
+    }
+
+    @Test
+    @DisplayName("given первая загрузка не удалась when повтор раньше паузы then в БД не ходим")
+    void given_initial_load_failed_when_retried_early_then_no_db_call() {
+        Mockito.when(availableWinesRepository.findAllAvailable()).thenThrow(new IllegalStateException("БД недоступна"));
+
+        assertThat(catalog.snapshot()).isEmpty();
+        assertThat(catalog.snapshot()).isEmpty();
+
+        Mockito.verify(availableWinesRepository, Mockito.times(1)).findAllAvailable();
+    }
+
+    private static AvailableWine wine(long id, String name) {
+        return new AvailableWine(id, id, name, null, "Италия", null, "Неббиоло", "red", 2017, 750,
+                null, 6, BigDecimal.valueOf(7800), null, null, null, null, null);
+    }
+}
@@ -0,0 +1,91 @@
+package ru.topwine.assistant.service.pairing;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import ru.topwine.assistant.configuration.PairingProps;
+import ru.topwine.assistant.model.DishContext;
+import ru.topwine.assistant.model.change.DataChangeEvent;
+import ru.topwine.assistant.model.enums.ChangedTable;
+import ru.topwine.assistant.model.menu.MenuDish;
+import ru.topwine.assistant.model.wine.AvailableWine;
+import ru.topwine.assistant.model.wine.AvailableWineFilter;
+import ru.topwine.assistant.repository.AvailableWinesRepository;
+import ru.topwine.assistant.service.DishContextService;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+
+class DishPairingMatrixTest {
+
+    private static final MenuDish STEAK = new MenuDish(11L, 3L, "Стейк рибай", null, new BigDecimal("2400"), true);
+    private static final DishContext STEAK_CONTEXT = new DishContext(STEAK, null, List.of(), AvailableWineFilter.empty());
+
+    private final DishContextService dishContextService = Mockito.mock(DishContextService.class);
+    private final AvailableWinesRepository availableWinesRepository = Mockito.mock(AvailableWinesRepository.class);
+    private final GroundingWineSelector groundingWineSelector = Mockito.mock(GroundingWineSelector.class);
+
+    private final DishPairingMatrix matrix = new DishPairingMatrix(
+            dishContextService, availableWinesRepository, groundingWineSelector,
+            new PairingProps(true, null, null), new SimpleMeterRegistry());
+
+    @Test
+    @DisplayName("given пара посчитана when закончился показанный в ней остаток then пара сразу убрана и пересчитана в фоне")
+    void given_precomputed_pairing_when_shown_stock_changes_then_dropped_and_recomputed() throws InterruptedException {
+        Mockito.when(dishContextService.findAllActive()).thenReturn(List.of(STEAK_CONTEXT));
+        Mockito.when(dishContextService.findActiveByDishIds(anyCollection())).thenReturn(List.of(STEAK_CONTEXT));
+        Mockito.when(groundingWineSelector.selectFromDatabase(any()))
+                .thenReturn(List.of(wine(1L, "Бароло"), wine(2L, "Кьянти")))
+                .thenReturn(List.of(wine(2L, "Кьянти")));
+
+        matrix.rebuildAll();
+        assertThat(matrix.get(STEAK.id())).map(p -> p.wines().size()).contains(2);
+
+        matrix.onDataChange(new DataChangeEvent(ChangedTable.WINE_STOCK, DataChangeEvent.Operation.UPDATE, 1L));
+        assertThat(matrix.get(STEAK.id())).isEmpty();
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (matrix.get(STEAK.id()).isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(matrix.get(STEAK.id())).map(p -> p.wines().stream().map(AvailableWine::stockId).toList())
+                .contains(List.of(2L));
+    }
+
+    @Test
+    @DisplayName("given пересборка посчитана до изменения остатка when пара записана после события then она всё равно пересчитана")
+    void given_rebuild_computed_before_stock_change_when_put_after_event_then_recomputed() throws InterruptedException {
+        Mockito.when(dishContextService.findAllActive()).thenReturn(List.of(STEAK_CONTEXT));
+        Mockito.when(dishContextService.findActiveByDishIds(anyCollection())).thenReturn(List.of(STEAK_CONTEXT));
+        // закончившийся остаток из витрины уже пропал
+        Mockito.when(availableWinesRepository.findByStockIds(anyCollection())).thenReturn(List.of());
+        Mockito.when(groundingWineSelector.selectFromDatabase(any()))
+                .thenReturn(List.of(wine(1L, "Бароло"), wine(2L, "Кьянти")))
+                .thenReturn(List.of(wine(2L, "Кьянти")));
+
+        // событие успело почистить пустую матрицу, а пересборка записала пару с остатком 1 уже после него
+        matrix.onDataChange(new DataChangeEvent(ChangedTable.WINE_STOCK, DataChangeEvent.Operation.UPDATE, 1L));
+        matrix.rebuildAll();
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (shownStockIds().contains(1L) && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(shownStockIds()).containsExactly(2L);
+    }
+
+    private List<Long> shownStockIds() {
+        return matrix.get(STEAK.id()).map(p -> p.wines().stream().map(AvailableWine::stockId).toList()).orElse(List.of());
+    }
+
+    private static AvailableWine wine(long stockId, String name) {
+        return new AvailableWine(stockId, stockId, name, null, "Италия", null, "Неббиоло", "red", 2018, 750,
+                null, 6, BigDecimal.valueOf(3000), null, null, null, null, null);
+    }
+}
@@ -0,0 +1,56 @@
+package ru.topwine.assistant.service.pairing;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import ru.topwine.assistant.model.change.DataChangeEvent;
+import ru.topwine.assistant.model.enums.ChangedTable;
+import ru.topwine.assistant.model.menu.DishWineFilter;
+import ru.topwine.assistant.model.wine.AvailableWineFilter;
+import ru.topwine.assistant.repository.DishWineFilterRepository;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+
+class DishWineFilterCacheTest {
+
+    private static final AvailableWineFilter RED = new AvailableWineFilter(null, "red", null, null, null, null, null, null, null);
+    private static final AvailableWineFilter WHITE = new AvailableWineFilter(null, "white", null, null, null, null, null, null, null);
+
+    private final DishWineFilterRepository repository = Mockito.mock(DishWineFilterRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DishWineFilterCache cache = new DishWineFilterCache(repository, meterRegistry);
+
+    @Test
+    @DisplayName("given фильтры в БД when загрузка при старте then кэш заполнен и запрос гостя в БД не ходит")
+    void given_filters_in_db_when_loaded_on_startup_then_cache_filled_without_per_request_reads() {
+        Mockito.when(repository.findAll()).thenReturn(List.of(new DishWineFilter(11L, RED)));
+
+        cache.loadOnStartup();
+
+        assertThat(meterRegistry.get("pairing.dish_filters.size").gauge().value()).isEqualTo(1.0);
+        assertThat(cache.forDish(11L)).isEqualTo(RED);
+        assertThat(cache.forDish(12L)).isEqualTo(AvailableWineFilter.empty());
+        Mockito.verify(repository, Mockito.times(1)).findAll();
+        Mockito.verify(repository, Mockito.never()).findByDishId(any());
+    }
+
+    @Test
+    @DisplayName("given кэш загружен when фильтр блюда изменился then перечитывается только это блюдо")
+    void given_cache_loaded_when_dish_filter_changes_then_only_that_dish_reread() {
+        Mockito.when(repository.findAll()).thenReturn(List.of(new DishWineFilter(11L, RED)));
+        Mockito.when(repository.findByDishId(11L)).thenReturn(Optional.of(new DishWineFilter(11L, WHITE)));
+        cache.loadOnStartup();
+
+        cache.onDataChange(new DataChangeEvent(ChangedTable.DISH_WINE_FILTER, DataChangeEvent.Operation.UPDATE, 11L));
+
+        assertThat(cache.forDish(11L)).isEqualTo(WHITE);
+        assertThat(cache.forDish(11L)).isEqualTo(WHITE);
+        Mockito.verify(repository, Mockito.times(1)).findByDishId(11L);
+        Mockito.verify(repository, Mockito.times(1)).findAll();
+    }
+}
@@ -0,0 +1,151 @@
+package ru.topwine.assistant.service.prompt;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.topwine.assistant.configuration.PromptBudgetProps;
+import ru.topwine.assistant.model.enums.UserRequestType;
+import ru.topwine.assistant.service.prompt.PromptBudgeter.BudgetedPrompt;
+import ru.topwine.assistant.service.prompt.PromptBudgeter.PromptEntry;
+import ru.topwine.assistant.service.prompt.PromptBudgeter.StablePrefix;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static ru.topwine.assistant.service.prompt.PromptBudgeter.MENU_HEADER;
+import static ru.topwine.assistant.service.prompt.PromptBudgeter.STABLE_MENU_HEADER;
+import static ru.topwine.assistant.service.prompt.PromptBudgeter.WINES_HEADER;
+import static ru.topwine.assistant.service.prompt.PromptBudgeter.estimateTokens;
+
+class PromptBudgeterTest {
+
+    private static final String USER_MESSAGE = "wine";
+    private static final int MIN_WINES = 2;
+    // строка занимает 100 токенов в полном виде и 10 в сжатом, плюс 1 на перевод строки
+    private static final int FULL = 101;
+    private static final int COMPACT = 11;
+
+    private static final List<PromptEntry> MENU = entries("m", 3);
+    private static final List<PromptEntry> WINES = entries("w", 3);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    @DisplayName("given промпт ровно в бюджет when сборка then ничего не ужато и счётчик сокращений не тронут")
+    void given_prompt_exactly_at_budget_when_assemble_then_nothing_trimmed() {
+        int budget = fixedTokens() + estimateTokens(MENU_HEADER) + 3 * FULL + estimateTokens(WINES_HEADER) + 3 * FULL;
+
+        BudgetedPrompt prompt = assemble(budget);
+
+        assertThat(prompt.estimatedTokens()).isEqualTo(budget);
+        assertThat(prompt.menuKept()).isEqualTo(3);
+        assertThat(prompt.winesKept()).isEqualTo(3);
+        assertThat(prompt.systemBlock()).contains(MENU.get(2).full(), WINES.get(2).full());
+        assertThat(meterRegistry.find("llm.prompt.trimmed").counter()).isNull();
+    }
+
+    @Test
+    @DisplayName("given бюджет на токен меньше when сборка then первым сжимается меню, вина остаются полными")
+    void given_budget_one_token_short_when_assemble_then_menu_compacted_first() {
+        int budget = fixedTokens() + estimateTokens(MENU_HEADER) + 3 * FULL + estimateTokens(WINES_HEADER) + 3 * FULL - 1;
+
+        BudgetedPrompt prompt = assemble(budget);
+
+        assertThat(prompt.menuKept()).isEqualTo(3);
+        assertThat(prompt.systemBlock()).contains(MENU.get(0).compact()).doesNotContain(MENU.get(0).full());
+        assertThat(prompt.winesKept()).isEqualTo(3);
+        assertThat(prompt.systemBlock()).contains(WINES.get(0).full());
+        assertThat(prompt.estimatedTokens()).isLessThanOrEqualTo(budget);
+        assertThat(meterRegistry.get("llm.prompt.trimmed").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("given места нет и для сжатого меню when сборка then блюда убираются с конца раньше, чем сжимаются вина")
+    void given_no_room_for_compact_menu_when_assemble_then_dishes_dropped_from_end_before_wines() {
+        int budget = fixedTokens() + estimateTokens(MENU_HEADER) + COMPACT + estimateTokens(WINES_HEADER) + 3 * FULL;
+
+        BudgetedPrompt prompt = assemble(budget);
+
+        assertThat(prompt.menuKept()).isEqualTo(1);
+        assertThat(prompt.systemBlock()).contains(MENU.get(0).compact()).doesNotContain(MENU.get(1).compact());
+        assertThat(prompt.winesKept()).isEqualTo(3);
+        assertThat(prompt.systemBlock()).contains(WINES.get(2).full());
+        assertThat(prompt.estimatedTokens()).isEqualTo(budget);
+    }
+
+    @Test
+    @DisplayName("given меню уже убрано when всё ещё не влезает then вина сжимаются и убираются с конца")
+    void given_menu_gone_when_still_over_budget_then_wines_compacted_and_dropped_from_end() {
+        int budget = fixedTokens() + estimateTokens(WINES_HEADER) + MIN_WINES * COMPACT;
+
+        BudgetedPrompt prompt = assemble(budget);
+
+        assertThat(prompt.menuKept()).isZero();
+        assertThat(prompt.systemBlock()).doesNotContain(MENU_HEADER);
+        assertThat(prompt.winesKept()).isEqualTo(MIN_WINES);
+        assertThat(prompt.systemBlock()).contains(WINES.get(1).compact()).doesNotContain(WINES.get(2).compact());
+        assertThat(prompt.estimatedTokens()).isEqualTo(budget);
+    }
+
+    @Test
+    @DisplayName("given бюджет меньше минимума вин when сборка then minWines сохраняется, даже если бюджет превышен")
+    void given_budget_below_min_wines_when_assemble_then_min_wines_kept_over_budget() {
+        BudgetedPrompt prompt = assemble(fixedTokens());
+
+        assertThat(prompt.winesKept()).isEqualTo(MIN_WINES);
+        assertThat(prompt.menuKept()).isZero();
+        assertThat(prompt.estimatedTokens()).isGreaterThan(prompt.budgetTokens());
+    }
+
+    @Test
+    @DisplayName("given потолок префикса when стабильный префикс then меню ужато одинаково на каждом вызове, а префикс занимает бюджет")
+    void given_prefix_cap_when_stable_prefix_then_deterministic_and_counted_in_budget() {
+        int prefixFixed = new PromptBudgeter(props(10_000, 10_000), meterRegistry).stablePrefix("s", List.of()).tokens();
+        int cap = prefixFixed + estimateTokens(STABLE_MENU_HEADER) + 2 * COMPACT;
+        PromptBudgeter budgeter = new PromptBudgeter(props(10_000, cap), meterRegistry);
+
+        StablePrefix prefix = budgeter.stablePrefix("s", MENU);
+
+        assertThat(prefix.menuKept()).isEqualTo(2);
+        assertThat(prefix.tokens()).isEqualTo(cap);
+        assertThat(prefix.text()).contains(MENU.get(1).compact()).doesNotContain(MENU.get(2).compact());
+        assertThat(budgeter.stablePrefix("s", MENU)).isEqualTo(prefix);
+
+        int afterPrefix = budgeter.assembleAfterCachedPrefix(
+                UserRequestType.GENERAL, new StablePrefix("", 0, 0), USER_MESSAGE, "", List.of()).estimatedTokens();
+        int budget = prefix.tokens() + afterPrefix + estimateTokens(WINES_HEADER) + 3 * FULL;
+        BudgetedPrompt fits = new PromptBudgeter(props(budget, cap), meterRegistry)
+                .assembleAfterCachedPrefix(UserRequestType.GENERAL, prefix, USER_MESSAGE, "", WINES);
+        BudgetedPrompt tight = new PromptBudgeter(props(budget - 1, cap), meterRegistry)
+                .assembleAfterCachedPrefix(UserRequestType.GENERAL, prefix, USER_MESSAGE, "", WINES);
+
+        assertThat(fits.estimatedTokens()).isEqualTo(budget);
+        assertThat(fits.systemBlock()).contains(WINES.get(0).full()).doesNotContain(MENU.get(0).compact());
+        assertThat(tight.systemBlock()).contains(WINES.get(0).compact());
+    }
+
+    private BudgetedPrompt assemble(int budget) {
+        return new PromptBudgeter(props(budget, 10_000), meterRegistry)
+                .assemble(UserRequestType.GENERAL, "", USER_MESSAGE, "", MENU, WINES);
+    }
+
+    /**
+     * Сообщение гостя и служебные токены — то, что остаётся в промпте при пустых списках.
+     */
+    private int fixedTokens() {
+        return new PromptBudgeter(props(10_000, 10_000), new SimpleMeterRegistry())
+                .assemble(UserRequestType.GENERAL, "", USER_MESSAGE, "", List.of(), List.of())
+                .estimatedTokens();
+    }
+
+    private static PromptBudgetProps props(int budget, int stablePrefixTokens) {
+        return new PromptBudgetProps(true, budget, null, MIN_WINES, stablePrefixTokens);
+    }
+
+    private static List<PromptEntry> entries(String prefix, int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new PromptEntry(prefix + i + "x".repeat(398), prefix + i + "y".repeat(38)))
+                .toList();
+    }
+}
@@ -0,0 +1,126 @@
+package ru.topwine.assistant.service.recognition;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import ru.topwine.assistant.model.enums.UserRequestType;
+import ru.topwine.assistant.model.menu.MenuDish;
+import ru.topwine.assistant.model.menu.MenuSection;
+import ru.topwine.assistant.model.util.UserRequest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecognizerModelTest {
+
+    private static final List<MenuSection> SECTIONS = List.of(
+            new MenuSection(1L, "Закуски", 1, true),
+            new MenuSection(2L, "Супы", 2, true),
+            new MenuSection(3L, "Горячие блюда", 3, true)
+    );
+
+    private static final MenuDish TOM_YUM = dish(10L, 2L, "Суп том ям");
+    private static final MenuDish RIBEYE = dish(11L, 3L, "Стейк рибай");
+
+    private final RecognizerModel model = RecognizerModel.compile(
+            SECTIONS, List.of(TOM_YUM, RIBEYE), List.of("Санджовезе, Мерло", "Неббиоло"));
+
+    @Test
+    @DisplayName("given меню и каталог when распознавание then тип и сущность находятся за один проход")
+    void given_menu_and_catalog_when_recognize_then_type_and_entity_found() {
+        assertThat(model.recognize("Сколько стоит второе?").type()).isEqualTo(UserRequestType.PRICE);
+
+        UserRequest section = model.recognize("Что взять к горячему?");
+        assertThat(section.type()).isEqualTo(UserRequestType.SECTION);
+        assertThat(section.sectionName()).isEqualTo("Горячие блюда");
+
+        UserRequest dish = model.recognize("Хочу суп том ям");
+        assertThat(dish.type()).isEqualTo(UserRequestType.DISH);
+        assertThat(dish.dish()).isEqualTo(TOM_YUM);
+
+        assertThat(model.recognize("Есть что-то из неббиоло?").type()).isEqualTo(UserRequestType.WINE_NAME);
+        assertThat(model.recognize("Посоветуйте что-нибудь").type()).isEqualTo(UserRequestType.GENERAL);
+        // «бел» — основа слова, а не подстрока: «колбеле» не считается упоминанием белого вина
+        assertThat(model.recognize("колбеле").type()).isEqualTo(UserRequestType.GENERAL);
+    }
+
+    /**
+     * Запуск: ./gradlew test --tests '*RecognizerModelTest*' -Dbenchmark=true (build.gradle пробрасывает свойство в JVM тестов).
+     * Прежний способ воспроизведён без БД: поиск блюда по точному названию заменён обращением к HashMap,
+     * так что его реальная стоимость выше на сетевой запрос к PostgreSQL.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    @DisplayName("benchmark: скомпилированный распознаватель против цепочки regex/contains")
+    void benchmark_compiled_recognizer_vs_legacy_chain() {
+        List<MenuDish> dishes = new ArrayList<>();
+        for (long i = 0; i < 300; i++) {
+            dishes.add(dish(100 + i, 1 + i % 3, "Блюдо номер " + i));
+        }
+        dishes.add(RIBEYE);
+        RecognizerModel big = RecognizerModel.compile(SECTIONS, dishes, List.of("Санджовезе", "Мерло", "Пино нуар"));
+        Map<String, MenuDish> byExactName = dishes.stream().collect(Collectors.toMap(MenuDish::name, Function.identity()));
+
+        List<String> messages = List.of(
+                "Посоветуйте красное к стейку", "Сколько они стоят?", "Что к десерту?",
+                "Стейк рибай", "Хочу что-нибудь лёгкое на вечер", "Есть пино нуар?"
+        );
+
+        int warmup = 200_000;
+        int iterations = 1_000_000;
+        long sink = 0;
+        for (int i = 0; i < warmup; i++) {
+            String m = messages.get(i % messages.size());
+            sink += big.recognize(m).type().ordinal() + legacy(m, byExactName).ordinal();
+        }
+
+        long legacyStart = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += legacy(messages.get(i % messages.size()), byExactName).ordinal();
+        }
+        long legacyNanos = System.nanoTime() - legacyStart;
+
+        long compiledStart = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += big.recognize(messages.get(i % messages.size())).type().ordinal();
+        }
+        long compiledNanos = System.nanoTime() - compiledStart;
+
+        assertThat(compiledNanos)
+                .as("recognizer: legacy=%d ns/op (без запроса к БД), compiled=%d ns/op, sink=%d",
+                        legacyNanos / iterations, compiledNanos / iterations, sink)
+                .isLessThan(legacyNanos);
+    }
+
+    private static UserRequestType legacy(String userMessage, Map<String, MenuDish> byExactName) {
+        String text = userMessage.trim();
+        String lowered = text.toLowerCase(Locale.forLanguageTag("ru-RU"));
+        if (lowered.matches(".*\\b(цена|сто(ит|ят)|почем|почём|сколько.*стои(т|тся|тят)|сколько.*они.*стоят)\\b.*")) {
+            return UserRequestType.PRICE;
+        }
+        if (lowered.contains("закуск") || lowered.contains("стартер") || lowered.contains("суп")
+            || lowered.contains("горяч") || lowered.contains("основ") || lowered.contains("десерт")) {
+            return UserRequestType.SECTION;
+        }
+        if (byExactName.containsKey(text)) {
+            return UserRequestType.DISH;
+        }
+        if (lowered.contains("каберне") || lowered.contains("мерло") || lowered.contains("пино")
+            || lowered.contains("рислинг") || lowered.contains("шардоне") || lowered.contains("красн")
+            || lowered.contains("бел") || lowered.contains("розе") || lowered.contains("игрист")) {
+            return UserRequestType.WINE_NAME;
+        }
+        return UserRequestType.GENERAL;
+    }
+
+    private static MenuDish dish(Long id, Long sectionId, String name) {
+        return new MenuDish(id, sectionId, name, null, new BigDecimal("990"), true);
+    }
+}
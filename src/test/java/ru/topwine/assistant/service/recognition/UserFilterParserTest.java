@@ -0,0 +1,54 @@
+package ru.topwine.assistant.service.recognition;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import ru.topwine.assistant.model.change.DataChangeEvent;
+import ru.topwine.assistant.model.enums.ChangedTable;
+import ru.topwine.assistant.model.wine.AvailableWineFilter;
+import ru.topwine.assistant.repository.AvailableWinesRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserFilterParserTest {
+
+    private final AvailableWinesRepository availableWinesRepository = Mockito.mock(AvailableWinesRepository.class);
+    private final UserFilterParser parser = new UserFilterParser(availableWinesRepository);
+
+    @Test
+    @DisplayName("given справочник каталога when первый разбор then справочник собран и страна, регион и сорт в фильтре")
+    void given_catalog_when_first_parse_then_gazetteer_built_and_fields_filled() {
+        Mockito.when(availableWinesRepository.findDistinctCountries()).thenReturn(List.of("Италия"));
+        Mockito.when(availableWinesRepository.findDistinctRegions()).thenReturn(List.of("Тоскана"));
+        Mockito.when(availableWinesRepository.findDistinctGrapeVarieties()).thenReturn(List.of("Санджовезе"));
+
+        AvailableWineFilter filter = parser.parse("Красное тосканское из санджовезе, что-нибудь итальянское");
+
+        assertThat(filter.color()).isEqualTo("red");
+        assertThat(filter.country()).isEqualTo("Италия");
+        assertThat(filter.region()).isEqualTo("Тоскана");
+        assertThat(filter.grape()).isEqualTo("Санджовезе");
+        parser.parse("итальянское");
+        Mockito.verify(availableWinesRepository, Mockito.times(1)).findDistinctCountries();
+    }
+
+    @Test
+    @DisplayName("given каталог недоступен when разбор then только цвет, а после изменения вин справочник собирается")
+    void given_catalog_unavailable_when_parse_then_lexicon_only_and_rebuilt_after_change() {
+        Mockito.when(availableWinesRepository.findDistinctRegions()).thenReturn(List.of());
+        Mockito.when(availableWinesRepository.findDistinctGrapeVarieties()).thenReturn(List.of());
+        Mockito.when(availableWinesRepository.findDistinctCountries())
+                .thenThrow(new IllegalStateException("БД недоступна"))
+                .thenReturn(List.of("Италия"));
+
+        AvailableWineFilter fallback = parser.parse("красное итальянское");
+        assertThat(fallback.color()).isEqualTo("red");
+        assertThat(fallback.country()).isNull();
+
+        parser.onDataChange(new DataChangeEvent(ChangedTable.WINE_ITEM, DataChangeEvent.Operation.UPDATE, 1L));
+
+        assertThat(parser.parse("красное итальянское").country()).isEqualTo("Италия");
+    }
+}
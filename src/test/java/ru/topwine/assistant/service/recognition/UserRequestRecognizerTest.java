@@ -0,0 +1,66 @@
+package ru.topwine.assistant.service.recognition;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import ru.topwine.assistant.model.change.DataChangeEvent;
+import ru.topwine.assistant.model.enums.ChangedTable;
+import ru.topwine.assistant.model.enums.UserRequestType;
+import ru.topwine.assistant.model.menu.MenuDish;
+import ru.topwine.assistant.model.menu.MenuSection;
+import ru.topwine.assistant.model.util.UserRequest;
+import ru.topwine.assistant.repository.AvailableWinesRepository;
+import ru.topwine.assistant.service.MenuDishService;
+import ru.topwine.assistant.service.MenuSectionService;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserRequestRecognizerTest {
+
+    private static final MenuDish TOM_YUM = new MenuDish(10L, 2L, "Суп том ям", null, new BigDecimal("990"), true);
+
+    private final MenuSectionService menuSectionService = Mockito.mock(MenuSectionService.class);
+    private final MenuDishService menuDishService = Mockito.mock(MenuDishService.class);
+    private final AvailableWinesRepository availableWinesRepository = Mockito.mock(AvailableWinesRepository.class);
+
+    private final UserRequestRecognizer recognizer =
+            new UserRequestRecognizer(menuSectionService, menuDishService, availableWinesRepository);
+
+    @Test
+    @DisplayName("given блюдо в меню when первое распознавание then модель собрана из репозиториев и блюдо найдено")
+    void given_dish_in_menu_when_first_recognize_then_model_built_and_dish_found() {
+        Mockito.when(menuSectionService.activeSections()).thenReturn(List.of(new MenuSection(2L, "Супы", 2, true)));
+        Mockito.when(menuDishService.findAllActive()).thenReturn(List.of(TOM_YUM));
+        Mockito.when(availableWinesRepository.findDistinctGrapeVarieties()).thenReturn(List.of("Неббиоло"));
+
+        UserRequest request = recognizer.recognize("Хочу суп том ям");
+
+        assertThat(request.type()).isEqualTo(UserRequestType.DISH);
+        assertThat(request.dish()).isEqualTo(TOM_YUM);
+        // второй запрос идёт по уже собранной модели
+        recognizer.recognize("Хочу суп том ям");
+        Mockito.verify(menuDishService, Mockito.times(1)).findAllActive();
+    }
+
+    @Test
+    @DisplayName("given меню недоступно when распознавание then встроенные словари, а после изменения меню модель собирается")
+    void given_menu_unavailable_when_recognize_then_lexicon_and_rebuilt_after_change() {
+        Mockito.when(menuSectionService.activeSections()).thenReturn(List.of());
+        Mockito.when(availableWinesRepository.findDistinctGrapeVarieties()).thenReturn(List.of());
+        Mockito.when(menuDishService.findAllActive())
+                .thenThrow(new IllegalStateException("БД недоступна"))
+                .thenReturn(List.of(TOM_YUM));
+
+        assertThat(recognizer.recognize("Хочу суп том ям").type()).isNotEqualTo(UserRequestType.DISH);
+        // повтор раньше 30 секунд в БД не ходит
+        recognizer.recognize("Хочу суп том ям");
+        Mockito.verify(menuDishService, Mockito.times(1)).findAllActive();
+
+        recognizer.onDataChange(new DataChangeEvent(ChangedTable.MENU_DISH, DataChangeEvent.Operation.UPDATE, 10L));
+
+        assertThat(recognizer.recognize("Хочу суп том ям").dish()).isEqualTo(TOM_YUM);
+    }
+}
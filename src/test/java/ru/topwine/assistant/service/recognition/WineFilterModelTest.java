@@ -0,0 +1,70 @@
+package ru.topwine.assistant.service.recognition;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import ru.topwine.assistant.model.wine.AvailableWineFilter;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WineFilterModelTest {
+
+    private final WineFilterModel model = WineFilterModel.compile(
+            List.of("Италия", "Франция", "Германия", "Австрия", "Австралия", "Чили"),
+            List.of("Тоскана", "Бургундия", "Шампань"),
+            List.of("Санджовезе, Мерло", "Пино нуар", "Рислинг"));
+
+    @Test
+    @DisplayName("given справочник каталога when названия в косвенных падежах и прилагательные then поля фильтра заполнены")
+    void given_catalog_gazetteer_when_inflected_names_then_filter_fields_filled() {
+        AvailableWineFilter tuscan = model.parse("Хочу красное тосканское из санджовезе, что-нибудь итальянское");
+        assertThat(tuscan.color()).isEqualTo("red");
+        assertThat(tuscan.country()).isEqualTo("Италия");
+        assertThat(tuscan.region()).isEqualTo("Тоскана");
+        assertThat(tuscan.grape()).isEqualTo("Санджовезе");
+
+        assertThat(model.parse("Есть немецкий рислинг?").country()).isEqualTo("Германия");
+        // из пересекающихся основ побеждает более длинная
+        assertThat(model.parse("австралийское").country()).isEqualTo("Австралия");
+        assertThat(model.parse("австрийское").country()).isEqualTo("Австрия");
+
+        AvailableWineFilter champagne = model.parse("бутылку шампанского");
+        assertThat(champagne.color()).isEqualTo("sparkling");
+        assertThat(champagne.region()).isEqualTo("Шампань");
+
+        // два разных значения одного поля — фильтр по нему не ставим
+        assertThat(model.parse("Италия или Франция").country()).isNull();
+    }
+
+    @Test
+    @DisplayName("given текст с числами when диапазоны цены и года then границы разобраны и цена не путается с годом")
+    void given_numbers_when_price_and_vintage_ranges_then_bounds_parsed() {
+        AvailableWineFilter range = model.parse("белое от 2000 до 4000 рублей");
+        assertThat(range.minPriceRub()).isEqualTo(2000);
+        assertThat(range.maxPriceRub()).isEqualTo(4000);
+        assertThat(range.minVintageYear()).isNull();
+
+        AvailableWineFilter thousands = model.parse("2–3 тыс., урожая 2015–2018 годов");
+        assertThat(thousands.minPriceRub()).isEqualTo(2000);
+        assertThat(thousands.maxPriceRub()).isEqualTo(3000);
+        assertThat(thousands.minVintageYear()).isEqualTo(2015);
+        assertThat(thousands.maxVintageYear()).isEqualTo(2018);
+
+        AvailableWineFilter bounds = model.parse("не дороже 3 500 ₽, не старше 2019 года");
+        assertThat(bounds.minPriceRub()).isNull();
+        assertThat(bounds.maxPriceRub()).isEqualTo(3500);
+        assertThat(bounds.minVintageYear()).isEqualTo(2019);
+        assertThat(bounds.maxVintageYear()).isNull();
+
+        AvailableWineFilter budget = model.parse("что-нибудь за 1500р");
+        assertThat(budget.maxPriceRub()).isEqualTo(1500);
+        assertThat(budget.minPriceRub()).isNull();
+
+        assertThat(model.parse("дороже 5000").minPriceRub()).isEqualTo(5000);
+
+        // отдельное «к» — предлог, множитель только вплотную к числу
+        assertThat(model.parse("красное до 900 к стейку").maxPriceRub()).isEqualTo(900);
+        assertThat(model.parse("бюджет до 5к").maxPriceRub()).isEqualTo(5000);
+    }
+}
@@ -0,0 +1,122 @@
+package ru.topwine.assistant.service.session.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import ru.topwine.assistant.model.session.ConversationContext;
+import ru.topwine.assistant.model.session.ConversationTurn;
+import ru.topwine.assistant.model.wine.AvailableWineFilter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RedisConversationStoreTest {
+
+    private static final List<String> KEYS = List.of("conv:v2:{guest-1}:u", "conv:v2:{guest-1}:a", "conv:v2:{guest-1}:s");
+    private static final AvailableWineFilter RED = new AvailableWineFilter(null, "red", null, null, null, null, 3000, null, null);
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final FakeRedis redis = new FakeRedis();
+    private final RedisConversationStore store = new RedisConversationStore(redis, objectMapper);
+
+    @Test
+    @DisplayName("given обмен репликами when append then один скрипт по трём ключам клиента с лимитом истории и TTL")
+    void given_turn_when_append_then_single_script_with_cap_and_ttl() throws Exception {
+        store.append("guest-1", new ConversationTurn("Красное до 3000", "Советую Кьянти", List.of(7L, 9L), List.of(11L), RED));
+
+        assertThat(redis.calls).hasSize(1);
+        Call call = redis.calls.getFirst();
+        assertThat(call.keys()).isEqualTo(KEYS);
+        assertThat(call.script().getScriptAsString()).contains("RPUSH", "LTRIM", "PEXPIRE", "'PX'");
+        assertThat(call.args()).hasSize(5);
+        assertThat(call.args()[0]).isEqualTo("Красное до 3000");
+        assertThat(call.args()[1]).isEqualTo("Советую Кьянти");
+        assertThat(call.args()[3]).isEqualTo("10");
+        assertThat(call.args()[4]).isEqualTo(String.valueOf(Duration.ofMinutes(40).toMillis()));
+
+        JsonNode shown = objectMapper.readTree((String) call.args()[2]);
+        assertThat(shown.path("wineStockIds").toString()).isEqualTo("[7,9]");
+        assertThat(shown.path("dishIds").toString()).isEqualTo("[11]");
+        assertThat(shown.path("filter").path("color").asText()).isEqualTo("red");
+    }
+
+    @Test
+    @DisplayName("given пустые реплики when append then скрипт получает пустые строки и в историю их не дописывает")
+    void given_blank_messages_when_append_then_empty_args_and_empty_lists_for_nulls() throws Exception {
+        store.append("guest-1", new ConversationTurn("  ", null, null, null, null));
+
+        Call call = redis.calls.getFirst();
+        assertThat(call.args()[0]).isEqualTo("");
+        assertThat(call.args()[1]).isEqualTo("");
+        JsonNode shown = objectMapper.readTree((String) call.args()[2]);
+        assertThat(shown.path("wineStockIds").toString()).isEqualTo("[]");
+        assertThat(shown.path("dishIds").toString()).isEqualTo("[]");
+    }
+
+    @Test
+    @DisplayName("given история и показанное в Redis when get then контекст собран из трёх ключей")
+    void given_stored_keys_when_get_then_context_rebuilt() {
+        store.append("guest-1", new ConversationTurn("Красное до 3000", "Советую Кьянти", List.of(7L, 9L), List.of(11L), RED));
+        String shownJson = (String) redis.calls.getFirst().args()[2];
+        redis.readResult = List.of(List.of("Привет", "Красное до 3000"), List.of("Советую Кьянти"), shownJson);
+
+        Optional<ConversationContext> context = store.get("guest-1");
+
+        assertThat(redis.calls.getLast().keys()).isEqualTo(KEYS);
+        assertThat(context).hasValueSatisfying(c -> {
+            assertThat(c.recentUserMessages()).containsExactly("Привет", "Красное до 3000");
+            assertThat(c.recentAssistantReplies()).containsExactly("Советую Кьянти");
+            assertThat(c.lastShownWineStockIds()).containsExactly(7L, 9L);
+            assertThat(c.lastShownDishIds()).containsExactly(11L);
+            assertThat(c.lastUsedFilter()).isEqualTo(RED);
+            assertThat(c.updatedAt()).isNotNull();
+        });
+    }
+
+    @Test
+    @DisplayName("given нет показанного или оно испорчено when get then пусто, испорченный диалог удаляется")
+    void given_missing_or_broken_shown_when_get_then_empty_and_broken_cleared() {
+        // GET вернул nil — в Lua он обрывает таблицу, и в ответе остаются только два списка
+        redis.readResult = List.of(List.of("Привет"), List.of());
+        assertThat(store.get("guest-1")).isEmpty();
+        assertThat(redis.deleted).isEmpty();
+
+        redis.readResult = List.of(List.of("Привет"), List.of(), "{не json");
+        assertThat(store.get("guest-1")).isEmpty();
+        assertThat(redis.deleted).containsExactlyElementsOf(KEYS);
+    }
+
+    private record Call(RedisScript<?> script, List<String> keys, Object[] args) {
+    }
+
+    /**
+     * Вместо Redis: запоминает вызовы скриптов и удаления, на чтение отдаёт заготовленный ответ.
+     */
+    private static final class FakeRedis extends StringRedisTemplate {
+        private final List<Call> calls = new ArrayList<>();
+        private final List<String> deleted = new ArrayList<>();
+        private List<Object> readResult = List.of();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+            calls.add(new Call(script, keys, args));
+            return script.getResultType() == List.class ? (T) readResult : (T) Long.valueOf(1);
+        }
+
+        @Override
+        public Long delete(Collection<String> keys) {
+            deleted.addAll(keys);
+            return (long) keys.size();
+        }
+    }
+}
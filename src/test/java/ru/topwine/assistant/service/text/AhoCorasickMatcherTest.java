@@ -0,0 +1,46 @@
+package ru.topwine.assistant.service.text;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AhoCorasickMatcherTest {
+
+    @Test
+    @DisplayName("given пересекающиеся образцы when поиск then найдены все вхождения с позициями")
+    void given_overlapping_patterns_when_find_all_then_every_occurrence_found() {
+        AhoCorasickMatcher<String> matcher = AhoCorasickMatcher.<String>builder()
+                .add("he", "he")
+                .add("she", "she")
+                .add("his", "his")
+                .add("hers", "hers")
+                .build();
+
+        List<AhoCorasickMatcher.Match<String>> matches = matcher.findAll("ushers");
+
+        assertThat(matches).extracting(AhoCorasickMatcher.Match::payload).containsExactly("she", "he", "hers");
+        assertThat(matches.getFirst().start()).isEqualTo(1);
+        assertThat(matches.getLast().end()).isEqualTo(6);
+    }
+
+    @Test
+    @DisplayName("given кириллица с «ё» и другим регистром when поиск then совпадение находится в исходном тексте")
+    void given_cyrillic_with_yo_and_case_when_find_all_then_matched_in_original_text() {
+        AhoCorasickMatcher<Integer> matcher = AhoCorasickMatcher.<Integer>builder()
+                .add("Кьянти Классико", 1)
+                .add("Тёплый салат", 2)
+                .add("  ", 3)
+                .build();
+        String text = "Советую КЬЯНТИ классико к блюду «теплый салат».";
+
+        List<AhoCorasickMatcher.Match<Integer>> matches = matcher.findAll(text);
+
+        assertThat(matcher.patternCount()).isEqualTo(2);
+        assertThat(matches).extracting(AhoCorasickMatcher.Match::payload).containsExactly(1, 2);
+        AhoCorasickMatcher.Match<Integer> salad = matches.getLast();
+        assertThat(text.substring(salad.start(), salad.end())).isEqualTo("теплый салат");
+    }
+}